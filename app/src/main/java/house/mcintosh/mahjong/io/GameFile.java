@@ -3,25 +3,40 @@ package house.mcintosh.mahjong.io;
 import android.content.Context;
 import android.util.Log;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import house.mcintosh.mahjong.exception.InternalException;
 import house.mcintosh.mahjong.exception.LoadException;
 import house.mcintosh.mahjong.exception.MissingScoringSchemeException;
 import house.mcintosh.mahjong.model.Game;
 import house.mcintosh.mahjong.model.GameSummary;
+import house.mcintosh.mahjong.model.Player;
+import house.mcintosh.mahjong.model.Round;
 import house.mcintosh.mahjong.scoring.ScoringScheme;
 import house.mcintosh.mahjong.ui.R;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
+import house.mcintosh.mahjong.util.FileUtil;
 import house.mcintosh.mahjong.util.JsonUtil;
 
 /**
@@ -33,13 +48,92 @@ public class GameFile
 {
 	private final static String LOG_TAG = GameFile.class.getName();
 
+	/**
+	 * The formats in which a game file can be written.  Either can be loaded, whatever the
+	 * name of the file.
+	 */
+	public enum Format
+	{
+		/** Readable, and for exporting games. */
+		JSON,
+		/** Json without any indentation or line breaks. */
+		COMPACT_JSON,
+		/** Compact, and quicker to load. */
+		BINARY
+	}
+
+	/** The start of a binary game file, which can never be the start of a json one. */
+	private static final byte[] BINARY_MAGIC = { (byte)0x89, 'M', 'J', 'G' };
+
+	private static final String JSON_SUFFIX		= ".json";
+	private static final String BINARY_SUFFIX	= ".mjg";
+
+	/** Once the journal is this long, the next save writes the whole game file instead. */
+	private static final long JOURNAL_COMPACT_LENGTH = 64 * 1024;
+
+	/**
+	 * Told when a save has finished.  Called on a background thread.
+	 */
+	public interface SaveListener
+	{
+		void onSaved(GameFile gameFile);
+		void onSaveFailed(GameFile gameFile, IOException error);
+	}
+
 	private final Game m_game;
-	private final File m_file;
+	private File m_file;
+	private GameJournal m_journal;
+
+	/** A file that the game was in before its format changed, deleted once the game has been written in full. */
+	private File m_replacedFile = null;
+
+	private boolean m_journalled = true;
+
+	private Format m_format = Format.JSON;
+
+	/**
+	 * The rounds, and a description of the seats, as they have been sent to be written.  A null
+	 * list means that the files are not known to match, so the next save writes the whole game.
+	 */
+	private List<Round> m_savedRounds = null;
+	private String m_savedSeats = null;
+
+	/** The generation of the game file, which the journal must follow on from. */
+	private long m_generation = 0;
+
+	/** The length of the journal, once everything sent to be written has been written. */
+	private long m_journalLength = 0;
+
+	/** Set on the background thread when a write fails. */
+	private volatile boolean m_writeFailed = false;
+
+	private volatile SaveListener m_saveListener = null;
+
+	private final GameWriter.Listener m_writeListener =
+			new GameWriter.Listener()
+			{
+				@Override
+				public void onWritten(IOException error)
+				{
+					if (error != null)
+						m_writeFailed = true;
+
+					SaveListener listener = m_saveListener;
+
+					if (listener == null)
+						return;
+
+					if (error == null)
+						listener.onSaved(GameFile.this);
+					else
+						listener.onSaveFailed(GameFile.this, error);
+				}
+			};
 
 	private static final FilenameFilter GAME_FILENAME_FILTER =
 			new FilenameFilter()
 			{
-				private final Pattern FILE_PATTERN = Pattern.compile("^game[0-9]{17}\\.json$");
+				private final Pattern FILE_PATTERN = Pattern.compile("^game[0-9]{17}\\.(json|mjg)$");
 
 				@Override
 				public boolean accept(File dir, String name)
@@ -59,20 +153,32 @@ public class GameFile
 
 		String nowStr = dateFormat.format(new Date());
 
-		String filename = "game" + nowStr + ".json";
+		String filename = "game" + nowStr + JSON_SUFFIX;
 
 		File directory = context.getExternalFilesDir(null);
 
 		m_file = new File(directory, filename);
+		m_journal = new GameJournal(m_file);
 	}
 
-	private GameFile(Game game, File file)
+	GameFile(Game game, File file)
 	{
 		m_game = game;
 		m_file = file;
+		m_journal = new GameJournal(file);
 	}
 
-	public void save()
+	/**
+	 * Save the game.  The game is written on a background thread, so this returns straight away.
+	 *
+	 * When journalled, a change to the rounds is appended to the journal beside the game file,
+	 * rather than writing the whole game again.  The whole game is written, and the journal
+	 * removed, when anything else has changed, when the game is finished, or when the journal
+	 * has grown too long.
+	 *
+	 * @return	Completes when the game has been written, or fails with the cause.
+	 */
+	public Future<Void> save()
 	{
 		File parentDirectory = m_file.getParentFile();
 
@@ -81,65 +187,413 @@ public class GameFile
 
 		m_game.getMeta().setLastModifiedOnToNow();
 
+		GameSummary summary = GameSummary.fromGame(m_game, m_file);
+		String seats = describeSeats(m_game);
+		Future<Void> written = null;
+
 		try
 		{
-			JsonUtil.writeFile(m_game.toJson(), m_file);
+			if (canAppendToJournal(seats))
+			{
+				List<byte[]> lines = new ArrayList<>(2);
+
+				if (m_journalLength == 0)
+					lines.add(GameJournal.createHeader(m_generation));
+
+				lines.add(GameJournal.createRecord(countSavedRounds(), m_game, summary));
+
+				for (byte[] line : lines)
+					m_journalLength += line.length;
+
+				written = GameWriter.appendToJournal(m_file, lines, summary, m_writeListener);
+			}
 		}
 		catch (IOException ioe)
 		{
-			Log.e(LOG_TAG, "Cannot write file: " + m_file.getAbsolutePath() + " " + ioe.getMessage());
+			// Couldn't create the journal record, so fall back to writing the whole game.
+			Log.e(LOG_TAG, "Cannot create journal record: " + ioe.getMessage());
+		}
+
+		if (written == null)
+		{
+			// A new generation, so that the journal of the last one is never replayed over this one.
+			m_generation = Math.max(m_generation + 1, System.currentTimeMillis());
+			m_journalLength = 0;
+			m_writeFailed = false;
+
+			if (m_format == Format.BINARY)
+			{
+				BinaryOutput output = new BinaryOutput();
+
+				output.writeBytes(BINARY_MAGIC);
+				output.writeVarint(m_generation);
+				m_game.writeTo(output);
 
-			// TODO: display error message.
+				written = GameWriter.writeGame(m_file, output.toByteArray(), summary, m_writeListener, m_replacedFile);
+			}
+			else
+			{
+				try
+				{
+					written = GameWriter.writeGame(m_file, writeJson(m_format == Format.JSON), summary, m_writeListener, m_replacedFile);
+				}
+				catch (IOException ioe)
+				{
+					// Never happens when writing to memory.
+					throw new InternalException("Cannot write game json: " + ioe.getMessage());
+				}
+			}
+		}
+
+		m_replacedFile = null;
+		m_savedRounds = new ArrayList<>(m_game.getRounds());
+		m_savedSeats = seats;
+
+		return written;
+	}
+
+	/**
+	 * Write the game as json straight into a buffer, without building a tree.  The generation
+	 * comes first, so that it can be found without reading the rest.
+	 */
+	private byte[] writeJson(boolean pretty) throws IOException
+	{
+		ByteArrayOutputStream contents = new ByteArrayOutputStream(8192);
+
+		try (JsonGenerator generator = JsonUtil.createGenerator(contents, pretty))
+		{
+			generator.writeStartObject();
+			generator.writeNumberField("generation", m_generation);
+			m_game.writeJsonFields(generator);
+			generator.writeEndObject();
+		}
+
+		return contents.toByteArray();
+	}
+
+	/**
+	 * Set the format in which the whole game is written from the next save.  A loaded game
+	 * keeps the format of its file until this is called, and new games are written as json.
+	 * Binary games have their own file extension, so changing between json and binary moves
+	 * the game to a new file, and the old one is deleted once the game has been written.
+	 */
+	public void setFormat(Format format)
+	{
+		if (format != m_format)
+		{
+			m_format = format;
+
+			// Make sure that the next save writes the whole game in the new format.
+			m_savedRounds = null;
+
+			moveTo(getFile(m_file, format));
+		}
+	}
+
+	/**
+	 * @return	The file with the extension for a format.
+	 */
+	private static File getFile(File file, Format format)
+	{
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+
+		if (dot >= 0)
+			name = name.substring(0, dot);
+
+		return new File(file.getParentFile(), name + (format == Format.BINARY ? BINARY_SUFFIX : JSON_SUFFIX));
+	}
+
+	/**
+	 * Write the game to a different file from the next save, which must write the whole game.
+	 */
+	private void moveTo(File file)
+	{
+		if (file.equals(m_file))
 			return;
+
+		if (m_replacedFile == null)
+			m_replacedFile = m_file;
+		else if (m_replacedFile.equals(file))
+			m_replacedFile = null;
+
+		m_file = file;
+		m_journal = new GameJournal(file);
+	}
+
+	public Format getFormat()
+	{
+		return m_format;
+	}
+
+	/**
+	 * Set a listener to be told, on a background thread, when saves finish.
+	 */
+	public void setSaveListener(SaveListener listener)
+	{
+		m_saveListener = listener;
+	}
+
+	/**
+	 * Save the whole game into the game file, and remove the journal.
+	 *
+	 * @return	Completes when the game has been written, or fails with the cause.
+	 */
+	public Future<Void> compact()
+	{
+		m_savedRounds = null;
+
+		return save();
+	}
+
+	/**
+	 * Set whether saves may append to a journal, rather than always writing the whole game.
+	 * On by default.
+	 */
+	public void setJournalled(boolean journalled)
+	{
+		m_journalled = journalled;
+	}
+
+	private boolean canAppendToJournal(String seats)
+	{
+		return m_journalled
+				&& m_savedRounds != null
+				&& !m_writeFailed
+				&& !m_game.isFinished()
+				&& seats.equals(m_savedSeats)
+				&& m_journalLength < JOURNAL_COMPACT_LENGTH;
+	}
+
+	/**
+	 * @return	The number of saved rounds that are still the first rounds of the game.
+	 */
+	private int countSavedRounds()
+	{
+		List<Round> rounds = m_game.getRounds();
+		int count = 0;
+
+		while (count < rounds.size() && count < m_savedRounds.size() && rounds.get(count) == m_savedRounds.get(count))
+			count++;
+
+		return count;
+	}
+
+	/**
+	 * @return	The players in their seats, and their names, which are not recorded in the journal.
+	 */
+	private static String describeSeats(Game game)
+	{
+		StringBuilder seats = new StringBuilder();
+
+		for (Player player : game.getSeats())
+		{
+			if (player != null)
+				seats.append(player.getId()).append(':').append(player.getName());
+
+			seats.append('\n');
 		}
+
+		return seats.toString();
 	}
 
 	public static GameFile load(Context context, File file)
 	{
-		GameFile gameFile;
+		return load(file, context, null, false);
+	}
+
+	/**
+	 * Load a game, optionally checking the scores saved in it.  Trusting the saved scores is
+	 * quicker, because hands are only scored when they are needed.  Checking them is for
+	 * finding games that no longer match their scoring scheme.
+	 *
+	 * @param verifyScores	True to score every hand, and check the saved scores.
+	 * @throws LoadException if the scores are being verified, and do not match.
+	 */
+	public static GameFile load(Context context, File file, boolean verifyScores)
+	{
+		return load(file, context, null, verifyScores);
+	}
+
+	/**
+	 * Load a game with a known scoring scheme.
+	 */
+	static GameFile load(File file, ScoringScheme scheme, boolean verifyScores)
+	{
+		return load(file, null, scheme, verifyScores);
+	}
+
+	/**
+	 * Load a game in either format, and bring it up to date from the journal.  Anything that
+	 * is still waiting to be saved is taken from the writer, rather than waiting for it.
+	 *
+	 * @param scheme	The scoring scheme, or null to load the one named in the game file.
+	 */
+	private static GameFile load(File file, Context context, ScoringScheme scheme, boolean verifyScores)
+	{
+		GameWriter.Pending pending = GameWriter.getPending(file);
 
 		try
 		{
-			JsonNode gameNode = JsonUtil.load(file);
+			boolean	fromWriter	= pending != null && pending.gameBytes != null;
+			byte[]	contents	= fromWriter ? pending.gameBytes : FileUtil.readContents(file);
+			Game	game;
+			long	generation;
+			Format	format;
+
+			if (isBinary(contents))
+			{
+				BinaryInput input = new BinaryInput(contents, BINARY_MAGIC.length, contents.length - BINARY_MAGIC.length);
+
+				generation = input.readVarint();
+
+				Game.readBinaryVersion(input);
+				ObjectNode scoringSchemeIdNode = Game.readScoringSchemeId(input);
+
+				if (scheme == null)
+					scheme = loadScoringScheme(context, scoringSchemeIdNode);
 
-			ObjectNode scoringSchemeIdNode = Game.getScoringSchemeId(gameNode);
+				game = Game.readFrom(input, scheme, verifyScores);
+				format = Format.BINARY;
+			}
+			else
+			{
+				JsonNode gameNode = JsonUtil.load(new ByteArrayInputStream(contents));
+
+				if (scheme == null)
+					scheme = loadScoringScheme(context, Game.getScoringSchemeId(gameNode));
+
+				game = Game.fromJson(gameNode, scheme, verifyScores);
+				generation = gameNode.path("generation").asLong(0);
+				format = isCompactJson(contents) ? Format.COMPACT_JSON : Format.JSON;
+			}
+
+			GameFile gameFile = new GameFile(game, file);
+
+			gameFile.m_format = format;
+			gameFile.m_generation = generation;
 
-			ScoringScheme scheme;
+			// The journal on disk is replaced when a waiting whole game is written.
 
-			try
+			long journalLength = 0;
+
+			if (!fromWriter)
+			{
+				long diskLength = pending == null ? -1 : pending.journalLength;
+
+				gameFile.m_journal.replay(game, scheme, generation, diskLength, verifyScores);
+				journalLength = diskLength < 0 ? gameFile.m_journal.length() : diskLength;
+			}
+
+			if (pending != null)
 			{
-				scheme = ScoringSchemeFile.load(context, scoringSchemeIdNode);
+				GameJournal.replay(game, scheme, pending.lines, verifyScores);
+
+				for (byte[] line : pending.lines)
+					journalLength += line.length;
 			}
-			catch (MissingScoringSchemeException msse)
+
+			// If the journal is damaged, write the whole game next time rather than appending to it.
+			if (fromWriter || !gameFile.m_journal.isDamaged())
 			{
-				Log.e(LOG_TAG, "No scoring scheme available:" + msse);
-				Log.i(LOG_TAG, "Using British Scoring Scheme");
-				scheme = ScoringScheme.load(context, R.raw.scoring_scheme_british);
+				gameFile.m_savedRounds = new ArrayList<>(game.getRounds());
+				gameFile.m_savedSeats = describeSeats(game);
+				gameFile.m_journalLength = journalLength;
 			}
 
-			Game game = Game.fromJson(gameNode, scheme);
+			// A file without the extension for its format is moved when it is next saved.
+			File formatFile = getFile(file, format);
+
+			if (!formatFile.equals(file))
+			{
+				gameFile.m_savedRounds = null;
+				gameFile.moveTo(formatFile);
+			}
 
-			gameFile = new GameFile(game, file);
+			return gameFile;
 		}
 		catch (IOException ioe)
 		{
 			throw new LoadException("Cannot load game file : " + file.getAbsolutePath());
 		}
+	}
 
-		return gameFile;
+	private static ScoringScheme loadScoringScheme(Context context, ObjectNode scoringSchemeIdNode) throws IOException
+	{
+		try
+		{
+			return ScoringSchemeFile.load(context, scoringSchemeIdNode);
+		}
+		catch (MissingScoringSchemeException msse)
+		{
+			Log.e(LOG_TAG, "No scoring scheme available:" + msse);
+			Log.i(LOG_TAG, "Using British Scoring Scheme");
+			return ScoringSchemeRepository.get(context, R.raw.scoring_scheme_british);
+		}
 	}
 
-	public void delete()
+	/**
+	 * @return	True if json has been written without indentation, so is all on one line.
+	 */
+	private static boolean isCompactJson(byte[] contents)
 	{
-		boolean deleted = m_file.delete();
+		for (byte b : contents)
+		{
+			if (b == '\n')
+				return false;
+		}
+
+		return true;
+	}
 
-		if (!deleted)
+	/**
+	 * Read a game file if it is in the binary format, rather than json.
+	 *
+	 * @return	The contents after the magic number, or null if the file is not binary.
+	 */
+	private static BinaryInput readBinaryContents(File file) throws IOException
+	{
+		try (InputStream in = new FileInputStream(file))
 		{
-			// Shouldn't ever happen, but doesn't really matter.
-			Log.e(LOG_TAG, "Cannot delete game file:" + m_file.getAbsolutePath());
+			byte[] start = new byte[BINARY_MAGIC.length];
+
+			if (FileUtil.readStart(in, start) < start.length || !isBinary(start))
+				return null;
+
+			byte[] contents = FileUtil.readContents(in, (int)file.length() - start.length);
+
+			return new BinaryInput(contents, 0, contents.length);
 		}
 	}
 
+	/**
+	 * @return	True if the contents of a game file are in the binary format, rather than json.
+	 */
+	private static boolean isBinary(byte[] contents)
+	{
+		if (contents.length < BINARY_MAGIC.length)
+			return false;
+
+		for (int i = 0 ; i < BINARY_MAGIC.length ; i++)
+		{
+			if (contents[i] != BINARY_MAGIC[i])
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Delete the game file, and its journal, abandoning any saves that have not yet been written.
+	 */
+	public void delete()
+	{
+		GameWriter.delete(m_file);
+
+		if (m_replacedFile != null)
+			GameWriter.delete(m_replacedFile);
+	}
+
 	public File getFile()
 	{
 		return m_file;
@@ -161,12 +615,43 @@ public class GameFile
 			return allGames;
 		}
 
+		return getAllGames(directory);
+	}
+
+	/**
+	 * Get summaries of all the games in a directory.  Summaries come from the index of the
+	 * directory, and only game files that have changed since they were indexed are parsed.
+	 */
+	static List<GameSummary> getAllGames(File directory)
+	{
+		// Games that are waiting to be saved have newer summaries than their files.  Take them
+		// first, so that a game whose first save finishes meanwhile is still found in the files.
+
+		Map<String, GameSummary> pending = GameWriter.getPendingSummaries(directory);
+
 		File[] files = directory.listFiles(GAME_FILENAME_FILTER);
 
-		for (File file : files)
+		List<GameSummary> summaries = files == null ? new ArrayList<GameSummary>() : GameSummaryIndex.get(directory).getSummaries(files);
+
+		if (pending.isEmpty())
+			return summaries;
+
+		// Files that are about to be replaced by a file in another format are left out.
+
+		List<GameSummary> allGames = new ArrayList<>(summaries.size() + pending.size());
+
+		for (GameSummary summary : summaries)
 		{
-			GameSummary summary = loadGameSummary(file);
+			String name = summary.getFile().getName();
 
+			if (!pending.containsKey(name))
+				allGames.add(summary);
+			else if (pending.get(name) != null)
+				allGames.add(pending.remove(name));
+		}
+
+		for (GameSummary summary : pending.values())
+		{
 			if (summary != null)
 				allGames.add(summary);
 		}
@@ -176,14 +661,56 @@ public class GameFile
 
 	public static GameSummary loadGameSummary(File gameFile)
 	{
-		GameSummary summary;
+		GameWriter.Pending pending = GameWriter.getPending(gameFile);
+
+		if (pending != null && pending.summary != null)
+			return pending.summary;
+
+		return readGameSummary(gameFile);
+	}
+
+	/**
+	 * Read the summary of a game, without waiting for saves to finish.  A binary game file is
+	 * only read once, for both its generation and its summary.
+	 */
+	static GameSummary readGameSummary(File gameFile)
+	{
+		GameSummary summary = null;
 
 		try
 		{
-			ObjectNode gameNode = (ObjectNode)JsonUtil.load(gameFile);
-			summary = GameSummary.fromJson(gameNode, gameFile);
+			GameJournal	journal	= new GameJournal(gameFile);
+			BinaryInput	binary	= readBinaryContents(gameFile);
+
+			// The journal, if any, has the summary after the latest change.
+
+			if (journal.exists())
+			{
+				long generation = binary != null ? binary.readVarint() : readJsonGeneration(gameFile);
+
+				summary = journal.readSummary(gameFile, generation);
+			}
+			else if (binary != null)
+			{
+				binary.readVarint();
+			}
+
+			if (summary == null)
+			{
+				if (binary != null)
+				{
+					summary = GameSummary.readFrom(binary, gameFile);
+				}
+				else
+				{
+					try (JsonParser parser = JsonUtil.createParser(gameFile))
+					{
+						summary = GameSummary.fromJson(parser, gameFile);
+					}
+				}
+			}
 		}
-		catch (IOException ioe)
+		catch (IOException | LoadException e)
 		{
 			Log.e(LOG_TAG, "Cannot load game file: " + gameFile.getAbsolutePath());
 			summary = null;
@@ -191,4 +718,30 @@ public class GameFile
 
 		return summary;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return	The generation of a json game file, which is written as its first field.
+	 */
+	private static long readJsonGeneration(File gameFile) throws IOException
+	{
+		try (JsonParser parser = JsonUtil.createParser(gameFile))
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				return 0;
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				String name = parser.getCurrentName();
+
+				parser.nextToken();
+
+				if (name.equals("generation"))
+					return parser.getLongValue();
+
+				parser.skipChildren();
+			}
+		}
+
+		return 0;
+	}
+}
@@ -0,0 +1,279 @@
+package house.mcintosh.mahjong.io;
+
+import android.util.Log;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import house.mcintosh.mahjong.model.Game;
+import house.mcintosh.mahjong.model.GameSummary;
+import house.mcintosh.mahjong.model.Round;
+import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.JsonUtil;
+import house.mcintosh.mahjong.util.TimeUtil;
+
+/**
+ * An append-only journal of the changes to the rounds of a game since its file was last written
+ * in full.  The journal is kept beside the game file, one compact json record per line.
+ *
+ * The first line is a header holding the generation of the game file that the journal follows
+ * on from.  Each record after that says how many of the rounds already recorded to keep, and
+ * which rounds follow them.  It also holds the summary of the game after the change, so that a
+ * summary can be read without replaying the journal.
+ */
+final class GameJournal
+{
+	private final static String LOG_TAG = GameJournal.class.getName();
+
+	private static final String JOURNAL_SUFFIX = ".journal";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File m_file;
+
+	/** Set if the last read found a partly written record, or a journal for another game file. */
+	private boolean m_damaged = false;
+
+	/** The generation in the header found by the last read. */
+	private long m_generation = 0;
+
+	GameJournal(File gameFile)
+	{
+		m_file = getJournalFile(gameFile);
+	}
+
+	static File getJournalFile(File gameFile)
+	{
+		return new File(gameFile.getParentFile(), gameFile.getName() + JOURNAL_SUFFIX);
+	}
+
+	File getFile()
+	{
+		return m_file;
+	}
+
+	boolean exists()
+	{
+		return m_file.exists();
+	}
+
+	long length()
+	{
+		return m_file.length();
+	}
+
+	/**
+	 * @return	True if the journal should not be appended to, because it ends with a partly
+	 * 			written record or does not follow on from the game file.
+	 */
+	boolean isDamaged()
+	{
+		return m_damaged;
+	}
+
+	void delete()
+	{
+		if (m_file.exists() && !m_file.delete())
+			Log.e(LOG_TAG, "Cannot delete journal file: " + m_file.getAbsolutePath());
+	}
+
+	/**
+	 * @return	The header of a new journal that follows on from a game file.
+	 */
+	static byte[] createHeader(long generation) throws IOException
+	{
+		ObjectNode header = JsonUtil.createObjectNode();
+
+		header.put("generation", generation);
+
+		return toLine(header);
+	}
+
+	/**
+	 * Create a record of a change to the rounds of a game.
+	 *
+	 * @param keptRounds	The number of rounds, already recorded, that are unchanged.
+	 * @param game			The game after the change.
+	 * @param summary		The summary of the game after the change.
+	 */
+	static byte[] createRecord(int keptRounds, Game game, GameSummary summary) throws IOException
+	{
+		ObjectNode	record	= JsonUtil.createObjectNode();
+		ArrayNode	rounds	= JsonUtil.createArrayNode();
+
+		List<Round> gameRounds = game.getRounds();
+
+		for (int i = keptRounds ; i < gameRounds.size() ; i++)
+			rounds.add(gameRounds.get(i).toJson());
+
+		record.put("keptRounds", keptRounds);
+		record.set("rounds", rounds);
+		record.put("lastModifiedOn", TimeUtil.toUTCString(game.getMeta().getLastModifiedOn()));
+		record.set("summary", summary.toJson());
+
+		return toLine(record);
+	}
+
+	private static byte[] toLine(JsonNode node) throws IOException
+	{
+		return (JsonUtil.toCompactString(node) + "\n").getBytes(UTF8);
+	}
+
+	/**
+	 * Append lines to the journal, and make sure that they reach the disk.
+	 */
+	void append(List<byte[]> lines) throws IOException
+	{
+		try (FileOutputStream out = new FileOutputStream(m_file, true))
+		{
+			for (byte[] line : lines)
+				out.write(line);
+
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * Bring a game loaded from the game file up to date by replaying the journal.  The journal
+	 * is ignored if it does not follow on from the game file, which happens if the app stops
+	 * after the game file has been replaced but before the old journal is deleted.
+	 *
+	 * @param verifyScores	As for Game.fromJson().
+	 */
+	void replay(Game game, ScoringScheme scheme, long generation, boolean verifyScores) throws IOException
+	{
+		replay(game, scheme, generation, -1, verifyScores);
+	}
+
+	/**
+	 * Replay only the start of the journal, for when the rest of it is being written.
+	 *
+	 * @param length	The length of the journal to replay, or -1 for all of it.
+	 */
+	void replay(Game game, ScoringScheme scheme, long generation, long length, boolean verifyScores) throws IOException
+	{
+		if (!m_file.exists())
+			return;
+
+		List<JsonNode> records = readRecords(length);
+
+		if (m_generation != generation)
+		{
+			m_damaged = true;
+			return;
+		}
+
+		apply(game, scheme, records, verifyScores);
+	}
+
+	/**
+	 * Replay journal lines that have not yet been written, after the journal on disk.
+	 */
+	static void replay(Game game, ScoringScheme scheme, List<byte[]> lines, boolean verifyScores) throws IOException
+	{
+		List<JsonNode> records = new ArrayList<>(lines.size());
+
+		for (byte[] line : lines)
+		{
+			JsonNode record = JsonUtil.fromString(new String(line, UTF8));
+
+			if (!record.has("generation"))
+				records.add(record);
+		}
+
+		apply(game, scheme, records, verifyScores);
+	}
+
+	private static void apply(Game game, ScoringScheme scheme, List<JsonNode> records, boolean verifyScores)
+	{
+		for (JsonNode record : records)
+		{
+			int keptRounds = record.get("keptRounds").asInt();
+
+			while (game.getRoundCount() > keptRounds)
+				game.popRound();
+
+			for (JsonNode roundNode : record.get("rounds"))
+				game.addRound(Round.fromJson(roundNode, scheme, verifyScores));
+
+			game.getMeta().setLastModifiedOn(TimeUtil.fromUTCString(record.get("lastModifiedOn").asText()));
+		}
+	}
+
+	/**
+	 * @return	The summary of the game after the last change in the journal, or null if there
+	 * 			is none or the journal does not follow on from the game file.
+	 */
+	GameSummary readSummary(File gameFile, long generation) throws IOException
+	{
+		List<JsonNode> records = readRecords(-1);
+
+		if (records.isEmpty() || m_generation != generation)
+			return null;
+
+		return GameSummary.fromSummaryJson(records.get(records.size() - 1).get("summary"), gameFile);
+	}
+
+	/**
+	 * Read the header and all the complete records.  A partly written last record, left by being
+	 * interrupted while appending, is ignored.
+	 *
+	 * @param length	The length of the journal to read, or -1 for all of it.
+	 */
+	private List<JsonNode> readRecords(long length) throws IOException
+	{
+		List<JsonNode> records = new ArrayList<>();
+
+		m_damaged = false;
+		m_generation = 0;
+
+		if (!m_file.exists())
+			return records;
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(m_file), UTF8)))
+		{
+			String	line;
+			long	read	= 0;
+
+			while ((length < 0 || read < length) && (line = reader.readLine()) != null)
+			{
+				// Every line is written with a single newline.
+				read += line.getBytes(UTF8).length + 1;
+
+				if (line.isEmpty())
+					continue;
+
+				JsonNode record;
+
+				try
+				{
+					record = JsonUtil.fromString(line);
+				}
+				catch (IOException ioe)
+				{
+					Log.e(LOG_TAG, "Ignoring incomplete journal record: " + m_file.getAbsolutePath());
+					m_damaged = true;
+					break;
+				}
+
+				if (record.has("generation"))
+					m_generation = record.get("generation").asLong();
+				else
+					records.add(record);
+			}
+		}
+
+		return records;
+	}
+}
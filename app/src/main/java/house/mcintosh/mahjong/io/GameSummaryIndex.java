@@ -0,0 +1,213 @@
+package house.mcintosh.mahjong.io;
+
+import android.util.Log;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import house.mcintosh.mahjong.model.GameSummary;
+import house.mcintosh.mahjong.util.JsonUtil;
+
+/**
+ * An index of the summaries of all the game files in a directory, kept in a file in the same
+ * directory, so that the list of games can be built without parsing every game file.
+ *
+ * Each entry records the modification time and length of the game file it was made from, and
+ * the length of its journal, and is only trusted while the files still match.  Otherwise the game file is parsed again.
+ */
+final class GameSummaryIndex
+{
+	private final static String LOG_TAG = GameSummaryIndex.class.getName();
+
+	static final String INDEX_FILENAME = "gameIndex.json";
+
+	/** One index per directory, shared by all users of the directory. */
+	private static final Map<File, GameSummaryIndex> s_indexes = new HashMap<>();
+
+	private final File m_indexFile;
+
+	/** Keyed by game file name. */
+	private final Map<String, Entry> m_entries = new HashMap<>();
+
+	private static final class Entry
+	{
+		private final long			m_lastModified;
+		private final long			m_length;
+		private final long			m_journalLength;
+		private final GameSummary	m_summary;
+
+		private Entry(long lastModified, long length, long journalLength, GameSummary summary)
+		{
+			m_lastModified	= lastModified;
+			m_length		= length;
+			m_journalLength	= journalLength;
+			m_summary		= summary;
+		}
+
+		private Entry(File gameFile, GameSummary summary)
+		{
+			this(gameFile.lastModified(), gameFile.length(), GameJournal.getJournalFile(gameFile).length(), summary);
+		}
+
+		private boolean matches(File gameFile)
+		{
+			return m_lastModified == gameFile.lastModified()
+					&& m_length == gameFile.length()
+					&& m_journalLength == GameJournal.getJournalFile(gameFile).length();
+		}
+	}
+
+	private GameSummaryIndex(File directory)
+	{
+		m_indexFile = new File(directory, INDEX_FILENAME);
+	}
+
+	/**
+	 * @return	The index for a directory, which is loaded from its file the first time.
+	 */
+	static synchronized GameSummaryIndex get(File directory)
+	{
+		GameSummaryIndex index = s_indexes.get(directory);
+
+		if (index == null)
+		{
+			index = new GameSummaryIndex(directory);
+			index.load();
+			s_indexes.put(directory, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Get the summaries of some game files, from the index where it is up to date, and by parsing
+	 * the game files where it is not.  Entries for any other files are dropped from the index.
+	 */
+	synchronized List<GameSummary> getSummaries(File[] gameFiles)
+	{
+		List<GameSummary>	summaries	= new ArrayList<>(gameFiles.length);
+		Set<String>			names		= new HashSet<>();
+		boolean				changed		= false;
+
+		for (File gameFile : gameFiles)
+		{
+			names.add(gameFile.getName());
+
+			Entry entry = m_entries.get(gameFile.getName());
+
+			if (entry == null || !entry.matches(gameFile))
+			{
+				GameSummary summary = GameFile.readGameSummary(gameFile);
+
+				if (summary == null)
+				{
+					changed |= m_entries.remove(gameFile.getName()) != null;
+					continue;
+				}
+
+				entry = new Entry(gameFile, summary);
+				m_entries.put(gameFile.getName(), entry);
+				changed = true;
+			}
+
+			summaries.add(entry.m_summary);
+		}
+
+		changed |= m_entries.keySet().retainAll(names);
+
+		if (changed)
+			save();
+
+		return summaries;
+	}
+
+	/**
+	 * Record the summary of a game that has just been written to a file.
+	 */
+	synchronized void update(File gameFile, GameSummary summary)
+	{
+		m_entries.put(gameFile.getName(), new Entry(gameFile, summary));
+		save();
+	}
+
+	synchronized void remove(File gameFile)
+	{
+		if (m_entries.remove(gameFile.getName()) != null)
+			save();
+	}
+
+	private void load()
+	{
+		if (!m_indexFile.exists())
+			return;
+
+		File directory = m_indexFile.getParentFile();
+
+		try
+		{
+			JsonNode indexNode = JsonUtil.load(m_indexFile);
+
+			for (JsonNode entryNode : indexNode.path("games"))
+			{
+				String	name		= entryNode.get("file").asText();
+				File	gameFile	= new File(directory, name);
+
+				GameSummary summary = GameSummary.fromSummaryJson(entryNode.get("summary"), gameFile);
+
+				long lastModified	= entryNode.get("lastModified").asLong();
+				long length			= entryNode.get("length").asLong();
+				long journalLength	= entryNode.path("journalLength").asLong(0);
+
+				m_entries.put(name, new Entry(lastModified, length, journalLength, summary));
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// Start again.  The game files will be parsed when next listed.
+			Log.e(LOG_TAG, "Cannot load game index: " + m_indexFile.getAbsolutePath() + " " + e.getMessage());
+			m_entries.clear();
+		}
+	}
+
+	private void save()
+	{
+		ObjectNode	indexNode	= JsonUtil.createObjectNode();
+		ArrayNode	games		= JsonUtil.createArrayNode();
+
+		for (Map.Entry<String, Entry> entry : m_entries.entrySet())
+		{
+			ObjectNode entryNode = JsonUtil.createObjectNode();
+
+			entryNode.put("file", entry.getKey());
+			entryNode.put("lastModified", entry.getValue().m_lastModified);
+			entryNode.put("length", entry.getValue().m_length);
+			entryNode.put("journalLength", entry.getValue().m_journalLength);
+			entryNode.set("summary", entry.getValue().m_summary.toJson());
+
+			games.add(entryNode);
+		}
+
+		indexNode.put("version", "1");
+		indexNode.set("games", games);
+
+		try
+		{
+			JsonUtil.writeFile(indexNode, m_indexFile);
+		}
+		catch (IOException ioe)
+		{
+			// Not fatal, the game files can always be parsed instead.
+			Log.e(LOG_TAG, "Cannot write game index: " + m_indexFile.getAbsolutePath() + " " + ioe.getMessage());
+		}
+	}
+}
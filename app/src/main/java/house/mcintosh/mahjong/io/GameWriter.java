@@ -0,0 +1,455 @@
+package house.mcintosh.mahjong.io;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import house.mcintosh.mahjong.model.GameSummary;
+
+/**
+ * Writes a game file, and its journal, on a background thread.  There is one writer for each
+ * game file, so that writes to the file are never interleaved.
+ *
+ * Requests that arrive while a write is waiting to start are combined with it.  A request to
+ * write the whole game replaces any waiting requests, and appends to the journal are made
+ * together.  The whole game is written to a temporary file, which is synced and then renamed
+ * over the game file, so the game file is never left partly written.
+ *
+ * Loading and listing games never wait for writes.  Instead they take whatever has not yet
+ * reached the disk from the writer.  A writer is dropped once it has nothing left to write.
+ */
+final class GameWriter
+{
+	private final static String LOG_TAG = GameWriter.class.getName();
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/** Called on the background thread when a write finishes. */
+	interface Listener
+	{
+		/**
+		 * @param error	The reason the write failed, or null if it succeeded.
+		 */
+		void onWritten(IOException error);
+	}
+
+	/** All writes are made by a single background thread. */
+	private static final ExecutorService s_executor = Executors.newSingleThreadExecutor(
+			new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "GameWriter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** The writers that have something to write, guarded by the class. */
+	private static final Map<File, GameWriter> s_writers = new HashMap<>();
+
+	/**
+	 * What a writer has been asked to write, but may not yet have reached the disk.
+	 */
+	static final class Pending
+	{
+		/** The latest whole game, or null if the game file on disk is up to date. */
+		final byte[]		gameBytes;
+
+		/** Journal lines that follow on from the whole game, or from the journal on disk. */
+		final List<byte[]>	lines;
+
+		/** The length of the journal on disk that has been completely written.  Ignored when there is a whole game. */
+		final long			journalLength;
+
+		/** The summary of the game after the latest change. */
+		final GameSummary	summary;
+
+		/** A game file that is to be deleted once the whole game has been written, or null. */
+		final File			replaces;
+
+		private Pending(byte[] gameBytes, List<byte[]> lines, long journalLength, GameSummary summary, File replaces)
+		{
+			this.gameBytes		= gameBytes;
+			this.lines			= lines;
+			this.journalLength	= journalLength;
+			this.summary		= summary;
+			this.replaces		= replaces;
+		}
+	}
+
+	private final File			m_file;
+	private final GameJournal	m_journal;
+
+	/** Held while writing to the files. */
+	private final Object		m_writeLock	= new Object();
+
+	// Waiting requests, guarded by this.
+
+	private byte[]				m_pendingGameBytes	= null;
+	private File				m_pendingReplaces	= null;
+	private final List<byte[]>	m_pendingLines		= new ArrayList<>();
+	private GameSummary			m_pendingSummary	= null;
+	private final Set<Listener>	m_pendingListeners	= new LinkedHashSet<>();
+	private Future<Void>		m_scheduled			= null;
+
+	// The write in progress, if any, guarded by this.
+
+	private boolean				m_writing				= false;
+	private byte[]				m_writingGameBytes		= null;
+	private File				m_writingReplaces		= null;
+	private List<byte[]>		m_writingLines			= null;
+	private GameSummary			m_writingSummary		= null;
+	private long				m_writingJournalLength	= 0;
+
+	/** Set when a write fails, so that the journal is not appended to until the whole game has been written. */
+	private boolean				m_failed	= false;
+
+	private GameWriter(File file)
+	{
+		m_file		= file;
+		m_journal	= new GameJournal(file);
+	}
+
+	private static GameWriter get(File gameFile)
+	{
+		GameWriter writer = s_writers.get(gameFile);
+
+		if (writer == null)
+		{
+			writer = new GameWriter(gameFile);
+			s_writers.put(gameFile, writer);
+		}
+
+		return writer;
+	}
+
+	/**
+	 * Write the whole game, and remove the journal.
+	 *
+	 * @param contents	The game, as it is to be written.
+	 * @param summary	The summary of the game, for the index of games.
+	 * @param replaces	A game file to delete once the game has been written, or null.
+	 * @return			Completes when the game has been written, or fails with the cause.
+	 */
+	static synchronized Future<Void> writeGame(File gameFile, byte[] contents, GameSummary summary, Listener listener, File replaces)
+	{
+		return get(gameFile).scheduleGame(contents, summary, listener, replaces);
+	}
+
+	/**
+	 * Append lines to the journal.
+	 *
+	 * @return	Completes when the lines have been written, or fails with the cause.
+	 */
+	static synchronized Future<Void> appendToJournal(File gameFile, List<byte[]> lines, GameSummary summary, Listener listener)
+	{
+		return get(gameFile).scheduleLines(lines, summary, listener);
+	}
+
+	/**
+	 * @return	What has not yet been written to a game file, or null if it is up to date.
+	 */
+	static synchronized Pending getPending(File gameFile)
+	{
+		GameWriter writer = s_writers.get(gameFile);
+
+		return writer == null ? null : writer.getPending();
+	}
+
+	/**
+	 * @return	The latest summaries of the games in a directory that have not yet been written,
+	 * 			by file name.  A game file that is about to be replaced has a null summary.
+	 */
+	static synchronized Map<String, GameSummary> getPendingSummaries(File directory)
+	{
+		Map<String, GameSummary> summaries = new HashMap<>();
+
+		for (GameWriter writer : s_writers.values())
+		{
+			if (!directory.equals(writer.m_file.getParentFile()))
+				continue;
+
+			Pending pending = writer.getPending();
+
+			if (pending == null)
+				continue;
+
+			if (pending.summary != null)
+				summaries.put(writer.m_file.getName(), pending.summary);
+
+			if (pending.replaces != null && directory.equals(pending.replaces.getParentFile()))
+				summaries.put(pending.replaces.getName(), null);
+		}
+
+		return summaries;
+	}
+
+	/**
+	 * Delete a game file and its journal, dropping any waiting writes.
+	 */
+	static void delete(File gameFile)
+	{
+		GameWriter writer;
+
+		synchronized (GameWriter.class)
+		{
+			writer = s_writers.remove(gameFile);
+		}
+
+		if (writer == null)
+			writer = new GameWriter(gameFile);
+
+		writer.delete();
+	}
+
+	private synchronized Future<Void> scheduleGame(byte[] contents, GameSummary summary, Listener listener, File replaces)
+	{
+		m_pendingGameBytes = contents;
+		m_pendingLines.clear();
+
+		if (replaces != null)
+			m_pendingReplaces = replaces;
+
+		return schedule(summary, listener);
+	}
+
+	private synchronized Future<Void> scheduleLines(List<byte[]> lines, GameSummary summary, Listener listener)
+	{
+		m_pendingLines.addAll(lines);
+
+		return schedule(summary, listener);
+	}
+
+	private Future<Void> schedule(GameSummary summary, Listener listener)
+	{
+		m_pendingSummary = summary;
+
+		if (listener != null)
+			m_pendingListeners.add(listener);
+
+		if (m_scheduled == null)
+		{
+			m_scheduled = s_executor.submit(
+					new Callable<Void>()
+					{
+						@Override
+						public Void call() throws IOException
+						{
+							write();
+							return null;
+						}
+					});
+		}
+
+		return m_scheduled;
+	}
+
+	private synchronized Pending getPending()
+	{
+		if (!m_writing && m_scheduled == null)
+			return null;
+
+		GameSummary	summary		= m_pendingSummary != null ? m_pendingSummary : m_writingSummary;
+		File		replaces	= m_pendingReplaces != null ? m_pendingReplaces : m_writingReplaces;
+
+		// A waiting whole game replaces everything before it.
+
+		if (m_pendingGameBytes != null)
+			return new Pending(m_pendingGameBytes, new ArrayList<>(m_pendingLines), -1, summary, replaces);
+
+		List<byte[]> lines = new ArrayList<>();
+
+		if (m_writing)
+			lines.addAll(m_writingLines);
+
+		lines.addAll(m_pendingLines);
+
+		if (m_writingGameBytes != null)
+			return new Pending(m_writingGameBytes, lines, -1, summary, replaces);
+
+		// The journal on disk may be appended to as soon as this returns, or already be part
+		// way through being appended to, so only what is there now is complete.
+
+		return new Pending(null, lines, m_writing ? m_writingJournalLength : m_journal.length(), summary, replaces);
+	}
+
+	/**
+	 * Delete the game file and its journal, dropping any waiting writes, and any file that
+	 * they were to replace.
+	 */
+	private void delete()
+	{
+		File replaces;
+
+		synchronized (m_writeLock)
+		{
+			synchronized (this)
+			{
+				replaces = m_pendingReplaces;
+
+				m_pendingReplaces = null;
+				m_pendingGameBytes = null;
+				m_pendingLines.clear();
+				m_pendingSummary = null;
+				m_pendingListeners.clear();
+				m_failed = false;
+			}
+
+			if (m_file.exists() && !m_file.delete())
+			{
+				// Shouldn't ever happen, but doesn't really matter.
+				Log.e(LOG_TAG, "Cannot delete game file:" + m_file.getAbsolutePath());
+			}
+
+			m_journal.delete();
+			GameSummaryIndex.get(m_file.getParentFile()).remove(m_file);
+		}
+
+		if (replaces != null)
+			delete(replaces);
+	}
+
+	private void write() throws IOException
+	{
+		synchronized (m_writeLock)
+		{
+			byte[]			gameBytes;
+			File			replaces;
+			List<byte[]>	lines;
+			GameSummary		summary;
+			List<Listener>	listeners;
+
+			synchronized (this)
+			{
+				gameBytes	= m_pendingGameBytes;
+				replaces	= gameBytes == null ? null : m_pendingReplaces;
+				lines		= new ArrayList<>(m_pendingLines);
+				summary		= m_pendingSummary;
+				listeners	= new ArrayList<>(m_pendingListeners);
+
+				m_pendingGameBytes	= null;
+				m_pendingSummary	= null;
+				m_pendingLines.clear();
+
+				if (replaces != null)
+					m_pendingReplaces = null;
+				m_pendingListeners.clear();
+				m_scheduled = null;
+
+				m_writing				= true;
+				m_writingGameBytes		= gameBytes;
+				m_writingReplaces		= replaces;
+				m_writingLines			= lines;
+				m_writingSummary		= summary;
+				m_writingJournalLength	= m_journal.length();
+			}
+
+			IOException error = null;
+
+			try
+			{
+				if (gameBytes != null)
+				{
+					writeAtomically(gameBytes);
+
+					// The game file no longer refers to the journal, so it can go.
+					m_journal.delete();
+					m_failed = false;
+
+					if (replaces != null)
+						delete(replaces);
+				}
+
+				if (!lines.isEmpty())
+				{
+					if (m_failed)
+						throw new IOException("Not appending to journal after earlier failure: " + m_journal.getFile().getAbsolutePath());
+
+					m_journal.append(lines);
+				}
+
+				if (summary != null)
+					GameSummaryIndex.get(m_file.getParentFile()).update(m_file, summary);
+			}
+			catch (IOException ioe)
+			{
+				Log.e(LOG_TAG, "Cannot write file: " + m_file.getAbsolutePath() + " " + ioe.getMessage());
+
+				m_failed = true;
+				error = ioe;
+			}
+
+			synchronized (this)
+			{
+				m_writing			= false;
+				m_writingGameBytes	= null;
+				m_writingReplaces	= null;
+
+				// The old file is still needed if the game was not written.
+				if (error != null && replaces != null && m_pendingReplaces == null)
+					m_pendingReplaces = replaces;
+				m_writingLines		= null;
+				m_writingSummary	= null;
+			}
+
+			for (Listener listener : listeners)
+				listener.onWritten(error);
+
+			if (error != null)
+				throw error;
+		}
+
+		dropIfIdle();
+	}
+
+	/**
+	 * Stop keeping this writer once there is nothing more for it to do.  A writer that has
+	 * failed is kept, so that the journal is not appended to until the whole game is written.
+	 */
+	private void dropIfIdle()
+	{
+		synchronized (GameWriter.class)
+		{
+			synchronized (this)
+			{
+				if (m_scheduled == null && !m_writing && !m_failed && s_writers.get(m_file) == this)
+					s_writers.remove(m_file);
+			}
+		}
+	}
+
+	/**
+	 * Write to a temporary file, make sure it reaches the disk, then rename it over the game file.
+	 */
+	private void writeAtomically(byte[] contents) throws IOException
+	{
+		File temp = new File(m_file.getParentFile(), m_file.getName() + TEMP_SUFFIX);
+
+		try (FileOutputStream out = new FileOutputStream(temp))
+		{
+			out.write(contents);
+			out.getFD().sync();
+		}
+
+		if (!temp.renameTo(m_file))
+		{
+			temp.delete();
+			throw new IOException("Cannot rename " + temp.getAbsolutePath());
+		}
+	}
+}
@@ -20,12 +20,6 @@ public class ScoringSchemeFile
 		if (schemeId == null)
 			throw new MissingScoringSchemeException("Invalid schemeId");
 
-		int resourceId = ScoringScheme.getResourceId(schemeId);
-
-		if (resourceId != 0)
-			return ScoringScheme.load(context, resourceId);
-
-		// TODO: Handle loading from a file.
-		throw new MissingScoringSchemeException("Loading scoring scheme from file is not yet implemented.");
+		return ScoringSchemeRepository.get(context, schemeId);
 	}
 }
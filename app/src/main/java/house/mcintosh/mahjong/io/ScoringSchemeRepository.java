@@ -0,0 +1,422 @@
+package house.mcintosh.mahjong.io;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import house.mcintosh.mahjong.exception.InternalException;
+import house.mcintosh.mahjong.exception.MissingScoringSchemeException;
+import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.ui.R;
+import house.mcintosh.mahjong.util.FileUtil;
+import house.mcintosh.mahjong.util.JsonUtil;
+
+/**
+ * The scoring schemes available to the app, shared by everything in the process.  Each scheme
+ * is parsed once, the first time it is needed, and the same instance is returned after that.
+ *
+ * The catalog of schemes, with their names, comes from a manifest so that the schemes can be
+ * listed without parsing them.
+ *
+ * As well as the schemes that come with the app, schemes can be loaded from json files in a
+ * directory of the app's files.  A scheme loaded from a file is identified by a hash of its
+ * contents as well as by the name of the file, so that a game stays with the version of the
+ * scheme it was played with.  A copy of every version loaded is kept, named by its hash.  A
+ * file that has changed since it was loaded is loaded again when it is next asked for.
+ */
+public final class ScoringSchemeRepository
+{
+	private final static String LOG_TAG = ScoringSchemeRepository.class.getName();
+
+	static final String SCHEME_DIRECTORY	= "scoringSchemes";
+	static final String VERSION_DIRECTORY	= "versions";
+
+	private static final String SCHEME_SUFFIX = ".json";
+
+	/** Keyed by resource id. */
+	private static final Map<Integer, ScoringScheme> s_resourceSchemes = new HashMap<>();
+
+	/** The current version of each scheme file loaded, keyed by file. */
+	private static final Map<File, FileScheme> s_fileSchemes = new HashMap<>();
+
+	/** Every version of a scheme file loaded, keyed by the name of the file and the hash of the version. */
+	private static final Map<String, ScoringScheme> s_fileVersions = new HashMap<>();
+
+	private static List<Entry> s_catalog = null;
+
+	private ScoringSchemeRepository()
+	{
+	}
+
+	/**
+	 * A scheme in the catalog.
+	 */
+	public static final class Entry
+	{
+		private final int		m_resourceId;
+		private final String	m_fileName;
+		private final String	m_name;
+
+		private Entry(int resourceId, String fileName, String name)
+		{
+			m_resourceId	= resourceId;
+			m_fileName		= fileName;
+			m_name			= name;
+		}
+
+		/**
+		 * @return	The resource id, or 0 if the scheme is in a file.
+		 */
+		public int getResourceId()
+		{
+			return m_resourceId;
+		}
+
+		/**
+		 * @return	The name of the file, or null if the scheme comes with the app.
+		 */
+		public String getFileName()
+		{
+			return m_fileName;
+		}
+
+		public String getName()
+		{
+			return m_name;
+		}
+
+		/**
+		 * @return	The id of the scheme, in the form returned by ScoringScheme.getIdJson().  For
+		 * 			a file, there is no hash, so the id is for the current version of the file.
+		 */
+		public ObjectNode getSchemeId()
+		{
+			ObjectNode schemeId = JsonUtil.createObjectNode();
+
+			if (m_resourceId != 0)
+				schemeId.put("resourceId", m_resourceId);
+
+			if (m_fileName != null)
+				schemeId.put("fileName", m_fileName);
+
+			return schemeId;
+		}
+
+		@Override
+		public String toString()
+		{
+			return m_name;
+		}
+	}
+
+	/**
+	 * The version of a scheme file that was last loaded, and the state of the file when it was.
+	 */
+	private static final class FileScheme
+	{
+		private long				m_lastModified;
+		private long				m_length;
+		private final String		m_hash;
+		private final ScoringScheme	m_scheme;
+
+		private FileScheme(File file, String hash, ScoringScheme scheme)
+		{
+			m_lastModified	= file.lastModified();
+			m_length		= file.length();
+			m_hash			= hash;
+			m_scheme		= scheme;
+		}
+
+		private boolean matches(File file)
+		{
+			return m_lastModified == file.lastModified() && m_length == file.length();
+		}
+	}
+
+	/**
+	 * @return	The directory of the app's files that holds scheme files.
+	 */
+	public static File getSchemeDirectory(Context context)
+	{
+		return new File(context.getFilesDir(), SCHEME_DIRECTORY);
+	}
+
+	/**
+	 * @return	The schemes that come with the app, in the order in which they should be offered,
+	 * 			followed by the schemes in files in order of file name.
+	 */
+	public static synchronized List<Entry> getCatalog(Context context) throws IOException
+	{
+		List<Entry> catalog = new ArrayList<>(getResourceCatalog(context));
+
+		catalog.addAll(getFileCatalog(getSchemeDirectory(context)));
+
+		return catalog;
+	}
+
+	private static List<Entry> getResourceCatalog(Context context) throws IOException
+	{
+		if (s_catalog == null)
+		{
+			List<Entry> catalog = new ArrayList<>();
+
+			try (InputStream inStream = context.getResources().openRawResource(R.raw.scoring_schemes))
+			{
+				for (JsonNode schemeNode : JsonUtil.load(inStream).path("schemes"))
+				{
+					String	resourceName	= schemeNode.get("resource").asText();
+					int		resourceId		= context.getResources().getIdentifier(resourceName, "raw", context.getPackageName());
+
+					if (resourceId == 0)
+					{
+						Log.e(LOG_TAG, "Scoring scheme in manifest not found: " + resourceName);
+						continue;
+					}
+
+					catalog.add(new Entry(resourceId, null, schemeNode.path("name").asText(resourceName)));
+				}
+			}
+
+			s_catalog = Collections.unmodifiableList(catalog);
+		}
+
+		return s_catalog;
+	}
+
+	/**
+	 * List the scheme files in a directory.  Files have no manifest, so a file is parsed to
+	 * find its name, but only if it has changed since it was last loaded.  Files that cannot be
+	 * loaded are left out.
+	 */
+	static synchronized List<Entry> getFileCatalog(File directory)
+	{
+		List<Entry> catalog = new ArrayList<>();
+
+		File[] files = directory.listFiles();
+
+		if (files == null)
+			return catalog;
+
+		Arrays.sort(files);
+
+		for (File file : files)
+		{
+			if (!file.isFile() || !file.getName().endsWith(SCHEME_SUFFIX))
+				continue;
+
+			try
+			{
+				catalog.add(new Entry(0, file.getName(), getCurrentVersion(file).getDisplayName()));
+			}
+			catch (IOException | RuntimeException e)
+			{
+				Log.e(LOG_TAG, "Cannot load scoring scheme file: " + file.getAbsolutePath() + " " + e.getMessage());
+			}
+		}
+
+		return catalog;
+	}
+
+	/**
+	 * @return	The scheme held in a raw resource, which is parsed the first time it is asked for.
+	 */
+	public static synchronized ScoringScheme get(Context context, int resourceId) throws IOException
+	{
+		ScoringScheme scheme = s_resourceSchemes.get(resourceId);
+
+		if (scheme == null)
+		{
+			scheme = ScoringScheme.load(context, resourceId);
+			s_resourceSchemes.put(resourceId, scheme);
+		}
+
+		return scheme;
+	}
+
+	/**
+	 * Get a scheme from its id, as returned by ScoringScheme.getIdJson(), from either a resource
+	 * or a file in the scheme directory.
+	 *
+	 * @throws MissingScoringSchemeException if there is no such scheme.
+	 */
+	public static ScoringScheme get(Context context, ObjectNode schemeId) throws IOException
+	{
+		int resourceId = ScoringScheme.getResourceId(schemeId);
+
+		if (resourceId != 0)
+			return get(context, resourceId);
+
+		String fileName = ScoringScheme.getFileName(schemeId);
+
+		if (fileName == null)
+			throw new MissingScoringSchemeException("Scoring scheme has no resource or file.");
+
+		return get(getSchemeDirectory(context), fileName, ScoringScheme.getHash(schemeId));
+	}
+
+	/**
+	 * Get a scheme from a file in a directory of schemes.
+	 *
+	 * @param hash	The hash of the version of the file wanted, or null for the current version.
+	 *             	If the file has changed since the version was loaded, a copy of the version
+	 *             	is used instead.  If there is no copy, the current version is used.
+	 * @throws MissingScoringSchemeException if there is no such file, or copy of it.
+	 */
+	static synchronized ScoringScheme get(File directory, String fileName, String hash) throws IOException
+	{
+		if (!new File(fileName).getName().equals(fileName))
+			throw new MissingScoringSchemeException("Invalid scoring scheme file name: " + fileName);
+
+		File file = new File(directory, fileName);
+
+		ScoringScheme current = file.isFile() ? getCurrentVersion(file) : null;
+
+		if (current != null && (hash == null || hash.equals(s_fileSchemes.get(file).m_hash)))
+			return current;
+
+		if (hash != null)
+		{
+			ScoringScheme version = s_fileVersions.get(getVersionKey(fileName, hash));
+
+			if (version != null)
+				return version;
+
+			File versionFile = getVersionFile(directory, hash);
+
+			if (versionFile.isFile())
+			{
+				byte[] contents = FileUtil.readContents(versionFile);
+
+				if (hash.equals(hash(contents)))
+					return parse(contents, fileName, hash);
+
+				Log.e(LOG_TAG, "Ignoring damaged copy of scoring scheme: " + versionFile.getAbsolutePath());
+			}
+		}
+
+		if (current == null)
+			throw new MissingScoringSchemeException("Scoring scheme file not found: " + fileName);
+
+		Log.w(LOG_TAG, "Version of scoring scheme not found, using current version: " + fileName + " " + hash);
+
+		return current;
+	}
+
+	/**
+	 * @return	The scheme in a file, which is only parsed again if the file has changed since
+	 * 			it was last loaded.
+	 */
+	private static ScoringScheme getCurrentVersion(File file) throws IOException
+	{
+		FileScheme fileScheme = s_fileSchemes.get(file);
+
+		if (fileScheme != null && fileScheme.matches(file))
+			return fileScheme.m_scheme;
+
+		byte[]	contents	= FileUtil.readContents(file);
+		String	hash		= hash(contents);
+
+		if (fileScheme != null && hash.equals(fileScheme.m_hash))
+		{
+			// Touched, but not changed.
+			fileScheme.m_lastModified	= file.lastModified();
+			fileScheme.m_length			= file.length();
+
+			return fileScheme.m_scheme;
+		}
+
+		ScoringScheme scheme = s_fileVersions.get(getVersionKey(file.getName(), hash));
+
+		if (scheme == null)
+			scheme = parse(contents, file.getName(), hash);
+
+		saveVersion(getVersionFile(file.getParentFile(), hash), contents);
+		s_fileSchemes.put(file, new FileScheme(file, hash, scheme));
+
+		return scheme;
+	}
+
+	private static ScoringScheme parse(byte[] contents, String fileName, String hash) throws IOException
+	{
+		ScoringScheme scheme = ScoringScheme.fromJson(new ByteArrayInputStream(contents), fileName, hash);
+
+		s_fileVersions.put(getVersionKey(fileName, hash), scheme);
+
+		return scheme;
+	}
+
+	/**
+	 * Keep a copy of a version of a scheme file, so that games played with it can still be
+	 * loaded with it after the file changes.
+	 */
+	private static void saveVersion(File versionFile, byte[] contents)
+	{
+		if (versionFile.exists())
+			return;
+
+		File directory = versionFile.getParentFile();
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			Log.e(LOG_TAG, "Cannot create directory: " + directory.getAbsolutePath());
+			return;
+		}
+
+		try (FileOutputStream out = new FileOutputStream(versionFile))
+		{
+			out.write(contents);
+		}
+		catch (IOException ioe)
+		{
+			// Not fatal.  A damaged copy is detected by its hash.
+			Log.e(LOG_TAG, "Cannot save copy of scoring scheme: " + versionFile.getAbsolutePath() + " " + ioe.getMessage());
+		}
+	}
+
+	static File getVersionFile(File directory, String hash)
+	{
+		return new File(new File(directory, VERSION_DIRECTORY), hash + SCHEME_SUFFIX);
+	}
+
+	private static String getVersionKey(String fileName, String hash)
+	{
+		return fileName + ":" + hash;
+	}
+
+	/**
+	 * @return	The SHA-256 hash of the contents of a file, in hex.
+	 */
+	static String hash(byte[] contents)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(contents);
+			StringBuilder hash = new StringBuilder(digest.length * 2);
+
+			for (byte b : digest)
+				hash.append(String.format("%02x", b & 0xFF));
+
+			return hash.toString();
+		}
+		catch (NoSuchAlgorithmException nsae)
+		{
+			throw new InternalException("SHA-256 not available");
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -7,22 +8,42 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import house.mcintosh.mahjong.exception.InternalException;
 import house.mcintosh.mahjong.exception.InvalidGameStateException;
 import house.mcintosh.mahjong.exception.InvalidModelException;
+import house.mcintosh.mahjong.exception.LoadException;
 import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
 import house.mcintosh.mahjong.util.JsonUtil;
 
 public final class Game
 {
-	private Player[]				m_seats				= new Player[4];;
+	private static final int		SEAT_COUNT			= 4;
+
+	/** The version of the game written by writeTo(). */
+	private static final int		BINARY_VERSION		= 1;
+
+	/** Flags for each seat, written by writeTo(). */
+	static final int				SEAT_STARTING_PLAYER	= 1;
+	static final int				SEAT_ENDING_PLAYER		= 2;
+	static final int				SEAT_EAST_PLAYER		= 4;
+
+	private Player[]				m_seats				= new Player[SEAT_COUNT];
 	private int						m_seatsOccupied		= 0;
 	private List<Round>				m_rounds			= new ArrayList<>();
 	private boolean					m_started			= false;
@@ -31,7 +52,29 @@ public final class Game
 	private final ScoringScheme		m_scheme;
 	private final GameMeta			m_meta;
 
-	List<Map<Player, Integer>> 		m_allRoundStartScores	= new ArrayList<>();
+	/**
+	 * The players in the order in which they took their seats.  Unlike m_seats, this is not
+	 * changed by rotateSeats(), so the index of a player in it is used to index their scores.
+	 */
+	private final Player[]			m_scoreColumns		= new Player[SEAT_COUNT];
+
+	/**
+	 * The scores at the start of each round, as a row of SEAT_COUNT scores for each round,
+	 * indexed by score column.  Row 0 holds the initial scores, and the row after the last
+	 * round holds the current scores.
+	 */
+	private int[]					m_scoreHistory		= new int[SEAT_COUNT * 16];
+	private int						m_scoreRowCount		= 1;
+	/** Set while score maps handed out share m_scoreHistory, so it is copied before it is next changed. */
+	private boolean					m_scoreHistoryShared	= false;
+
+	/** Created when first needed, because it reads every hand in the game. */
+	private GameStatistics			m_statistics		= null;
+
+	/** The change made to the game by each round in m_rounds, so that rounds can be undone. */
+	private List<RoundDelta>		m_deltas			= new ArrayList<>();
+	/** Rounds that have been undone and can be redone, most recently undone last. */
+	private List<RoundDelta>		m_redoDeltas		= new ArrayList<>();
 	
 	private Player		m_startingPlayer;
 	private Player		m_endingPlayer;
@@ -47,9 +90,6 @@ public final class Game
 	{
 		m_scheme = scheme;
 		m_meta = meta;
-
-		// Create an initial score map to hold the scores for the start of round 1.
-		m_allRoundStartScores.add(new HashMap<Player, Integer>());
 	}
 
 	public ObjectNode toJson()
@@ -104,12 +144,98 @@ public final class Game
 		return game;
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+		writeJsonFields(generator);
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Write the fields of the json written by writeJson(), so that the caller can add fields
+	 * of its own to the same object.
+	 */
+	public void writeJsonFields(JsonGenerator generator) throws IOException
+	{
+		generator.writeStringField("version", "1");
+		generator.writeFieldName("meta");
+		m_meta.writeJson(generator);
+
+		generator.writeArrayFieldStart("players");
+
+		for (Player player : m_seats)
+		{
+			if (player != null)
+				player.writeJson(generator);
+		}
+
+		generator.writeEndArray();
+		generator.writeArrayFieldStart("seats");
+
+		for (Player player : m_seats)
+		{
+			generator.writeStartObject();
+
+			if (player != null)
+			{
+				generator.writeStringField("playerId", player.getId());
+
+				if (player.equals(m_startingPlayer))
+					generator.writeBooleanField("startingPlayer", true);
+
+				if (player.equals(m_endingPlayer))
+					generator.writeBooleanField("endingPlayer", true);
+
+				if (player.equals(m_eastPlayer))
+					generator.writeBooleanField("eastPlayer", true);
+			}
+
+			generator.writeEndObject();
+		}
+
+		generator.writeEndArray();
+		generator.writeArrayFieldStart("rounds");
+
+		for (Round round : m_rounds)
+			round.writeJson(generator);
+
+		generator.writeEndArray();
+		generator.writeObjectFieldStart("scores");
+
+		for (Player player : m_seats)
+		{
+			if (player != null)
+				generator.writeNumberField(player.getId(), getPlayerScore(player));
+		}
+
+		generator.writeEndObject();
+		generator.writeBooleanField("started", m_started);
+		generator.writeBooleanField("finished", m_finished);
+		generator.writeStringField("prevailingWind", m_prevailingWind.name());
+		generator.writeFieldName("scoringScheme");
+		m_scheme.writeIdJson(generator);
+	}
+
 	static public ObjectNode getScoringSchemeId(JsonNode gameNode)
 	{
 		return (ObjectNode)gameNode.get("scoringScheme");
 	}
 
 	static public Game fromJson(JsonNode gameNode, ScoringScheme scheme)
+	{
+		return fromJson(gameNode, scheme, false);
+	}
+
+	/**
+	 * @param verifyScores	True to score every hand while loading, and check that the scores
+	 *                     	saved in the game match.  Otherwise the saved scores are trusted,
+	 *                     	and hands are only scored when they are needed.
+	 * @throws LoadException if the scores are being verified, and do not match.
+	 */
+	static public Game fromJson(JsonNode gameNode, ScoringScheme scheme, boolean verifyScores)
 	{
 		GameMeta meta = GameMeta.fromJson(gameNode.path("meta"));
 
@@ -135,10 +261,7 @@ public final class Game
 
 			Player player = Player.get(new PlayerId(seatNode.get("playerId")));
 			game.m_seats[i] = player;
-
-			game.m_allRoundStartScores.get(0).put(player, game.m_scheme.InitialScore);
-
-			game.m_seatsOccupied++;
+			game.addScoreColumn(player);
 
 			if (seatNode.path("startingPlayer").asBoolean(false))
 				game.m_startingPlayer = player;
@@ -162,12 +285,230 @@ public final class Game
 
 		for (JsonNode roundNode : roundsNode)
 		{
-			game.addRound(Round.fromJson(roundNode, scheme));
+			game.addRound(Round.fromJson(roundNode, scheme, verifyScores));
+		}
+
+		if (verifyScores)
+		{
+			JsonNode scoresNode = gameNode.path("scores");
+
+			for (Player player : game.getPlayers())
+			{
+				JsonNode scoreNode = scoresNode.path(player.getId());
+
+				if (!scoreNode.isMissingNode() && scoreNode.asInt() != game.getPlayerScore(player))
+					throw new LoadException("Saved game score does not match the scoring scheme, for player " + player);
+			}
 		}
 
 		return game;
 	}
 	
+	/**
+	 * Write the game in a compact binary form, which holds the same information as toJson().
+	 * Players are written once, and are referred to by their index in the list of players
+	 * after that.  The rounds are written as a block that can be skipped over.
+	 */
+	public void writeTo(BinaryOutput output)
+	{
+		output.writeVarint(BINARY_VERSION);
+
+		ObjectNode schemeId = m_scheme.getIdJson();
+		String fileName = ScoringScheme.getFileName(schemeId);
+		String hash = ScoringScheme.getHash(schemeId);
+
+		output.writeVarint(ScoringScheme.getResourceId(schemeId));
+		output.writeBoolean(fileName != null);
+
+		if (fileName != null)
+			output.writeString(fileName);
+
+		output.writeBoolean(hash != null);
+
+		if (hash != null)
+			output.writeString(hash);
+
+		m_meta.writeTo(output);
+
+		List<Player> players = getPlayers();
+
+		output.writeVarint(players.size());
+
+		for (Player player : players)
+		{
+			output.writeString(player.getId());
+			output.writeString(player.getName());
+		}
+
+		for (Player player : m_seats)
+		{
+			if (player == null)
+			{
+				output.writeVarint(0);
+				continue;
+			}
+
+			int flags = 0;
+
+			if (player.equals(m_startingPlayer))
+				flags |= SEAT_STARTING_PLAYER;
+
+			if (player.equals(m_endingPlayer))
+				flags |= SEAT_ENDING_PLAYER;
+
+			if (player.equals(m_eastPlayer))
+				flags |= SEAT_EAST_PLAYER;
+
+			output.writeVarint(players.indexOf(player) + 1);
+			output.writeByte(flags);
+		}
+
+		output.writeBoolean(m_started);
+		output.writeBoolean(m_finished);
+		output.writeByte(m_prevailingWind.ordinal());
+
+		for (Player player : players)
+			output.writeSignedVarint(getPlayerScore(player));
+
+		BinaryOutput rounds = new BinaryOutput();
+
+		rounds.writeVarint(m_rounds.size());
+
+		for (Round round : m_rounds)
+			round.writeTo(rounds, players);
+
+		output.writeBlock(rounds);
+	}
+
+	/**
+	 * Read the version at the start of a game written by writeTo().  Then read the identity of
+	 * its scoring scheme with readScoringSchemeId(), load the scheme and continue with readFrom().
+	 */
+	static public void readBinaryVersion(BinaryInput input)
+	{
+		long version = input.readVarint();
+
+		if (version != BINARY_VERSION)
+			throw new LoadException("Unsupported game version: " + version);
+	}
+
+	/**
+	 * Read the identity of the scoring scheme of a game written by writeTo(), following
+	 * readBinaryVersion().
+	 *
+	 * @return	The scoring scheme id, as returned by getScoringSchemeId().
+	 */
+	static public ObjectNode readScoringSchemeId(BinaryInput input)
+	{
+		ObjectNode schemeId = JsonUtil.createObjectNode();
+
+		int resourceId = input.readInt();
+
+		if (resourceId != 0)
+			schemeId.put("resourceId", resourceId);
+
+		if (input.readBoolean())
+			schemeId.put("fileName", input.readString());
+
+		if (input.readBoolean())
+			schemeId.put("hash", input.readString());
+
+		return schemeId;
+	}
+
+	/**
+	 * Read the rest of a game written by writeTo(), following readScoringSchemeId().
+	 *
+	 * @param verifyScores	As for fromJson().
+	 */
+	static public Game readFrom(BinaryInput input, ScoringScheme scheme, boolean verifyScores)
+	{
+		Game game = new Game(scheme, GameMeta.readFrom(input));
+
+		// Create all the players so that they are available by ID from the cache inside Players.
+		List<Player> players = readPlayers(input);
+
+		for (int i = 0 ; i < SEAT_COUNT ; i++)
+		{
+			int playerIndex = input.readInt();
+
+			if (playerIndex == 0)
+				continue;
+
+			if (playerIndex > players.size())
+				throw new LoadException("Invalid player in binary data: " + playerIndex);
+
+			Player player = players.get(playerIndex - 1);
+			int flags = input.readByte();
+
+			game.m_seats[i] = player;
+			game.addScoreColumn(player);
+
+			if ((flags & SEAT_STARTING_PLAYER) != 0)
+				game.m_startingPlayer = player;
+
+			if ((flags & SEAT_ENDING_PLAYER) != 0)
+				game.m_endingPlayer = player;
+
+			if ((flags & SEAT_EAST_PLAYER) != 0)
+				game.m_eastPlayer = player;
+		}
+
+		// Initialise the game state indicators.
+
+		game.startGame(game.m_startingPlayer);
+
+		game.m_started = input.readBoolean();
+
+		// The rest of the state, and the scores, are worked out from the rounds.
+
+		input.readBoolean();
+		input.readByte();
+
+		int[] scores = new int[players.size()];
+
+		for (int i = 0 ; i < players.size() ; i++)
+			scores[i] = (int)input.readSignedVarint();
+
+		// Load the rounds.
+
+		BinaryInput rounds = input.readBlock();
+		int roundCount = rounds.readInt();
+
+		for (int i = 0 ; i < roundCount ; i++)
+			game.addRound(Round.readFrom(rounds, scheme, players, verifyScores));
+
+		if (verifyScores)
+		{
+			for (int i = 0 ; i < players.size() ; i++)
+			{
+				if (scores[i] != game.getPlayerScore(players.get(i)))
+					throw new LoadException("Saved game score does not match the scoring scheme, for player " + players.get(i));
+			}
+		}
+
+		return game;
+	}
+
+	static List<Player> readPlayers(BinaryInput input)
+	{
+		int playerCount = input.readInt();
+
+		if (playerCount > SEAT_COUNT)
+			throw new LoadException("Too many players in binary data: " + playerCount);
+
+		List<Player> players = new ArrayList<>(playerCount);
+
+		for (int i = 0 ; i < playerCount ; i++)
+		{
+			PlayerId id = new PlayerId(input.readString());
+
+			players.add(Player.getOrCreate(id, input.readString()));
+		}
+
+		return players;
+	}
+
 	public void setPlayer(Player player, int index)
 	{
 		if (m_started)
@@ -180,9 +521,35 @@ public final class Game
 			throw new InvalidModelException("Seat already occupied.");
 		
 		m_seats[index] = player;
+		addScoreColumn(player);
+	}
+
+	/**
+	 * Give a newly seated player a column in the score history, with the initial score.
+	 */
+	private void addScoreColumn(Player player)
+	{
+		prepareScoreHistory(1);
+
+		m_scoreColumns[m_seatsOccupied] = player;
+		m_scoreHistory[m_seatsOccupied] = m_scheme.InitialScore;
+
 		m_seatsOccupied++;
+	}
+
+	/**
+	 * @return	The index of the player's scores within each row of the score history, or -1
+	 * 			if the player is not in the game.
+	 */
+	private int getScoreColumn(Object player)
+	{
+		for (int column = 0 ; column < m_seatsOccupied ; column++)
+		{
+			if (m_scoreColumns[column].equals(player))
+				return column;
+		}
 
-		m_allRoundStartScores.get(0).put(player, m_scheme.InitialScore);
+		return -1;
 	}
 
 	public Player getPlayer(int index)
@@ -260,85 +627,160 @@ public final class Game
 		
 		if (m_finished)
 			throw new InvalidGameStateException("Game is finished.");
-		
-		m_rounds.add(round);
-		
-		// Update the score with the new round scores.
 
-		Map<Player, Integer> thisRoundStartScores = m_allRoundStartScores.get(m_allRoundStartScores.size()-1);
-		Map<Player, Integer> nextRoundStartScores = new HashMap<>();
-		
-		for (Player player : m_seats)
+		// A new round replaces any rounds that were undone.
+
+		m_redoDeltas.clear();
+
+		applyDelta(createDelta(round, m_eastPlayer, m_prevailingWind));
+	}
+
+	/**
+	 * Replace an earlier round, for example to correct a mistake in one of the hands.  Scores
+	 * and the position of play are only recalculated from the replaced round onwards, and
+	 * the position of play only until it matches the position before the replacement.
+	 *
+	 * @throws InvalidGameStateException if the game would finish before the last round.
+	 */
+	public void replaceRound(int index, Round round)
+	{
+		if (index < 0 || index >= m_rounds.size())
+			throw new InvalidModelException("Invalid round index: " + index);
+
+		// Work out the new deltas before changing anything, in case the replacement is invalid.
+
+		RoundDelta			oldDelta	= m_deltas.get(index);
+		RoundDelta			delta		= createDelta(round, oldDelta.eastPlayerBefore, oldDelta.prevailingWindBefore);
+		List<RoundDelta>	newDeltas	= new ArrayList<>();
+
+		newDeltas.add(delta);
+
+		for (int i = index + 1 ; i < m_deltas.size() ; i++)
 		{
-			if (player == null)
-				continue;
-			
-			Integer currentScore = thisRoundStartScores.get(player);
-			Integer changedScore = currentScore + round.getPlayerScore(player);
+			if (delta.finishedAfter)
+				throw new InvalidGameStateException("Replacement round would finish the game before round " + (i + 1) + ".");
+
+			RoundDelta laterDelta = m_deltas.get(i);
+
+			// Once the position of play is back on the old timeline, the later deltas still apply.
+
+			if (laterDelta.eastPlayerBefore.equals(delta.eastPlayerAfter) && laterDelta.prevailingWindBefore == delta.prevailingWindAfter)
+				break;
+
+			// Otherwise the later round was played with different winds, so rescore its hands.
+
+			Round laterRound = laterDelta.round.withWinds(delta.prevailingWindAfter, getPlayerWinds(delta.eastPlayerAfter));
 
-			nextRoundStartScores.put(player, changedScore);
+			delta = createDelta(laterRound, delta.eastPlayerAfter, delta.prevailingWindAfter);
+			newDeltas.add(delta);
 		}
 
-		m_allRoundStartScores.add(nextRoundStartScores);
-		
+		List<Round> oldRounds = new ArrayList<>(newDeltas.size());
+
+		for (int i = 0 ; i < newDeltas.size() ; i++)
+		{
+			RoundDelta newDelta = newDeltas.get(i);
+
+			oldRounds.add(m_rounds.get(index + i));
+			m_deltas.set(index + i, newDelta);
+			m_rounds.set(index + i, newDelta.round);
+		}
+
+		if (m_statistics != null)
+			m_statistics.replaceRounds(index, oldRounds, m_rounds);
+
+		// Scores at the start of rounds up to and including the replaced round are unchanged.
+
+		prepareScoreHistory(m_scoreRowCount);
+
+		for (int i = index ; i < m_deltas.size() ; i++)
+			setScoreRow(i + 1, m_deltas.get(i).scoreChanges);
+
+		RoundDelta lastDelta = m_deltas.get(m_deltas.size() - 1);
+
+		m_eastPlayer		= lastDelta.eastPlayerAfter;
+		m_prevailingWind	= lastDelta.prevailingWindAfter;
+		m_finished			= lastDelta.finishedAfter;
+
+		m_redoDeltas.clear();
+	}
+
+	/**
+	 * Work out the change that adding a round makes to the game, from the given position of
+	 * play, without changing the game.
+	 */
+	private RoundDelta createDelta(Round round, Player startEastPlayer, Wind startPrevailingWind)
+	{
+		// The score changes for the round.
+
+		int[] scoreChanges = new int[SEAT_COUNT];
+
+		for (int column = 0 ; column < m_seatsOccupied ; column++)
+			scoreChanges[column] = round.getPlayerScore(m_scoreColumns[column]);
+
 		// Move the player and prevailing wind on to the next round.
 
-		if (round.getHand(m_eastPlayer).isMahjong())
+		Player	eastPlayer		= startEastPlayer;
+		Wind	prevailingWind	= startPrevailingWind;
+		boolean	finished		= false;
+
+		if (round.isMahjong(startEastPlayer))
+		{
 			// Continue game without moving east player on.
-			return;
-		
-		// Check for the end of the game.
-		
-		if (m_eastPlayer.equals(m_endingPlayer) && m_prevailingWind == Wind.NORTH)
+		}
+		else if (startEastPlayer.equals(m_endingPlayer) && startPrevailingWind == Wind.NORTH)
 		{
-			m_finished = true;
-			return;
+			// End of the game.
+			finished = true;
 		}
-		
-		//Step east player forward to find the next player.
-		int eastPlayerIndex = findPlayerIndex(m_eastPlayer);
-		
-		do
+		else
 		{
-			eastPlayerIndex++;
-			
-			if (eastPlayerIndex >= m_seats.length)
-				eastPlayerIndex = 0;
+			//Step east player forward to find the next player.
+			int eastPlayerIndex = findPlayerIndex(startEastPlayer);
+
+			do
+			{
+				eastPlayerIndex++;
+
+				if (eastPlayerIndex >= m_seats.length)
+					eastPlayerIndex = 0;
+			}
+			while (m_seats[eastPlayerIndex] == null);
+
+			eastPlayer = m_seats[eastPlayerIndex];
+
+			if (eastPlayer == m_startingPlayer)
+				prevailingWind = prevailingWind.next();
 		}
-		while (m_seats[eastPlayerIndex] == null);
-		
-		m_eastPlayer = m_seats[eastPlayerIndex];
-		
-		if (m_eastPlayer == m_startingPlayer)
-			m_prevailingWind = m_prevailingWind.next();
+
+		return new RoundDelta(round, scoreChanges, startEastPlayer, eastPlayer, startPrevailingWind, prevailingWind, finished);
 	}
 
-	private List<Round> clearGame()
+	/**
+	 * Add the round in a delta to the game, moving the game on to the state after the round.
+	 */
+	private void applyDelta(RoundDelta delta)
 	{
-		List<Round> allRounds = m_rounds;
+		m_rounds.add(delta.round);
 
-		m_rounds = new ArrayList<>();
-		m_prevailingWind = Wind.EAST;
-		m_eastPlayer = m_startingPlayer;
-		m_finished = false;
+		// Update the score with the new round scores.
 
-		// Reset the scores.
+		prepareScoreHistory(m_scoreRowCount + 1);
+		setScoreRow(m_scoreRowCount++, delta.scoreChanges);
 
-		Map<Player, Integer> initialScores = new HashMap<>();
+		m_eastPlayer		= delta.eastPlayerAfter;
+		m_prevailingWind	= delta.prevailingWindAfter;
+		m_finished			= delta.finishedAfter;
 
-		for (Player player : m_seats)
-		{
-			if (player != null)
-				initialScores.put(player, m_scheme.InitialScore);
-		}
+		m_deltas.add(delta);
 
-		m_allRoundStartScores = new ArrayList<Map<Player, Integer>>();
-		m_allRoundStartScores.add(initialScores);
-		return allRounds;
+		if (m_statistics != null)
+			m_statistics.addRound(delta.round);
 	}
 
 	/**
-	 * Remove the last added round from the hand and return it.
+	 * Remove the last added round from the hand and return it.  The round can be added back
+	 * with redoRound(), until another round is added.
 	 *
 	 * @return The last added round or null if there is no round to return.
 	 */
@@ -347,39 +789,139 @@ public final class Game
 		if (m_rounds.size() == 0)
 			return null;
 
-		// To get the state of the game back to the way it was before the removed round,
-		// set it back to the start of the game, and add all the rounds again except for the
-		// last one.  Simplistic but simple and avoids complicated calculations to reverse
-		// scores and the position of play.
+		// Restore the state from before the round, without replaying the earlier rounds.
+		// A round can only be added to an unfinished game, so the game was not finished.
 
-		List<Round> allRounds = clearGame();
+		int lastRoundIndex = m_rounds.size() - 1;
 
-		// Add all the rounds to the game, except the most recent one.
+		RoundDelta delta = m_deltas.remove(lastRoundIndex);
 
-		int lastRoundIndex = allRounds.size() - 1;
+		m_rounds.remove(lastRoundIndex);
+		m_scoreRowCount--;
 
-		for (int i = 0 ; i < lastRoundIndex ; i++)
-		{
-			addRound(allRounds.get(i));
-		}
+		if (m_statistics != null)
+			m_statistics.removeLastRound(delta.round);
+
+		m_eastPlayer		= delta.eastPlayerBefore;
+		m_prevailingWind	= delta.prevailingWindBefore;
+		m_finished			= false;
+
+		m_redoDeltas.add(delta);
+
+		return delta.round;
+	}
+
+	/**
+	 * Undo the last added round.  The same as popRound().
+	 *
+	 * @return	The round that was undone, or null if there are no rounds.
+	 */
+	public Round undoRound()
+	{
+		return popRound();
+	}
+
+	/**
+	 * Add back the most recently undone round.
+	 *
+	 * @return	The round that was redone, or null if there is no round to redo.
+	 */
+	public Round redoRound()
+	{
+		if (m_redoDeltas.isEmpty())
+			return null;
+
+		RoundDelta delta = m_redoDeltas.remove(m_redoDeltas.size() - 1);
+
+		applyDelta(delta);
+
+		return delta.round;
+	}
+
+	public boolean canUndo()
+	{
+		return !m_rounds.isEmpty();
+	}
+
+	public boolean canRedo()
+	{
+		return !m_redoDeltas.isEmpty();
+	}
+
+	/**
+	 * Make the score history big enough for a number of rows, and not shared with any score
+	 * maps that have been handed out, so that it can be changed.
+	 */
+	private void prepareScoreHistory(int rowCount)
+	{
+		if (m_scoreHistory.length < rowCount * SEAT_COUNT)
+			m_scoreHistory = Arrays.copyOf(m_scoreHistory, Math.max(m_scoreHistory.length * 2, rowCount * SEAT_COUNT));
+		else if (m_scoreHistoryShared)
+			m_scoreHistory = m_scoreHistory.clone();
+
+		m_scoreHistoryShared = false;
+	}
+
+	/**
+	 * @return	A score map for a row of the score history as it is now.  The map shares the
+	 * 			history until the game next changes it.
+	 */
+	private Map<Player, Integer> getScoreRow(int row)
+	{
+		m_scoreHistoryShared = true;
+
+		return new ScoreRow(m_scoreHistory, row, m_seatsOccupied);
+	}
 
-		return allRounds.get(lastRoundIndex);
+	/**
+	 * Set a row of the score history from the row before it and the score changes in between.
+	 */
+	private void setScoreRow(int row, int[] scoreChanges)
+	{
+		int previousRowStart	= (row - 1) * SEAT_COUNT;
+		int rowStart			= row * SEAT_COUNT;
+
+		for (int column = 0 ; column < SEAT_COUNT ; column++)
+			m_scoreHistory[rowStart + column] = m_scoreHistory[previousRowStart + column] + scoreChanges[column];
 	}
 
 	/**
 	 * Get all the scores for all rounds in the game.
 	 *
 	 * @return	A list of maps.  Each map has key Player, and value is the score for that player.
-	 * 			Entries in the list match the list returned by getRounds().
+	 * 			Entries in the list match the list returned by getRounds().  The list and maps
+	 * 			are read only, and hold the scores as they are when this is called.
 	 */
 	public List<Map<Player, Integer>> getRoundScores()
 	{
-		return m_allRoundStartScores.subList(1, m_allRoundStartScores.size());
+		m_scoreHistoryShared = true;
+
+		final int[]	history		= m_scoreHistory;
+		final int	roundCount	= m_scoreRowCount - 1;
+		final int	seatCount	= m_seatsOccupied;
+
+		return new AbstractList<Map<Player, Integer>>()
+		{
+			@Override
+			public Map<Player, Integer> get(int index)
+			{
+				if (index < 0 || index >= roundCount)
+					throw new IndexOutOfBoundsException("Invalid round index: " + index);
+
+				return new ScoreRow(history, index + 1, seatCount);
+			}
+
+			@Override
+			public int size()
+			{
+				return roundCount;
+			}
+		};
 	}
 
 	public Map<Player, Integer> getIntialScores()
 	{
-		return  m_allRoundStartScores.get(0);
+		return getScoreRow(0);
 	}
 
 	/**
@@ -388,7 +930,7 @@ public final class Game
 	 */
 	public Map<Player, Integer> getLastRoundEndScores()
 	{
-		return  m_allRoundStartScores.get(m_allRoundStartScores.size()-1);
+		return getScoreRow(m_scoreRowCount - 1);
 	}
 
 	/**
@@ -397,12 +939,12 @@ public final class Game
 	 */
 	public Map<Player, Integer> getLastRoundStartScores()
 	{
-		int roundStartIndex = m_allRoundStartScores.size() - 2;
+		int roundStartIndex = m_scoreRowCount - 2;
 
 		if (roundStartIndex < 0)
 			return null;
 
-		return  m_allRoundStartScores.get(roundStartIndex);
+		return getScoreRow(roundStartIndex);
 	}
 
 	public Round getLastRound()
@@ -451,15 +993,53 @@ public final class Game
 			wind	= wind.next();
 		}
 	}
+
+	/**
+	 * @return	The wind of each seated player when the given player is east.
+	 */
+	private Map<Player, Wind> getPlayerWinds(Player eastPlayer)
+	{
+		Map<Player, Wind>	winds	= new HashMap<>();
+		int					index	= findPlayerIndex(eastPlayer);
+		Wind				wind	= Wind.EAST;
+
+		for (int i = 0 ; i < m_seats.length ; i++)
+		{
+			if (m_seats[index] != null)
+				winds.put(m_seats[index], wind);
+
+			index	= (index+1) % m_seats.length;
+			wind	= wind.next();
+		}
+
+		return winds;
+	}
 	
 	public int getPlayerScore(Player player)
 	{
-		Integer score = m_allRoundStartScores.get(m_allRoundStartScores.size()-1).get(player);
+		int column = getScoreColumn(player);
+
+		if (column < 0)
+			throw new InvalidModelException("Player not found");
+
+		return m_scoreHistory[(m_scoreRowCount - 1) * SEAT_COUNT + column];
+	}
+
+	/**
+	 * @return	Statistics about the hands in the game, which are worked out when first asked
+	 * 			for and then kept up to date as rounds are added and removed.
+	 */
+	public GameStatistics getStatistics()
+	{
+		if (m_statistics == null)
+		{
+			m_statistics = new GameStatistics(m_scoreColumns, m_scheme);
 
-		if (score == null)
-			System.out.println("got null score for " + player.toJson());
+			for (Round round : m_rounds)
+				m_statistics.addRound(round);
+		}
 
-		return score;
+		return m_statistics;
 	}
 
 	public ScoringScheme getScoringScheme()
@@ -513,4 +1093,128 @@ public final class Game
 	{
 		return m_meta;
 	}
+
+	/**
+	 * A read only map of one row of the score history, keyed by player.  The history is not
+	 * changed while it is shared with a ScoreRow, so the scores do not change as the game does.
+	 */
+	private final class ScoreRow extends AbstractMap<Player, Integer>
+	{
+		private final int[]	m_history;
+		private final int	m_rowStart;
+		private final int	m_seatCount;
+
+		ScoreRow(int[] history, int row, int seatCount)
+		{
+			m_history	= history;
+			m_rowStart	= row * SEAT_COUNT;
+			m_seatCount	= seatCount;
+		}
+
+		/**
+		 * @return	The player's score column, or -1 if they were not seated when the row was taken.
+		 */
+		private int getColumn(Object player)
+		{
+			int column = getScoreColumn(player);
+
+			return column < m_seatCount ? column : -1;
+		}
+
+		@Override
+		public Integer get(Object player)
+		{
+			int column = getColumn(player);
+
+			if (column < 0)
+				return null;
+
+			return m_history[m_rowStart + column];
+		}
+
+		@Override
+		public boolean containsKey(Object player)
+		{
+			return getColumn(player) >= 0;
+		}
+
+		@Override
+		public int size()
+		{
+			return m_seatCount;
+		}
+
+		@Override
+		public Set<Map.Entry<Player, Integer>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Player, Integer>>()
+			{
+				@Override
+				public Iterator<Map.Entry<Player, Integer>> iterator()
+				{
+					return new Iterator<Map.Entry<Player, Integer>>()
+					{
+						private int m_column = 0;
+
+						@Override
+						public boolean hasNext()
+						{
+							return m_column < m_seatCount;
+						}
+
+						@Override
+						public Map.Entry<Player, Integer> next()
+						{
+							if (!hasNext())
+								throw new NoSuchElementException();
+
+							int column = m_column++;
+
+							return new SimpleImmutableEntry<>(m_scoreColumns[column], m_history[m_rowStart + column]);
+						}
+					};
+				}
+
+				@Override
+				public int size()
+				{
+					return m_seatCount;
+				}
+			};
+		}
+	}
+
+	/**
+	 * The change made to the state of a game by adding a round.  The game was never finished
+	 * before a round was added.
+	 */
+	private static final class RoundDelta
+	{
+		final Round					round;
+		/** Indexed by score column. */
+		final int[]					scoreChanges;
+		final Player				eastPlayerBefore;
+		final Player				eastPlayerAfter;
+		final Wind					prevailingWindBefore;
+		final Wind					prevailingWindAfter;
+		final boolean				finishedAfter;
+
+		RoundDelta(
+				Round round,
+				int[] scoreChanges,
+				Player eastPlayerBefore,
+				Player eastPlayerAfter,
+				Wind prevailingWindBefore,
+				Wind prevailingWindAfter,
+				boolean finishedAfter)
+		{
+			this.round = round;
+			this.scoreChanges = scoreChanges;
+			this.eastPlayerBefore = eastPlayerBefore;
+			this.eastPlayerAfter = eastPlayerAfter;
+			this.prevailingWindBefore = prevailingWindBefore;
+			this.prevailingWindAfter = prevailingWindAfter;
+			this.finishedAfter = finishedAfter;
+		}
+	}
 }
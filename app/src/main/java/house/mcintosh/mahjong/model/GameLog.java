@@ -0,0 +1,354 @@
+package house.mcintosh.mahjong.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import house.mcintosh.mahjong.exception.LoadException;
+import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.JsonUtil;
+
+/**
+ * A log of everything that has been done to a game, as a list of events, with snapshots of the
+ * game taken every few events.  Changes should be made through the log, which applies them to
+ * the current game and records them.
+ *
+ * The state of the game at any point in the log can be rebuilt from the snapshot before that
+ * point and the events since the snapshot, without replaying the whole log.  Snapshots use the
+ * same json as Game.toJson().
+ *
+ * Each snapshot is a whole game, so only a limited number are kept.  When there would be too
+ * many, every other one is discarded and the interval between them doubles.  The snapshots then
+ * take space in proportion to the size of the game, at the cost of longer replays in long logs.
+ */
+public final class GameLog
+{
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 32;
+
+	/** Must be even, so that the newest snapshot survives thinning. */
+	static final int MAX_SNAPSHOTS = 64;
+
+	private static final String ROUND_ADDED		= "roundAdded";
+	private static final String ROUND_REPLACED	= "roundReplaced";
+	private static final String ROUND_REMOVED	= "roundRemoved";
+	private static final String SEATS_ROTATED	= "seatsRotated";
+	private static final String PLAYER_RENAMED	= "playerRenamed";
+
+	private final ScoringScheme		m_scheme;
+	private int						m_snapshotInterval;
+
+	private final Game				m_game;
+	private final List<ObjectNode>	m_events	= new ArrayList<>();
+
+	/** Snapshot i is the game after i * m_snapshotInterval events. */
+	private final List<ObjectNode>	m_snapshots	= new ArrayList<>();
+
+	/**
+	 * For each number of rounds, the most recent number of events after which the game had
+	 * that many rounds, or -1 if it never had.
+	 */
+	private int[]					m_latestEventCountForRounds;
+
+	public GameLog(Game game)
+	{
+		this(game, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	public GameLog(Game game, int snapshotInterval)
+	{
+		m_scheme = game.getScoringScheme();
+		m_snapshotInterval = snapshotInterval;
+		m_game = game;
+
+		m_latestEventCountForRounds = new int[game.getRoundCount() + 16];
+		Arrays.fill(m_latestEventCountForRounds, -1);
+
+		m_snapshots.add(game.toJson());
+		m_latestEventCountForRounds[game.getRoundCount()] = 0;
+	}
+
+	/**
+	 * @return	The current state of the game.  Should only be changed through the log.
+	 */
+	public Game getGame()
+	{
+		return m_game;
+	}
+
+	public int getEventCount()
+	{
+		return m_events.size();
+	}
+
+	public void addRound(Round round)
+	{
+		m_game.addRound(round);
+
+		ObjectNode event = createEvent(ROUND_ADDED);
+		event.set("round", round.toJson());
+		append(event);
+	}
+
+	public void replaceRound(int index, Round round)
+	{
+		m_game.replaceRound(index, round);
+
+		ObjectNode event = createEvent(ROUND_REPLACED);
+		event.put("index", index);
+		event.set("round", round.toJson());
+		append(event);
+	}
+
+	/**
+	 * @return	The removed round, or null if there were no rounds.
+	 */
+	public Round popRound()
+	{
+		Round round = m_game.popRound();
+
+		if (round != null)
+			append(createEvent(ROUND_REMOVED));
+
+		return round;
+	}
+
+	public void rotateSeats()
+	{
+		m_game.rotateSeats();
+
+		append(createEvent(SEATS_ROTATED));
+	}
+
+	public void renamePlayer(Player player, String name)
+	{
+		player.setName(name);
+
+		ObjectNode event = createEvent(PLAYER_RENAMED);
+		event.put("playerId", player.getId());
+		event.put("name", name);
+		append(event);
+	}
+
+	/**
+	 * Rebuild the game as it was after a number of events.
+	 *
+	 * Players are shared by all games, so their names are always the current names.
+	 */
+	public Game getGameAfterEvents(int eventCount)
+	{
+		if (eventCount < 0 || eventCount > m_events.size())
+			throw new IndexOutOfBoundsException("Invalid event count: " + eventCount);
+
+		int snapshotIndex = Math.min(eventCount / m_snapshotInterval, m_snapshots.size() - 1);
+
+		Game game = Game.fromJson(m_snapshots.get(snapshotIndex), m_scheme);
+
+		for (int i = snapshotIndex * m_snapshotInterval ; i < eventCount ; i++)
+			apply(game, m_events.get(i), false);
+
+		return game;
+	}
+
+	/**
+	 * Rebuild the game as it was the most recent time that it had a number of rounds.
+	 *
+	 * @return	The game, or null if it never had that many rounds.
+	 */
+	public Game getGameAsOfRound(int roundCount)
+	{
+		if (roundCount < 0 || roundCount >= m_latestEventCountForRounds.length)
+			return null;
+
+		int eventCount = m_latestEventCountForRounds[roundCount];
+
+		if (eventCount < 0)
+			return null;
+
+		return getGameAfterEvents(eventCount);
+	}
+
+	private ObjectNode createEvent(String type)
+	{
+		ObjectNode event = JsonUtil.createObjectNode();
+
+		event.put("type", type);
+
+		return event;
+	}
+
+	/**
+	 * Record an event that has been applied to the current game.
+	 */
+	private void append(ObjectNode event)
+	{
+		int roundCount = m_game.getRoundCount();
+
+		event.put("roundCount", roundCount);
+		m_events.add(event);
+
+		recordRoundCount(roundCount, m_events.size());
+		snapshotIfDue();
+	}
+
+	/**
+	 * Take a snapshot of the current game if the events since the last one fill an interval.
+	 */
+	private void snapshotIfDue()
+	{
+		if (m_events.size() != m_snapshots.size() * m_snapshotInterval)
+			return;
+
+		m_snapshots.add(m_game.toJson());
+
+		if (m_snapshots.size() > MAX_SNAPSHOTS)
+		{
+			thinSnapshots(m_snapshots);
+			m_snapshotInterval *= 2;
+		}
+	}
+
+	/**
+	 * Discard every other snapshot, keeping the first.  The caller must double the interval.
+	 */
+	private static <T> void thinSnapshots(List<T> snapshots)
+	{
+		int kept = 0;
+
+		for (int i = 0 ; i < snapshots.size() ; i += 2)
+			snapshots.set(kept++, snapshots.get(i));
+
+		snapshots.subList(kept, snapshots.size()).clear();
+	}
+
+	private void recordRoundCount(int roundCount, int eventCount)
+	{
+		if (roundCount >= m_latestEventCountForRounds.length)
+		{
+			int oldLength = m_latestEventCountForRounds.length;
+
+			m_latestEventCountForRounds = Arrays.copyOf(m_latestEventCountForRounds, Math.max(oldLength * 2, roundCount + 1));
+			Arrays.fill(m_latestEventCountForRounds, oldLength, m_latestEventCountForRounds.length, -1);
+		}
+
+		m_latestEventCountForRounds[roundCount] = eventCount;
+	}
+
+	private void apply(Game game, ObjectNode event, boolean renamePlayers)
+	{
+		String type = event.path("type").asText("");
+
+		switch (type)
+		{
+		case ROUND_ADDED:
+			game.addRound(Round.fromJson(event.get("round"), m_scheme));
+			break;
+
+		case ROUND_REPLACED:
+			game.replaceRound(event.get("index").asInt(), Round.fromJson(event.get("round"), m_scheme));
+			break;
+
+		case ROUND_REMOVED:
+			game.popRound();
+			break;
+
+		case SEATS_ROTATED:
+			game.rotateSeats();
+			break;
+
+		case PLAYER_RENAMED:
+			if (renamePlayers)
+				Player.get(new PlayerId(event.get("playerId"))).setName(event.get("name").asText(""));
+			break;
+
+		default:
+			throw new LoadException("Unknown game event: " + type);
+		}
+	}
+
+	public ObjectNode toJson()
+	{
+		ObjectNode	log			= JsonUtil.createObjectNode();
+		ArrayNode	snapshots	= JsonUtil.createArrayNode();
+		ArrayNode	events		= JsonUtil.createArrayNode();
+
+		for (ObjectNode snapshot : m_snapshots)
+			snapshots.add(snapshot);
+
+		for (ObjectNode event : m_events)
+			events.add(event);
+
+		log.put("version", "1");
+		log.put("snapshotInterval", m_snapshotInterval);
+		log.set("snapshots", snapshots);
+		log.set("events", events);
+
+		return log;
+	}
+
+	/**
+	 * Restore a log, and rebuild the current game from the last snapshot and the events after it.
+	 */
+	static public GameLog fromJson(JsonNode logNode, ScoringScheme scheme)
+	{
+		int			snapshotInterval	= logNode.path("snapshotInterval").asInt(DEFAULT_SNAPSHOT_INTERVAL);
+		ArrayNode	snapshotsNode		= (ArrayNode) logNode.get("snapshots");
+		ArrayNode	events				= (ArrayNode) logNode.get("events");
+
+		if (snapshotsNode == null || snapshotsNode.size() == 0 || events == null)
+			throw new LoadException("Game log has no snapshots");
+
+		if ((snapshotsNode.size() - 1) * snapshotInterval > events.size())
+			throw new LoadException("Game log has more snapshots than events");
+
+		List<ObjectNode> snapshots = new ArrayList<>(snapshotsNode.size());
+
+		for (JsonNode snapshot : snapshotsNode)
+			snapshots.add((ObjectNode) snapshot);
+
+		// A log saved before snapshots were limited may have too many.
+
+		while (snapshots.size() > MAX_SNAPSHOTS)
+		{
+			thinSnapshots(snapshots);
+			snapshotInterval *= 2;
+		}
+
+		int lastSnapshotIndex	= snapshots.size() - 1;
+		int replayFrom			= lastSnapshotIndex * snapshotInterval;
+
+		// Create all the players that appear in the log, then rebuild the current game.
+
+		Game	firstGame		= Game.fromJson(snapshots.get(0), scheme);
+		int		firstRoundCount	= firstGame.getRoundCount();
+		Game	game			= lastSnapshotIndex == 0 ? firstGame : Game.fromJson(snapshots.get(lastSnapshotIndex), scheme);
+
+		GameLog log = new GameLog(game, snapshotInterval);
+
+		log.m_snapshots.clear();
+		log.m_snapshots.addAll(snapshots);
+		Arrays.fill(log.m_latestEventCountForRounds, -1);
+		log.recordRoundCount(firstRoundCount, 0);
+
+		for (int i = 0 ; i < events.size() ; i++)
+		{
+			ObjectNode event = (ObjectNode) events.get(i);
+
+			if (i >= replayFrom)
+				log.apply(log.m_game, event, true);
+
+			log.m_events.add(event);
+			log.recordRoundCount(event.path("roundCount").asInt(0), i + 1);
+
+			// Snapshots may be missing from the end, if the log was saved part way through.
+
+			if (i >= replayFrom)
+				log.snapshotIfDue();
+		}
+
+		return log;
+	}
+}
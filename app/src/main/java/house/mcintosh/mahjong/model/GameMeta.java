@@ -1,10 +1,14 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.util.Date;
 
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
 import house.mcintosh.mahjong.util.JsonUtil;
 import house.mcintosh.mahjong.util.TimeUtil;
 
@@ -39,6 +43,11 @@ public final class GameMeta
 		this.m_lastModifiedOn = new Date();
 	}
 
+	public void setLastModifiedOn(Date lastModifiedOn)
+	{
+		this.m_lastModifiedOn = lastModifiedOn;
+	}
+
 	public ObjectNode toJson()
 	{
 		ObjectNode meta = JsonUtil.createObjectNode();
@@ -49,6 +58,35 @@ public final class GameMeta
 		return meta;
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+		generator.writeStringField("createdOn", TimeUtil.toUTCString(m_createdOn));
+		generator.writeStringField("lastModifiedOn", TimeUtil.toUTCString(m_lastModifiedOn));
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Write the dates in binary, as seconds, which is the same precision as the json.
+	 */
+	public void writeTo(BinaryOutput output)
+	{
+		output.writeVarint(m_createdOn.getTime() / 1000);
+		output.writeVarint(m_lastModifiedOn.getTime() / 1000);
+	}
+
+	public static GameMeta readFrom(BinaryInput input)
+	{
+		GameMeta meta = new GameMeta(new Date(input.readVarint() * 1000));
+
+		meta.m_lastModifiedOn = new Date(input.readVarint() * 1000);
+
+		return meta;
+	}
+
 	public static GameMeta fromJson(JsonNode metaNode)
 	{
 		Date createdOn = TimeUtil.fromUTCString(metaNode.path("createdOn").asText());
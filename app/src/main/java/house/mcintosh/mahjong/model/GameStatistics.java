@@ -0,0 +1,274 @@
+package house.mcintosh.mahjong.model;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+import house.mcintosh.mahjong.exception.InvalidModelException;
+import house.mcintosh.mahjong.scoring.ScoreContribution;
+import house.mcintosh.mahjong.scoring.ScoredHand;
+import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.JsonUtil;
+
+/**
+ * Statistics about the hands of each player in a game.  Kept up to date by the Game as rounds
+ * are added and removed, so that reading them does not need to look at every round.
+ */
+public final class GameStatistics
+{
+	private static final ScoringScheme.ScoreElement[] ELEMENTS = ScoringScheme.ScoreElement.values();
+
+	/** The players in the game, shared with the Game and indexed in the same way as its scores. */
+	private final Player[]	m_columns;
+	private final int		m_seatCount;
+	private final int		m_limitScore;
+
+	private final int[]		m_handCount;
+	private final int[]		m_mahjongCount;
+	private final int[]		m_eastWinCount;
+	private final int[]		m_limitHandCount;
+	private final long[]	m_scoreSum;
+	private final long[]	m_scoreSumOfSquares;
+	private final int[][]	m_elementCounts;
+
+	/**
+	 * The best hand score of each player after each round, as a row of scores for each round.
+	 * Row 0 is before the first round.  A best score cannot simply be reversed when a round is
+	 * removed, so the history is kept.
+	 */
+	private int[]			m_bestHistory;
+	private int				m_bestRowCount	= 1;
+
+	GameStatistics(Player[] columns, ScoringScheme scheme)
+	{
+		m_columns = columns;
+		m_seatCount = columns.length;
+		m_limitScore = scheme.LimitScore;
+
+		m_handCount = new int[m_seatCount];
+		m_mahjongCount = new int[m_seatCount];
+		m_eastWinCount = new int[m_seatCount];
+		m_limitHandCount = new int[m_seatCount];
+		m_scoreSum = new long[m_seatCount];
+		m_scoreSumOfSquares = new long[m_seatCount];
+		m_elementCounts = new int[m_seatCount][ELEMENTS.length];
+		m_bestHistory = new int[m_seatCount * 16];
+	}
+
+	/**
+	 * Include a round added to the end of the game.
+	 */
+	void addRound(Round round)
+	{
+		update(round, 1);
+
+		if (m_bestHistory.length < (m_bestRowCount + 1) * m_seatCount)
+			m_bestHistory = Arrays.copyOf(m_bestHistory, m_bestHistory.length * 2);
+
+		setBestRow(m_bestRowCount++, round);
+	}
+
+	/**
+	 * Remove the last round of the game.
+	 */
+	void removeLastRound(Round round)
+	{
+		update(round, -1);
+
+		m_bestRowCount--;
+	}
+
+	/**
+	 * Replace consecutive rounds somewhere in the game, starting at index.  rounds holds all
+	 * the rounds in the game, including the replacements.
+	 */
+	void replaceRounds(int index, List<Round> oldRounds, List<Round> rounds)
+	{
+		for (int i = 0 ; i < oldRounds.size() ; i++)
+		{
+			update(oldRounds.get(i), -1);
+			update(rounds.get(index + i), 1);
+		}
+
+		// Best scores after the replaced round may have changed.
+
+		for (int i = index ; i < rounds.size() ; i++)
+			setBestRow(i + 1, rounds.get(i));
+	}
+
+	/**
+	 * Add (delta = 1) or remove (delta = -1) the hands in a round.
+	 */
+	private void update(Round round, int delta)
+	{
+		for (int column = 0 ; column < m_seatCount ; column++)
+		{
+			Player player = m_columns[column];
+
+			if (player == null || !round.hasHandFor(player))
+				continue;
+
+			ScoredHand	hand	= round.getHand(player);
+			int			score	= hand.getTotalScore();
+
+			m_handCount[column] += delta;
+			m_scoreSum[column] += delta * score;
+			m_scoreSumOfSquares[column] += delta * (long) score * score;
+
+			if (hand.getTotalScoreUnlimited() >= m_limitScore)
+				m_limitHandCount[column] += delta;
+
+			if (hand.isMahjong())
+			{
+				m_mahjongCount[column] += delta;
+
+				if (round.getPlayerWind(player) == Wind.EAST)
+					m_eastWinCount[column] += delta;
+			}
+
+			for (ScoreContribution contribution : hand.getWholeHandScores())
+				m_elementCounts[column][contribution.getElement().ordinal()] += delta;
+		}
+	}
+
+	private void setBestRow(int row, Round round)
+	{
+		int previousRowStart	= (row - 1) * m_seatCount;
+		int rowStart			= row * m_seatCount;
+
+		for (int column = 0 ; column < m_seatCount ; column++)
+		{
+			Player	player	= m_columns[column];
+			int		best	= m_bestHistory[previousRowStart + column];
+
+			if (player != null && round.hasHandFor(player))
+				best = Math.max(best, round.getHand(player).getTotalScore());
+
+			m_bestHistory[rowStart + column] = best;
+		}
+	}
+
+	private int getColumn(Player player)
+	{
+		for (int column = 0 ; column < m_seatCount ; column++)
+		{
+			if (player.equals(m_columns[column]))
+				return column;
+		}
+
+		throw new InvalidModelException("Player not found");
+	}
+
+	public int getHandCount(Player player)
+	{
+		return m_handCount[getColumn(player)];
+	}
+
+	public int getMahjongCount(Player player)
+	{
+		return m_mahjongCount[getColumn(player)];
+	}
+
+	/**
+	 * @return	The number of Mahjong hands that the player had while east.
+	 */
+	public int getEastWinCount(Player player)
+	{
+		return m_eastWinCount[getColumn(player)];
+	}
+
+	/**
+	 * @return	The number of hands that reached the limit score.
+	 */
+	public int getLimitHandCount(Player player)
+	{
+		return m_limitHandCount[getColumn(player)];
+	}
+
+	/**
+	 * @return	The highest score of any of the player's hands, or 0 if there are none.
+	 */
+	public int getBestHandScore(Player player)
+	{
+		return m_bestHistory[(m_bestRowCount - 1) * m_seatCount + getColumn(player)];
+	}
+
+	/**
+	 * @return	The mean score of the player's hands, or 0 if there are none.
+	 */
+	public double getMeanHandScore(Player player)
+	{
+		int column = getColumn(player);
+
+		if (m_handCount[column] == 0)
+			return 0;
+
+		return (double) m_scoreSum[column] / m_handCount[column];
+	}
+
+	/**
+	 * @return	The population variance of the scores of the player's hands, or 0 if there are none.
+	 */
+	public double getHandScoreVariance(Player player)
+	{
+		int column = getColumn(player);
+		int count = m_handCount[column];
+
+		if (count == 0)
+			return 0;
+
+		double mean = (double) m_scoreSum[column] / count;
+
+		return Math.max(0, (double) m_scoreSumOfSquares[column] / count - mean * mean);
+	}
+
+	/**
+	 * @return	The number of times that a whole hand score applied to one of the player's hands.
+	 */
+	public int getScoreElementCount(Player player, ScoringScheme.ScoreElement element)
+	{
+		return m_elementCounts[getColumn(player)][element.ordinal()];
+	}
+
+	public ObjectNode toJson()
+	{
+		ObjectNode	statistics	= JsonUtil.createObjectNode();
+		ArrayNode	players		= JsonUtil.createArrayNode();
+
+		for (Player player : m_columns)
+		{
+			if (player == null)
+				continue;
+
+			ObjectNode playerStatistics = JsonUtil.createObjectNode();
+
+			playerStatistics.put("playerId", player.getId());
+			playerStatistics.put("hands", getHandCount(player));
+			playerStatistics.put("mahjongs", getMahjongCount(player));
+			playerStatistics.put("eastWins", getEastWinCount(player));
+			playerStatistics.put("limitHands", getLimitHandCount(player));
+			playerStatistics.put("bestHand", getBestHandScore(player));
+			playerStatistics.put("meanHandScore", getMeanHandScore(player));
+			playerStatistics.put("handScoreVariance", getHandScoreVariance(player));
+
+			ObjectNode elements = JsonUtil.createObjectNode();
+
+			for (ScoringScheme.ScoreElement element : ELEMENTS)
+			{
+				int count = getScoreElementCount(player, element);
+
+				if (count > 0)
+					elements.put(element.name(), count);
+			}
+
+			playerStatistics.set("scoreElements", elements);
+			players.add(playerStatistics);
+		}
+
+		statistics.set("players", players);
+
+		return statistics;
+	}
+}
@@ -1,10 +1,13 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,6 +18,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import house.mcintosh.mahjong.exception.LoadException;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.JsonUtil;
+
 /**
  * A reduced representation of a Game.
  */
@@ -116,6 +123,69 @@ public final class GameSummary
 	}
 
 	static public GameSummary fromJson(ObjectNode gameNode, File file)
+	{
+		return fromJson(gameNode, ((ArrayNode)gameNode.path("rounds")).size() > 0, file);
+	}
+
+	/**
+	 * Read a summary from a parser positioned at the start of a game, reading only the fields
+	 * that are needed.  The rounds are skipped over without being parsed, so the time taken
+	 * does not depend on the length of the game.
+	 */
+	static public GameSummary fromJson(JsonParser parser, File file) throws IOException
+	{
+		if (parser.getCurrentToken() == null)
+			parser.nextToken();
+
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT)
+			throw new LoadException("Game is not a json object");
+
+		ObjectNode	gameNode	= JsonUtil.createObjectNode();
+		boolean		hasRounds	= false;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+
+			parser.nextToken();
+
+			switch (name)
+			{
+			case "rounds":
+				// Note whether there are any rounds, then skip over them all.
+				if (parser.getCurrentToken() == JsonToken.START_ARRAY && parser.nextToken() != JsonToken.END_ARRAY)
+				{
+					hasRounds = true;
+
+					do
+						parser.skipChildren();
+					while (parser.nextToken() != JsonToken.END_ARRAY);
+				}
+				else
+				{
+					parser.skipChildren();
+				}
+				break;
+
+			case "players":
+			case "scores":
+			case "seats":
+			case "meta":
+			case "finished":
+			case "prevailingWind":
+				gameNode.set(name, JsonUtil.readTree(parser));
+				break;
+
+			default:
+				parser.skipChildren();
+				break;
+			}
+		}
+
+		return fromJson(gameNode, hasRounds, file);
+	}
+
+	static private GameSummary fromJson(ObjectNode gameNode, boolean hasRounds, File file)
 	{
 		// Create all the players so that they are available by ID from the cache inside Players.
 		ArrayNode playersNode = (ArrayNode)gameNode.get("players");
@@ -171,7 +241,152 @@ public final class GameSummary
 
 		boolean finished = gameNode.path("finished").asBoolean(false);
 		Wind prevailingWind = Wind.valueOf(gameNode.path("prevailingWind").asText());
-		boolean hasRounds = ((ArrayNode)gameNode.path("rounds")).size() > 0;
+		return new GameSummary(players, scores, highestScore, meta, file, finished, eastPlayer, prevailingWind, hasRounds);
+	}
+
+	/**
+	 * Read a summary from a game written by Game.writeTo().  The rounds are not read.
+	 */
+	static public GameSummary readFrom(BinaryInput input, File file)
+	{
+		Game.readBinaryVersion(input);
+		Game.readScoringSchemeId(input);
+
+		GameMeta meta = GameMeta.readFrom(input);
+
+		List<Player> players = Game.readPlayers(input);
+		List<Player> seated = new ArrayList<>(players.size());
+		Player eastPlayer = null;
+
+		for (int i = 0 ; i < 4 ; i++)
+		{
+			int playerIndex = input.readInt();
+
+			if (playerIndex == 0)
+				continue;
+
+			if (playerIndex > players.size())
+				throw new LoadException("Invalid player in binary data: " + playerIndex);
+
+			Player player = players.get(playerIndex - 1);
+
+			seated.add(player);
+
+			if ((input.readByte() & Game.SEAT_EAST_PLAYER) != 0)
+				eastPlayer = player;
+		}
+
+		input.readBoolean();
+
+		boolean finished = input.readBoolean();
+		int windOrdinal = input.readByte();
+
+		if (windOrdinal >= Wind.values().length)
+			throw new LoadException("Invalid wind in binary data: " + windOrdinal);
+
+		Map<Player, Integer> scores = new HashMap<>();
+		int highestScore = Integer.MIN_VALUE;
+
+		for (Player player : players)
+		{
+			int score = (int)input.readSignedVarint();
+
+			highestScore = Math.max(highestScore, score);
+			scores.put(player, score);
+		}
+
+		boolean hasRounds = input.readBlock().readInt() > 0;
+
+		return new GameSummary(seated, scores, highestScore, meta, file, finished, eastPlayer, Wind.values()[windOrdinal], hasRounds);
+	}
+
+	/**
+	 * Create a summary of a game that is already loaded.
+	 */
+	static public GameSummary fromGame(Game game, File file)
+	{
+		List<Player> players = game.getPlayers();
+		Map<Player, Integer> scores = new HashMap<>();
+		int highestScore = Integer.MIN_VALUE;
+
+		for (Player player : players)
+		{
+			int score = game.getPlayerScore(player);
+
+			highestScore = Math.max(highestScore, score);
+			scores.put(player, score);
+		}
+
+		return new GameSummary(
+				players,
+				scores,
+				highestScore,
+				game.getMeta(),
+				file,
+				game.isFinished(),
+				game.getEastPlayer(),
+				game.getPrevailingWind(),
+				game.getRoundCount() > 0);
+	}
+
+	/**
+	 * @return	Just the summary, for storing in an index of games.  Read with fromSummaryJson().
+	 */
+	public ObjectNode toJson()
+	{
+		ObjectNode	summary	= JsonUtil.createObjectNode();
+		ArrayNode	players	= JsonUtil.createArrayNode();
+		ObjectNode	scores	= JsonUtil.createObjectNode();
+
+		for (Player player : m_players)
+		{
+			players.add(player.toJson());
+			scores.put(player.getId(), m_scores.get(player));
+		}
+
+		summary.set("meta", m_meta.toJson());
+		summary.set("players", players);
+		summary.set("scores", scores);
+
+		if (m_eastPlayer != null)
+			summary.put("eastPlayerId", m_eastPlayer.getId());
+
+		summary.put("finished", m_finished);
+		summary.put("prevailingWind", m_prevailingWind.name());
+		summary.put("hasRounds", m_hasRounds);
+
+		return summary;
+	}
+
+	static public GameSummary fromSummaryJson(JsonNode summaryNode, File file)
+	{
+		// Players are in seat order.
+		List<Player> players = new ArrayList<>();
+		Map<Player, Integer> scores = new HashMap<>();
+		int highestScore = Integer.MIN_VALUE;
+
+		JsonNode scoresNode = summaryNode.get("scores");
+
+		for (JsonNode playerNode : summaryNode.get("players"))
+		{
+			Player player = Player.fromJson(playerNode);
+			int score = scoresNode.get(player.getId()).asInt();
+
+			highestScore = Math.max(highestScore, score);
+			players.add(player);
+			scores.put(player, score);
+		}
+
+		Player eastPlayer = null;
+
+		if (summaryNode.has("eastPlayerId"))
+			eastPlayer = Player.get(new PlayerId(summaryNode.get("eastPlayerId")));
+
+		GameMeta meta = GameMeta.fromJson(summaryNode.path("meta"));
+
+		boolean finished = summaryNode.path("finished").asBoolean(false);
+		Wind prevailingWind = Wind.valueOf(summaryNode.path("prevailingWind").asText());
+		boolean hasRounds = summaryNode.path("hasRounds").asBoolean(false);
 
 		return new GameSummary(players, scores, highestScore, meta, file, finished, eastPlayer, prevailingWind, hasRounds);
 	}
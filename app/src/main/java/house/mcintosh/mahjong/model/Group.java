@@ -1,14 +1,19 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import house.mcintosh.mahjong.exception.InvalidModelException;
+import house.mcintosh.mahjong.exception.LoadException;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
 import house.mcintosh.mahjong.util.JsonUtil;
 
 /**
@@ -33,6 +38,14 @@ public class Group implements Serializable
 			this.handSize = handSize;
 		}
 
+		/**
+		 * @return	The number of tiles in a group of this type.
+		 */
+		public int getSize()
+		{
+			return size;
+		}
+
 		public int getHandSize()
 		{
 			return handSize;
@@ -72,27 +85,44 @@ public class Group implements Serializable
 	public Group(Type type, Tile tile, Visibility visibility)
 	{
 		this.m_type = type;
+		this.m_visibility = normaliseVisibility(type, visibility);
 		List<Tile> tiles = new ArrayList<>(type.size);
 
-		switch (type)
-		{
-			case PAIR:
-				this.m_visibility = visibility;
-				addIdenticalTiles(tiles, tile, type.size);
-				break;
+		if (type == Type.CHOW)
+			addChowTiles(tiles, normaliseFirstTile(type, tile));
+		else
+			addIdenticalTiles(tiles, tile, type.size);
 
-			case CHOW:
-				this.m_visibility = Visibility.EXPOSED;
-				addChowTiles(tiles, tile);
-				break;
+		this.m_tiles = Collections.unmodifiableList(tiles);
+	}
 
-			default:
-				this.m_visibility = visibility;
-				addIdenticalTiles(tiles, tile, type.size);
-				break;
-		}
+	/**
+	 * The visibility that a group of the given type will actually have when constructed
+	 * with the given visibility.  A chow is always exposed; other types keep what they are given.
+	 */
+	public static Visibility normaliseVisibility(Type type, Visibility visibility)
+	{
+		if (type == Type.CHOW)
+			return Visibility.EXPOSED;
 
-		this.m_tiles = Collections.unmodifiableList(tiles);
+		return visibility;
+	}
+
+	/**
+	 * The first tile that a group of the given type will actually have when constructed
+	 * with the given tile.  Be tolerant of a dodgy initial tile for a chow.
+	 */
+	public static Tile normaliseFirstTile(Type type, Tile tile)
+	{
+		if (type != Type.CHOW)
+			return tile;
+
+		Tile.Number number = tile.getNumber();
+
+		if (number == Tile.Number.EIGHT || number == Tile.Number.NINE)
+			return Tile.get(tile.getSuit(), Tile.Number.SEVEN);
+
+		return tile;
 	}
 
 	public Group(Type type, Tile tile)
@@ -154,13 +184,6 @@ public class Group implements Serializable
 
 	private void addChowTiles(List<Tile> tiles, Tile tile)
 	{
-		// Be tolerant of dodgy initial tile specified.
-
-		Tile.Number number = tile.getNumber();
-
-		if (number == Tile.Number.EIGHT || number == Tile.Number.NINE)
-			tile = new Tile(tile.getSuit(), Tile.Number.SEVEN);
-
 		tiles.add(tile);
 		tile = tile.createNextNumber();
 		tiles.add(tile);
@@ -180,6 +203,19 @@ public class Group implements Serializable
 		return group;
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+		generator.writeStringField("type", m_type.name());
+		generator.writeStringField("visibility", m_visibility.name());
+		generator.writeFieldName("firstTile");
+		m_tiles.get(0).writeJson(generator);
+		generator.writeEndObject();
+	}
+
 	static public Group fromJson(JsonNode group)
 	{
 		Type type = Type.valueOf(group.get("type").asText());
@@ -189,6 +225,50 @@ public class Group implements Serializable
 		return new Group(type, firstTile, visibility);
 	}
 
+	/**
+	 * Write the group in binary as a single number made from its type, visibility and first
+	 * tile.  This takes one byte for pairs and chows, and two for pungs and kongs.
+	 */
+	public void writeTo(BinaryOutput output)
+	{
+		output.writeVarint((m_type.ordinal() * 2 + m_visibility.ordinal()) * Tile.COUNT + m_tiles.get(0).getIndex());
+	}
+
+	static public Group readFrom(BinaryInput input)
+	{
+		int code = readBinaryCode(input);
+
+		return new Group(getBinaryCodeType(code), getBinaryCodeFirstTile(code), getBinaryCodeVisibility(code));
+	}
+
+	/**
+	 * Read the number written by writeTo(), which can be taken apart by the getBinaryCode methods.
+	 */
+	static protected int readBinaryCode(BinaryInput input)
+	{
+		int code = input.readInt();
+
+		if (code >= Type.values().length * 2 * Tile.COUNT || getBinaryCodeType(code) == Type.EMPTY)
+			throw new LoadException("Invalid group in binary data: " + code);
+
+		return code;
+	}
+
+	static protected Type getBinaryCodeType(int code)
+	{
+		return Type.values()[code / Tile.COUNT / 2];
+	}
+
+	static protected Visibility getBinaryCodeVisibility(int code)
+	{
+		return Visibility.values()[code / Tile.COUNT % 2];
+	}
+
+	static protected Tile getBinaryCodeFirstTile(int code)
+	{
+		return Tile.get(code % Tile.COUNT);
+	}
+
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder();
@@ -1,21 +1,32 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import house.mcintosh.mahjong.exception.InvalidModelException;
 import house.mcintosh.mahjong.util.JsonUtil;
 
 public final class Player implements Serializable
 {
-	/** All the instances that have been created so far. */
-	static private final Set<Player> s_allPlayers = new HashSet<>();
+	/**
+	 * All the instances that have been created so far, keyed by ID.  Reads do not lock.  The
+	 * references are weak, but also hold the player strongly unless eviction is enabled.
+	 */
+	static private final ConcurrentMap<PlayerId, PlayerReference> s_allPlayers = new ConcurrentHashMap<>();
+
+	/** Receives the references to players that have been garbage collected. */
+	static private final ReferenceQueue<Player> s_collectedPlayers = new ReferenceQueue<>();
+
+	static private volatile boolean s_evictionEnabled = false;
 	
 	private String m_name;
 
@@ -34,19 +45,43 @@ public final class Player implements Serializable
 	/**
 	 * Create a new Player instance from a json node.
 	 */
-	static public synchronized Player fromJson(JsonNode playerNode)
+	static public Player fromJson(JsonNode playerNode)
 	{
-		PlayerId	id		= new PlayerId(playerNode.get("id"));
-		String		name	= playerNode.get("name").asText("");
-		Player		newOne	= new Player(name, id);
-		
-		for (Player player : s_allPlayers)
-			if (player.equals(newOne))
+		return getOrCreate(new PlayerId(playerNode.get("id")), playerNode.path("name").asText(""));
+	}
+
+	/**
+	 * Get the player with an id, or if there isn't one, create it with a name.
+	 */
+	static Player getOrCreate(PlayerId id, String name)
+	{
+		Player player = find(id);
+
+		if (player != null)
+			return player;
+
+		removeCollectedPlayers();
+
+		Player			newOne		= new Player(name, id);
+		PlayerReference	reference	= new PlayerReference(newOne);
+
+		while (true)
+		{
+			PlayerReference existing = s_allPlayers.putIfAbsent(id, reference);
+
+			if (existing == null)
+				return newOne;
+
+			player = existing.get();
+
+			if (player != null)
+				// Another thread got there first.
 				return player;
-		
-		s_allPlayers.add(newOne);
-		
-		return newOne;
+
+			// The existing player has been collected, but not yet removed.
+			if (s_allPlayers.replace(id, existing, reference))
+				return newOne;
+		}
 	}
 
 	static public Player create(String name)
@@ -56,13 +91,82 @@ public final class Player implements Serializable
 		return new Player(name, id);
 	}
 
-	static public synchronized Player get(PlayerId id)
+	static public Player get(PlayerId id)
 	{
-		for (Player player : s_allPlayers)
-			if (player.m_id.equals(id))
-				return player;
+		Player player = find(id);
+
+		if (player == null)
+			throw new InvalidModelException("Cannot find player with id");
+
+		return player;
+	}
+
+	/**
+	 * @return	The player with the ID, or null if there is none.
+	 */
+	static private Player find(PlayerId id)
+	{
+		PlayerReference reference = s_allPlayers.get(id);
+
+		if (reference == null)
+			return null;
 
-		throw new InvalidModelException("Cannot find player with id");
+		return reference.get();
+	}
+
+	/**
+	 * Allow players that are no longer used anywhere to be garbage collected, and forgotten
+	 * by get() and fromJson().  Off by default, so that all players are kept.
+	 */
+	static public synchronized void setEvictionEnabled(boolean enabled)
+	{
+		s_evictionEnabled = enabled;
+
+		for (PlayerReference reference : s_allPlayers.values())
+			reference.setStrong(!enabled);
+
+		removeCollectedPlayers();
+	}
+
+	static public boolean isEvictionEnabled()
+	{
+		return s_evictionEnabled;
+	}
+
+	static private void removeCollectedPlayers()
+	{
+		Reference<? extends Player> collected;
+
+		while ((collected = s_collectedPlayers.poll()) != null)
+		{
+			PlayerReference reference = (PlayerReference) collected;
+
+			s_allPlayers.remove(reference.m_id, reference);
+		}
+	}
+
+	/**
+	 * A weak reference to a player, that can also hold the player strongly.
+	 */
+	static private final class PlayerReference extends WeakReference<Player>
+	{
+		private final PlayerId	m_id;
+		private volatile Player	m_strong;
+
+		PlayerReference(Player player)
+		{
+			super(player, s_collectedPlayers);
+
+			m_id = player.m_id;
+
+			if (!s_evictionEnabled)
+				m_strong = player;
+		}
+
+		void setStrong(boolean strong)
+		{
+			m_strong = strong ? get() : null;
+		}
 	}
 	
 	/** Override so that instances can be used as keys in maps and sets */
@@ -111,6 +215,17 @@ public final class Player implements Serializable
 		return m_id.getValue();
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+		generator.writeStringField("name", m_name);
+		generator.writeStringField("id", m_id.getValue());
+		generator.writeEndObject();
+	}
+
 	public ObjectNode toJson()
 	{
 		ObjectNode player = JsonUtil.createObjectNode();
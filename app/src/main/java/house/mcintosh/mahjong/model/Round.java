@@ -1,17 +1,23 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import house.mcintosh.mahjong.exception.InvalidModelException;
+import house.mcintosh.mahjong.exception.LoadException;
 import house.mcintosh.mahjong.scoring.ScoredHand;
 import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
 import house.mcintosh.mahjong.util.JsonUtil;
 
 /**
@@ -19,8 +25,22 @@ import house.mcintosh.mahjong.util.JsonUtil;
  */
 public final class Round
 {
+	private static final int			WIND_COUNT			= Wind.values().length;
+
 	private final Map<Player, Entry>	m_entries			= new HashMap<>();
 	private final Wind					m_prevailingWind;
+
+	/**
+	 * The amount that each player receives from each other player, indexed by the ordinals of
+	 * their winds.  Calculated when first needed, and discarded when a hand is added.
+	 */
+	private int[][]						m_settlement		= null;
+
+	/**
+	 * Set when the score of each player was loaded with the round, so that the hands do not
+	 * have to be read to find the scores.  Cleared when a hand is added.
+	 */
+	private boolean						m_scoresStored		= false;
 	
 	public Round(Wind prevailingWind)
 	{
@@ -33,6 +53,8 @@ public final class Round
 	public void addHand(Player player, ScoredHand hand, Wind playerWind)
 	{
 		m_entries.put(player, new Entry(player, hand, playerWind));
+		m_settlement = null;
+		m_scoresStored = false;
 	}
 
 	/**
@@ -62,7 +84,7 @@ public final class Round
 
 		for (Entry entry : m_entries.values())
 		{
-			if (entry.hand.isMahjong())
+			if (entry.isMahjong())
 				mahjongPlayers.add(entry.player);
 		}
 
@@ -81,7 +103,42 @@ public final class Round
 	
 	public ScoredHand getHand(Player player)
 	{
-		return m_entries.get(player).hand;
+		return m_entries.get(player).getHand();
+	}
+
+	/**
+	 * @return	True if the player's hand is a Mahjong hand.  Unlike getHand(), does not need
+	 * 			to read a hand that was loaded with its score.
+	 */
+	public boolean isMahjong(Player player)
+	{
+		return m_entries.get(player).isMahjong();
+	}
+
+	/**
+	 * @return	This round as it would have been played with different winds, with each hand
+	 * 			rescored.  This round if the winds are unchanged.
+	 */
+	public Round withWinds(Wind prevailingWind, Map<Player, Wind> playerWinds)
+	{
+		boolean changed = prevailingWind != m_prevailingWind;
+
+		for (Entry entry : m_entries.values())
+			changed |= playerWinds.get(entry.player) != entry.playerWind;
+
+		if (!changed)
+			return this;
+
+		Round round = new Round(prevailingWind);
+
+		for (Entry entry : m_entries.values())
+		{
+			Wind playerWind = playerWinds.get(entry.player);
+
+			round.addHand(entry.player, entry.getHand().withWinds(playerWind, prevailingWind), playerWind);
+		}
+
+		return round;
 	}
 
 	public ObjectNode toJson()
@@ -94,7 +151,7 @@ public final class Round
 
 		for (Entry entry : m_entries.values())
 		{
-			entries.add(entry.toJson());
+			entries.add(entry.toJson(getPlayerScore(entry.player)));
 		}
 
 		round.set("hands", entries);
@@ -102,7 +159,34 @@ public final class Round
 		return round;
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+		generator.writeStringField("prevailingWind", m_prevailingWind.name());
+		generator.writeArrayFieldStart("hands");
+
+		for (Entry entry : m_entries.values())
+			entry.writeJson(generator, getPlayerScore(entry.player));
+
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
 	static public Round fromJson(JsonNode roundNode, ScoringScheme scheme)
+	{
+		return fromJson(roundNode, scheme, false);
+	}
+
+	/**
+	 * @param verifyScores	True to score the hands straight away, and check that the scores
+	 *                     	saved with the round match.  Otherwise the saved scores are trusted,
+	 *                     	and hands are only scored when they are needed.
+	 * @throws LoadException if the scores are being verified, and do not match.
+	 */
+	static public Round fromJson(JsonNode roundNode, ScoringScheme scheme, boolean verifyScores)
 	{
 		Wind prevailingWind = Wind.valueOf(roundNode.get("prevailingWind").asText());
 
@@ -110,106 +194,226 @@ public final class Round
 
 		ArrayNode handEntryNodes = (ArrayNode)roundNode.get("hands");
 
+		// Hands saved with their scores are not read until they are needed.
+
+		boolean scoresStored = true;
+
+		for (JsonNode entryNode : handEntryNodes)
+			scoresStored &= entryNode.has("score");
+
 		for (JsonNode entryNode : handEntryNodes)
 		{
-			Entry entry = Entry.fromJson(entryNode, scheme, prevailingWind);
+			Entry entry = Entry.fromJson(entryNode, scheme, prevailingWind, scoresStored);
 
-			round.addHand(entry.player, entry.hand, entry.playerWind);
+			round.m_entries.put(entry.player, entry);
 		}
 
+		round.m_scoresStored = scoresStored;
+
+		if (verifyScores)
+			round.verifyScores();
+
 		return round;
 	}
 	
-	public int getPlayerScore(Player player)
+	/**
+	 * Write the round in binary.  Players are written as their index in a list of the players
+	 * in the game, which is written once for the whole game.  Each hand is written as a block
+	 * after the player's score and the hand's scores, so that it can be read when it is needed.
+	 */
+	public void writeTo(BinaryOutput output, List<Player> players)
 	{
-		// If there are only two players, need to calculate the score in a different way, because
-		// following the normal scoring with only two players does nothing with the non-mahjong
-		// player's score.
+		output.writeByte(m_prevailingWind.ordinal());
+		output.writeVarint(m_entries.size());
 
-		if (m_entries.size() == 2)
-			return calculateTwoPlayerScore(player);
+		for (Entry entry : m_entries.values())
+		{
+			int playerIndex = players.indexOf(entry.player);
 
-		return calculateThreeFourPlayerScore(player);
+			if (playerIndex < 0)
+				throw new InvalidModelException("Player not in game: " + entry.player);
+
+			output.writeVarint(playerIndex);
+			entry.writeTo(output, getPlayerScore(entry.player));
+		}
 	}
 
-	private int calculateThreeFourPlayerScore(Player player)
+	/**
+	 * Read a round written by writeTo().  The hands are left to be read when they are needed.
+	 *
+	 * @param verifyScores	As for fromJson().
+	 */
+	static public Round readFrom(BinaryInput input, ScoringScheme scheme, List<Player> players, boolean verifyScores)
 	{
-		int score = 0;
+		Wind prevailingWind = readWind(input);
 
-		Entry thisPlayerEntry = m_entries.get(player);
+		Round round = new Round(prevailingWind);
 
-		if (thisPlayerEntry.hand.isMahjong())
+		int handCount = input.readInt();
+
+		for (int i = 0 ; i < handCount ; i++)
 		{
-			// Calculate score based on this being the mahjong player.
+			int playerIndex = input.readInt();
 
-			Entry receivingEntry = thisPlayerEntry;
+			if (playerIndex >= players.size())
+				throw new LoadException("Invalid player in binary data: " + playerIndex);
 
-			for (Entry givingEntry : m_entries.values())
-			{
-				if (givingEntry.player.equals(player))
-					continue;
+			Player	player		= players.get(playerIndex);
+			Wind	playerWind	= readWind(input);
 
-				int eastMultiplier = 1;
+			boolean	mahjong				= input.readBoolean();
+			int		score				= (int)input.readSignedVarint();
+			int		handScore			= (int)input.readSignedVarint();
+			int		handScoreUnlimited	= (int)input.readSignedVarint();
 
-				if (receivingEntry.playerWind == Wind.EAST || givingEntry.playerWind == Wind.EAST)
-					eastMultiplier = 2;
+			Entry entry = new Entry(player, playerWind, mahjong, score, null, input.readBlock(), scheme, prevailingWind);
 
-				score += receivingEntry.hand.getTotalScore() * eastMultiplier;
-			}
+			entry.setStoredHandScores(handScore, handScoreUnlimited);
+
+			round.m_entries.put(player, entry);
+			round.m_scoresStored = true;
 		}
-		else
-		{
-			// Calculate score based on this not being mahjong player.
 
-			for (Entry thatPlayerEntry : m_entries.values())
-			{
-				if (thatPlayerEntry.player.equals(player))
-					continue;
+		if (verifyScores)
+			round.verifyScores();
 
-				int eastMultiplier = 1;
+		return round;
+	}
 
-				if (thisPlayerEntry.playerWind == Wind.EAST || thatPlayerEntry.playerWind == Wind.EAST)
-					eastMultiplier = 2;
+	static private Wind readWind(BinaryInput input)
+	{
+		int ordinal = input.readByte();
 
-				if (thatPlayerEntry.hand.isMahjong())
-					score -= thatPlayerEntry.hand.getTotalScore() * eastMultiplier;
-				else
-					score += (thisPlayerEntry.hand.getTotalScore() - thatPlayerEntry.hand.getTotalScore()) * eastMultiplier;
-			}
-		}
+		if (ordinal >= WIND_COUNT)
+			throw new LoadException("Invalid wind in binary data: " + ordinal);
+
+		return Wind.values()[ordinal];
+	}
+
+	public int getPlayerScore(Player player)
+	{
+		Entry entry = m_entries.get(player);
+
+		if (m_scoresStored)
+			return entry.storedScore;
+
+		int[] received = getSettlementMatrix()[entry.playerWind.ordinal()];
+
+		int score = 0;
+
+		for (int amount : received)
+			score += amount;
 
 		return score;
 	}
 
-	private int calculateTwoPlayerScore(Player player)
+	/**
+	 * Get the payments between the players in the round.  Element [i][j] is the amount that
+	 * the player with wind ordinal i receives from the player with wind ordinal j, and is
+	 * negative if the payment is the other way.  Elements for winds without a hand are zero.
+	 *
+	 * @return	A copy of the settlement, which the caller may change.
+	 */
+	public int[][] getSettlement()
+	{
+		int[][] settlement = getSettlementMatrix();
+		int[][] copy = new int[WIND_COUNT][];
+
+		for (int i = 0 ; i < WIND_COUNT ; i++)
+			copy[i] = settlement[i].clone();
+
+		return copy;
+	}
+
+	private int[][] getSettlementMatrix()
+	{
+		if (m_settlement == null)
+			m_settlement = calculateSettlement();
+
+		return m_settlement;
+	}
+
+	private int[][] calculateSettlement()
 	{
-		Entry thatPlayerEntry = null;
+		Entry[] entries = new Entry[WIND_COUNT];
 
-		Entry thisPlayerEntry = m_entries.get(player);
+		for (Entry entry : m_entries.values())
+		{
+			int wind = entry.playerWind.ordinal();
 
+			if (entries[wind] != null)
+				throw new InvalidModelException("More than one hand for wind " + entry.playerWind);
+
+			entries[wind] = entry;
+		}
 
+		// If there are only two players, need to calculate the score in a different way, because
+		// following the normal scoring with only two players does nothing with the non-mahjong
+		// player's score.
 
-		for (Entry playerEntry : m_entries.values())
+		boolean twoPlayers = m_entries.size() == 2;
+
+		int[][] settlement = new int[WIND_COUNT][WIND_COUNT];
+
+		for (int thisWind = 0 ; thisWind < WIND_COUNT ; thisWind++)
 		{
-			if (!playerEntry.player.equals(player))
+			for (int thatWind = 0 ; thatWind < WIND_COUNT ; thatWind++)
 			{
-				thatPlayerEntry = playerEntry;
-				break;
+				Entry thisPlayerEntry = entries[thisWind];
+				Entry thatPlayerEntry = entries[thatWind];
+
+				if (thisWind == thatWind || thisPlayerEntry == null || thatPlayerEntry == null)
+					continue;
+
+				if (twoPlayers)
+					settlement[thisWind][thatWind] = calculateTwoPlayerScore(thisPlayerEntry, thatPlayerEntry);
+				else
+					settlement[thisWind][thatWind] = calculateThreeFourPlayerScore(thisPlayerEntry, thatPlayerEntry);
 			}
 		}
 
+		return settlement;
+	}
+
+	/**
+	 * @return	The amount that one player receives from another, when there are three or four players.
+	 */
+	private int calculateThreeFourPlayerScore(Entry thisPlayerEntry, Entry thatPlayerEntry)
+	{
+		int eastMultiplier = 1;
+
+		if (thisPlayerEntry.playerWind == Wind.EAST || thatPlayerEntry.playerWind == Wind.EAST)
+			eastMultiplier = 2;
+
+		// The mahjong player receives their score from everyone.  Other players settle the
+		// difference between their scores.
+
+		if (thisPlayerEntry.getHand().isMahjong())
+			return thisPlayerEntry.getHand().getTotalScore() * eastMultiplier;
+
+		if (thatPlayerEntry.getHand().isMahjong())
+			return -thatPlayerEntry.getHand().getTotalScore() * eastMultiplier;
+
+		return (thisPlayerEntry.getHand().getTotalScore() - thatPlayerEntry.getHand().getTotalScore()) * eastMultiplier;
+	}
+
+	/**
+	 * @return	The amount that one player receives from the other, when there are two players.
+	 */
+	private int calculateTwoPlayerScore(Entry thisPlayerEntry, Entry thatPlayerEntry)
+	{
 		int thisHandScore;
 		int thatHandScore;
 
-		if (thisPlayerEntry.hand.isMahjong())
+		if (thisPlayerEntry.getHand().isMahjong())
 		{
-			thisHandScore = 2 * thisPlayerEntry.hand.getTotalScore();
-			thatHandScore = thatPlayerEntry.hand.getTotalScore();
+			thisHandScore = 2 * thisPlayerEntry.getHand().getTotalScore();
+			thatHandScore = thatPlayerEntry.getHand().getTotalScore();
 		}
 		else
 		{
-			thisHandScore = thisPlayerEntry.hand.getTotalScore();
-			thatHandScore = 2 * thatPlayerEntry.hand.getTotalScore();
+			thisHandScore = thisPlayerEntry.getHand().getTotalScore();
+			thatHandScore = 2 * thatPlayerEntry.getHand().getTotalScore();
 		}
 
 		int score = thisHandScore - thatHandScore;
@@ -217,7 +421,45 @@ public final class Round
 		return score;
 	}
 
-	public boolean hasHandForAll(Collection players)
+	/**
+	 * Score every hand that was loaded with its scores, and check that the scores match.
+	 *
+	 * @throws LoadException if any of the scores do not match.
+	 */
+	private void verifyScores()
+	{
+		if (!m_scoresStored)
+			return;
+
+		for (Entry entry : m_entries.values())
+		{
+			ScoredHand hand = entry.getHand();
+
+			if (hand.isMahjong() != entry.mahjong)
+				throw new LoadException("Saved Mahjong hand does not match the scoring scheme, for player " + entry.player);
+
+			if (entry.handScoresStored
+					&& (hand.getTotalScore() != entry.storedHandScore || hand.getTotalScoreUnlimited() != entry.storedHandScoreUnlimited))
+				throw new LoadException("Saved hand score does not match the scoring scheme, for player " + entry.player);
+		}
+
+		int[][] settlement = calculateSettlement();
+
+		for (Entry entry : m_entries.values())
+		{
+			int score = 0;
+
+			for (int amount : settlement[entry.playerWind.ordinal()])
+				score += amount;
+
+			if (score != entry.storedScore)
+				throw new LoadException("Saved round score does not match the scoring scheme, for player " + entry.player);
+		}
+
+		m_settlement = settlement;
+	}
+
+	public boolean hasHandForAll(Collection<Player> players)
 	{
 		return m_entries.keySet().containsAll(players);
 	}
@@ -227,37 +469,188 @@ public final class Round
 		return m_entries.keySet().contains(player);
 	}
 
+	/**
+	 * The hand of a player in a round.  A hand loaded with the player's score is only read,
+	 * which means scoring it, when it is first needed.
+	 */
 	static private class Entry
 	{
 		private final Player		player;
-		private final ScoredHand	hand;
 		private final Wind			playerWind;
-		
+
+		/** Valid if the hand has not been read, or if the round was loaded with its scores. */
+		private final boolean		mahjong;
+		private final int			storedScore;
+
+		/** The scores of the hand, when they were loaded with it. */
+		private boolean				handScoresStored	= false;
+		private int					storedHandScore;
+		private int					storedHandScoreUnlimited;
+
+		/** Null until the hand is read from one of the unread forms below. */
+		private ScoredHand			hand;
+		private JsonNode			handNode;
+		private BinaryInput			handInput;
+		private final ScoringScheme	scheme;
+		private final Wind			prevailingWind;
+
 		private Entry(Player player, ScoredHand hand, Wind playerWind)
 		{
-			this.player		= player;
-			this.hand		= hand;
-			this.playerWind	= playerWind;
+			this(player, playerWind, hand.isMahjong(), 0, null, null, null, null);
+
+			this.hand = hand;
 		}
 
-		static Entry fromJson (JsonNode entryNode, ScoringScheme scheme, Wind prevailingWind)
+		private Entry(
+				Player player,
+				Wind playerWind,
+				boolean mahjong,
+				int storedScore,
+				JsonNode handNode,
+				BinaryInput handInput,
+				ScoringScheme scheme,
+				Wind prevailingWind)
+		{
+			this.player			= player;
+			this.playerWind		= playerWind;
+			this.mahjong		= mahjong;
+			this.storedScore	= storedScore;
+			this.handNode		= handNode;
+			this.handInput		= handInput;
+			this.scheme			= scheme;
+			this.prevailingWind	= prevailingWind;
+		}
+
+		ScoredHand getHand()
+		{
+			if (hand == null)
+			{
+				if (handNode != null)
+					hand = ScoredHand.fromJson(handNode, scheme, playerWind, prevailingWind);
+				else
+					hand = ScoredHand.readFrom(handInput, scheme, playerWind, prevailingWind);
+
+				handNode = null;
+				handInput = null;
+			}
+
+			return hand;
+		}
+
+		boolean isMahjong()
+		{
+			return hand == null ? mahjong : hand.isMahjong();
+		}
+
+		void setStoredHandScores(int score, int scoreUnlimited)
+		{
+			handScoresStored			= true;
+			storedHandScore				= score;
+			storedHandScoreUnlimited	= scoreUnlimited;
+		}
+
+		/**
+		 * @param scoresStored	True if the player's score is stored with the hand, in which
+		 *                     	case the hand is left to be read when needed.
+		 */
+		static Entry fromJson(JsonNode entryNode, ScoringScheme scheme, Wind prevailingWind, boolean scoresStored)
 		{
 			Player player = Player.get(new PlayerId(entryNode.get("playerId")));
 			Wind playerWind = Wind.valueOf(entryNode.get("playerWind").asText());
-			ScoredHand hand = ScoredHand.fromJson(entryNode.get("hand"), scheme, playerWind, prevailingWind);
 
-			return new Entry(player, hand, playerWind);
+			if (!scoresStored)
+				return new Entry(player, ScoredHand.fromJson(entryNode.get("hand"), scheme, playerWind, prevailingWind), playerWind);
+
+			boolean mahjong = entryNode.path("mahjong").asBoolean(false);
+			int score = entryNode.get("score").asInt();
+			JsonNode handNode = entryNode.get("hand");
+
+			Entry entry = new Entry(player, playerWind, mahjong, score, handNode, null, scheme, prevailingWind);
+
+			if (handNode.has("totalScore") && handNode.has("totalScoreUnlimited"))
+				entry.setStoredHandScores(handNode.get("totalScore").asInt(), handNode.get("totalScoreUnlimited").asInt());
+
+			return entry;
 		}
 
-		ObjectNode toJson()
+		ObjectNode toJson(int score)
 		{
 			ObjectNode entry = JsonUtil.createObjectNode();
 
 			entry.put("playerId", player.getId());
-			entry.set("hand", hand.toJson());
+
+			// An unread hand is written as it was read.
+			if (handNode != null)
+				entry.set("hand", handNode);
+			else
+				entry.set("hand", getHand().toJson());
+
 			entry.put("playerWind", playerWind.name());
+			entry.put("score", score);
+
+			if (isMahjong())
+				entry.put("mahjong", true);
 
 			return entry;
 		}
+
+		void writeJson(JsonGenerator generator, int score) throws IOException
+		{
+			generator.writeStartObject();
+			generator.writeStringField("playerId", player.getId());
+			generator.writeFieldName("hand");
+
+			if (handNode != null)
+				generator.writeTree(handNode);
+			else
+				getHand().writeJson(generator);
+
+			generator.writeStringField("playerWind", playerWind.name());
+			generator.writeNumberField("score", score);
+
+			if (isMahjong())
+				generator.writeBooleanField("mahjong", true);
+
+			generator.writeEndObject();
+		}
+
+		void writeTo(BinaryOutput output, int score)
+		{
+			output.writeByte(playerWind.ordinal());
+
+			// An unread hand is written with the scores it was read with, and without scoring it.
+			if (hand == null && handScoresStored)
+			{
+				output.writeBoolean(mahjong);
+				output.writeSignedVarint(score);
+				output.writeSignedVarint(storedHandScore);
+				output.writeSignedVarint(storedHandScoreUnlimited);
+
+				if (handInput != null)
+				{
+					output.writeBlock(handInput.toByteArray());
+				}
+				else
+				{
+					BinaryOutput handOutput = new BinaryOutput();
+
+					ScoredHand.writeJsonTo(handNode, handOutput);
+					output.writeBlock(handOutput);
+				}
+
+				return;
+			}
+
+			ScoredHand readHand = getHand();
+			BinaryOutput handOutput = new BinaryOutput();
+
+			readHand.writeTo(handOutput);
+
+			output.writeBoolean(readHand.isMahjong());
+			output.writeSignedVarint(score);
+			output.writeSignedVarint(readHand.getTotalScore());
+			output.writeSignedVarint(readHand.getTotalScoreUnlimited());
+			output.writeBlock(handOutput);
+		}
 	}
 }
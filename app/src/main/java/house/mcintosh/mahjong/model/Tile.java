@@ -4,9 +4,11 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import house.mcintosh.mahjong.exception.LoadException;
@@ -14,9 +16,19 @@ import house.mcintosh.mahjong.util.JsonUtil;
 
 /**
  * A tile in a hand.
+ *
+ * There is exactly one instance of each of the 34 kinds of tile, obtained through the get()
+ * factory methods, so tiles can be compared by identity.  Each instance has a dense index
+ * that can be used to key arrays: suits in suit then number order, then winds, then dragons.
  */
 public final class Tile implements Serializable
 {
+	/** The number of different kinds of tile. */
+	public static final int COUNT = 34;
+
+	public static final int FIRST_WIND_INDEX = 27;
+	public static final int FIRST_DRAGON_INDEX = 31;
+
 	//
 	// The ordering of these enumerations affects the sort order of Sets in a Hand.
 	//
@@ -74,34 +86,76 @@ public final class Tile implements Serializable
 		}
 	}
 
+	/** The canonical instances, indexed by getIndex(). */
+	private static final Tile[] s_tiles = new Tile[COUNT];
+
+	static
+	{
+		for (Suit suit : Suit.values())
+			for (Number number : Number.values())
+				intern(new Tile(suit, number, null, null, Type.SUIT, suit.ordinal() * 9 + number.ordinal()));
+
+		for (Wind wind : Wind.values())
+			intern(new Tile(null, null, wind, null, Type.WIND, FIRST_WIND_INDEX + wind.ordinal()));
+
+		for (Dragon dragon : Dragon.values())
+			intern(new Tile(null, null, null, dragon, Type.DRAGON, FIRST_DRAGON_INDEX + dragon.ordinal()));
+	}
+
 	private final Suit m_suit;
 	private final Number m_number;
 	private final Wind m_wind;
 	private final Dragon m_dragon;
 	private final Type m_type;
+	private final int m_index;
 
-	private Tile(Suit suit, Number number, Wind wind, Dragon dragon, Type type)
+	/**
+	 * Private constructor, only used to populate the table of canonical instances.
+	 */
+	private Tile(Suit suit, Number number, Wind wind, Dragon dragon, Type type, int index)
 	{
 		this.m_suit = suit;
 		this.m_number = number;
 		this.m_wind = wind;
 		this.m_dragon = dragon;
 		this.m_type = type;
+		this.m_index = index;
+	}
+
+	private static void intern(Tile tile)
+	{
+		s_tiles[tile.m_index] = tile;
 	}
 
-	public Tile(Suit suit, Number number)
+	public static Tile get(Suit suit, Number number)
 	{
-		this(suit, number, null, null, Type.SUIT);
+		return s_tiles[suit.ordinal() * 9 + number.ordinal()];
 	}
 
-	public Tile(Wind wind)
+	public static Tile get(Wind wind)
 	{
-		this(null, null, wind, null, Type.WIND);
+		return s_tiles[FIRST_WIND_INDEX + wind.ordinal()];
 	}
 
-	public Tile(Dragon dragon)
+	public static Tile get(Dragon dragon)
 	{
-		this(null, null, null, dragon, Type.DRAGON);
+		return s_tiles[FIRST_DRAGON_INDEX + dragon.ordinal()];
+	}
+
+	/**
+	 * @param index	A tile index in the range 0 to COUNT-1, as returned by getIndex().
+	 */
+	public static Tile get(int index)
+	{
+		return s_tiles[index];
+	}
+
+	/**
+	 * @return	The dense index of this kind of tile, in the range 0 to COUNT-1.
+	 */
+	public int getIndex()
+	{
+		return m_index;
 	}
 
 	public Suit getSuit()
@@ -149,47 +203,33 @@ public final class Tile implements Serializable
 	}
 
 	/**
-	 * Creates a new tile in same suit as the current tile but with the next number
+	 * Gets the tile in same suit as the current tile but with the next number
 	 * in sequence.
 	 * 
 	 * Only valid to be called for SUIT types with numbers up to EIGHT.
 	 */
 	public Tile createNextNumber()
 	{
-		return new Tile(this.m_suit, this.m_number.next());
+		return get(this.m_suit, this.m_number.next());
 	}
 
+	/** Tiles are interned, so identity is equality. */
 	public boolean equals(Object other)
 	{
-		if (!(other instanceof Tile))
-			return false;
-
-		Tile that = (Tile)other;
-
-		return     this.m_type == that.m_type
-				&& this.m_dragon == that.m_dragon
-				&& this.m_wind == that.m_wind
-				&& this.m_suit == that.m_suit
-				&& this.m_number == that.m_number;
+		return this == other;
 	}
 
 	public int hashCode()
 	{
-		int hash = m_type.hashCode();
-
-		if (m_dragon != null)
-			hash ^= m_dragon.hashCode();
-
-		if (m_wind != null)
-			hash ^= m_wind.hashCode();
-
-		if (m_suit != null)
-			hash ^= m_suit.hashCode();
-
-		if (m_number != null)
-			hash ^= m_number.hashCode();
+		return m_index;
+	}
 
-		return hash;
+	/**
+	 * Make sure that deserialisation returns the canonical instance.
+	 */
+	private Object readResolve()
+	{
+		return s_tiles[m_index];
 	}
 
 	public ObjectNode toJson()
@@ -215,16 +255,42 @@ public final class Tile implements Serializable
 		return tile;
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+
+		switch (m_type)
+		{
+			case DRAGON:
+				generator.writeStringField("dragon", m_dragon.name());
+				break;
+
+			case WIND:
+				generator.writeStringField("wind", m_wind.name());
+				break;
+
+			case SUIT:
+				generator.writeStringField("suit", m_suit.name());
+				generator.writeStringField("number", m_number.name());
+				break;
+		}
+
+		generator.writeEndObject();
+	}
+
 	static public Tile fromJson(JsonNode node)
 	{
 		if (node.has("dragon"))
-			return new Tile(Dragon.valueOf(node.get("dragon").asText()));
+			return get(Dragon.valueOf(node.get("dragon").asText()));
 
 		if (node.has("wind"))
-			return new Tile(Wind.valueOf(node.get("wind").asText()));
+			return get(Wind.valueOf(node.get("wind").asText()));
 
 		if (node.has("suit"))
-			return new Tile(Suit.valueOf(node.get("suit").asText()), Number.valueOf(node.get("number").asText()));
+			return get(Suit.valueOf(node.get("suit").asText()), Number.valueOf(node.get("number").asText()));
 
 		throw new LoadException("Invalid Tile JSON");
 	}
@@ -0,0 +1,322 @@
+package house.mcintosh.mahjong.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import house.mcintosh.mahjong.exception.InvalidHandException;
+import house.mcintosh.mahjong.model.Group;
+import house.mcintosh.mahjong.model.Tile;
+import house.mcintosh.mahjong.model.Wind;
+
+/**
+ * Finds the best scoring Mahjong hand that can be made from a collection of tiles, by trying
+ * every way of splitting the tiles into pairs, chows, pungs and kongs.
+ *
+ * Chows cannot span suits, and honour tiles can only be split one way, so each suit is split
+ * independently.  The ways of splitting a suit depend only on the pattern of counts within the
+ * suit, so they are memoised by that pattern and shared between suits, hands and instances.
+ * Only the combinations of suit splits that make a Mahjong hand are then scored.
+ */
+public final class HandDecomposer
+{
+	private static final int SUIT_SIZE = Tile.Number.values().length;
+	private static final int SUIT_COUNT = Tile.Suit.values().length;
+	private static final int MAX_TILE_COUNT = 4;
+
+	private static final Group.Type[] TYPES = Group.Type.values();
+
+	/** The group types that are made of identical tiles.  EMPTY represents no group. */
+	private static final Group.Type[] SAME_TILE_TYPES =
+		{ Group.Type.EMPTY, Group.Type.PAIR, Group.Type.PUNG, Group.Type.KONG };
+
+	/**
+	 * The ways of splitting each pattern of tile counts within a suit, keyed by the counts encoded
+	 * in base 5.  Each way is an array of groups, each encoded by encodeGroup().  Splits never
+	 * contain more than one pair, since they could not then be part of a Mahjong hand.
+	 */
+	private static final Map<Integer, int[][]> s_suitSplits = new ConcurrentHashMap<>();
+
+	private final ScoringScheme	m_scheme;
+	private final Wind			m_ownWind;
+	private final Wind			m_prevailingWind;
+
+	public HandDecomposer(ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
+	{
+		m_scheme = scheme;
+		m_ownWind = ownWind;
+		m_prevailingWind = prevailingWind;
+	}
+
+	public ScoringScheme getScoringScheme()
+	{
+		return m_scheme;
+	}
+
+	/**
+	 * @param tileCounts	The number of each kind of tile, indexed by Tile.getIndex().  A kong is
+	 *                      four tiles, so a hand with kongs has more tiles than MahjongHandSize.
+	 * @param concealed		Whether pairs, pungs and kongs of each kind of tile are concealed, indexed
+	 *                      by Tile.getIndex().  null if all are exposed.  Chows are always exposed.
+	 * @param completedBy	The ways in which the hand was completed.  null or empty if none apply.
+	 * @return	The highest scoring Mahjong hand that can be made from the tiles, or null if the
+	 * 			tiles cannot make a Mahjong hand.
+	 */
+	public ScoredHand findBestHand(int[] tileCounts, boolean[] concealed, Set<ScoredHand.HandCompletedBy> completedBy)
+	{
+		if (tileCounts.length != Tile.COUNT || (concealed != null && concealed.length != Tile.COUNT))
+			throw new InvalidHandException("Tile counts must be given for " + Tile.COUNT + " kinds of tile");
+
+		for (int count : tileCounts)
+		{
+			if (count < 0 || count > MAX_TILE_COUNT)
+				throw new InvalidHandException("Invalid tile count: " + count);
+		}
+
+		// Honour tiles can only be split one way.
+
+		int[] honourGroups = new int[Tile.COUNT - Tile.FIRST_WIND_INDEX];
+		int honourGroupCount = 0;
+
+		for (int index = Tile.FIRST_WIND_INDEX ; index < Tile.COUNT ; index++)
+		{
+			int count = tileCounts[index];
+
+			if (count == 0)
+				continue;
+
+			if (count == 1)
+				return null;
+
+			honourGroups[honourGroupCount++] = encodeGroup(SAME_TILE_TYPES[count - 1], index);
+		}
+
+		honourGroups = Arrays.copyOf(honourGroups, honourGroupCount);
+
+		int honourPairs = countPairs(honourGroups);
+		int honourHandSize = getHandSize(honourGroups);
+
+		if (honourPairs > 1)
+			return null;
+
+		int[][][] suitSplits = new int[SUIT_COUNT][][];
+
+		for (int suit = 0 ; suit < SUIT_COUNT ; suit++)
+		{
+			suitSplits[suit] = getSuitSplits(tileCounts, suit * SUIT_SIZE);
+
+			if (suitSplits[suit].length == 0)
+				return null;
+		}
+
+		// Try every combination of the splits of the three suits that makes a Mahjong hand.
+
+		ScoredHand bestHand = null;
+
+		for (int[] circles : suitSplits[0])
+		{
+			for (int[] characters : suitSplits[1])
+			{
+				for (int[] bamboo : suitSplits[2])
+				{
+					int pairs = honourPairs + countPairs(circles) + countPairs(characters) + countPairs(bamboo);
+
+					if (pairs != 1)
+						continue;
+
+					int handSize = honourHandSize + getHandSize(circles) + getHandSize(characters) + getHandSize(bamboo);
+
+					if (handSize != m_scheme.MahjongHandSize)
+						continue;
+
+					ScoredHand hand = new ScoredHand(m_scheme);
+
+					addGroups(hand, honourGroups, 0, concealed);
+					addGroups(hand, circles, 0, concealed);
+					addGroups(hand, characters, SUIT_SIZE, concealed);
+					addGroups(hand, bamboo, 2 * SUIT_SIZE, concealed);
+
+					if (completedBy != null)
+					{
+						for (ScoredHand.HandCompletedBy by : completedBy)
+							hand.setMahjongCompletedBy(by, true);
+					}
+
+					if (bestHand == null || isBetter(hand, bestHand))
+						bestHand = hand;
+				}
+			}
+		}
+
+		return bestHand;
+	}
+
+	/**
+	 * Count the tiles of each kind in some groups, in the form accepted by findBestHand().
+	 */
+	public static int[] countTiles(Iterable<? extends Group> groups)
+	{
+		int[] tileCounts = new int[Tile.COUNT];
+
+		for (Group group : groups)
+		{
+			for (Tile tile : group.getTiles())
+				tileCounts[tile.getIndex()]++;
+		}
+
+		return tileCounts;
+	}
+
+	private static boolean isBetter(ScoredHand hand, ScoredHand other)
+	{
+		if (hand.getTotalScore() != other.getTotalScore())
+			return hand.getTotalScore() > other.getTotalScore();
+
+		return hand.getTotalScoreUnlimited() > other.getTotalScoreUnlimited();
+	}
+
+	private void addGroups(ScoredHand hand, int[] groups, int offset, boolean[] concealed)
+	{
+		for (int group : groups)
+		{
+			Group.Type type = decodeType(group);
+			int index = offset + decodeIndex(group);
+
+			Group.Visibility visibility = concealed != null && concealed[index] ? Group.Visibility.CONCEALED : Group.Visibility.EXPOSED;
+
+			hand.add(ScoredGroup.get(type, Tile.get(index), visibility, m_scheme, m_ownWind, m_prevailingWind));
+		}
+	}
+
+	/**
+	 * Get the ways of splitting the tiles of one suit into groups.
+	 *
+	 * @param offset	The index of the first tile of the suit within tileCounts.
+	 */
+	private static int[][] getSuitSplits(int[] tileCounts, int offset)
+	{
+		int key = 0;
+
+		for (int number = SUIT_SIZE - 1 ; number >= 0 ; number--)
+			key = key * (MAX_TILE_COUNT + 1) + tileCounts[offset + number];
+
+		int[][] splits = s_suitSplits.get(key);
+
+		if (splits == null)
+		{
+			List<int[]> found = new ArrayList<>();
+			int[] counts = Arrays.copyOfRange(tileCounts, offset, offset + SUIT_SIZE);
+
+			// At most one group starts with each tile, except for chows, and there can be at
+			// most four chows starting with any one tile.
+
+			splitSuit(counts, 0, 0, new int[SUIT_SIZE * (MAX_TILE_COUNT + 1)], 0, found);
+
+			splits = found.toArray(new int[found.size()][]);
+			s_suitSplits.put(key, splits);
+		}
+
+		return splits;
+	}
+
+	/**
+	 * Recursively split the tiles of a suit, starting at the lowest number that still has tiles.
+	 * Every remaining tile of that number must start a group, so it can only be in one group
+	 * made of identical tiles, with all the other tiles of that number starting chows.  Choosing
+	 * in that order means that each split is only found once.
+	 */
+	private static void splitSuit(int[] counts, int number, int pairs, int[] groups, int groupCount, List<int[]> found)
+	{
+		while (number < SUIT_SIZE && counts[number] == 0)
+			number++;
+
+		if (number == SUIT_SIZE)
+		{
+			found.add(Arrays.copyOf(groups, groupCount));
+			return;
+		}
+
+		int count = counts[number];
+
+		for (Group.Type type : SAME_TILE_TYPES)
+		{
+			int chows = count - type.getSize();
+
+			if (chows < 0)
+				break;
+
+			if (type == Group.Type.PAIR && pairs > 0)
+				continue;
+
+			if (chows > 0 && (number + 2 >= SUIT_SIZE || counts[number + 1] < chows || counts[number + 2] < chows))
+				continue;
+
+			int newGroupCount = groupCount;
+
+			if (type != Group.Type.EMPTY)
+				groups[newGroupCount++] = encodeGroup(type, number);
+
+			for (int chow = 0 ; chow < chows ; chow++)
+				groups[newGroupCount++] = encodeGroup(Group.Type.CHOW, number);
+
+			counts[number] = 0;
+
+			if (chows > 0)
+			{
+				counts[number + 1] -= chows;
+				counts[number + 2] -= chows;
+			}
+
+			splitSuit(counts, number + 1, type == Group.Type.PAIR ? pairs + 1 : pairs, groups, newGroupCount, found);
+
+			counts[number] = count;
+
+			if (chows > 0)
+			{
+				counts[number + 1] += chows;
+				counts[number + 2] += chows;
+			}
+		}
+	}
+
+	static int encodeGroup(Group.Type type, int index)
+	{
+		return type.ordinal() * Tile.COUNT + index;
+	}
+
+	static Group.Type decodeType(int group)
+	{
+		return TYPES[group / Tile.COUNT];
+	}
+
+	static int decodeIndex(int group)
+	{
+		return group % Tile.COUNT;
+	}
+
+	private static int countPairs(int[] groups)
+	{
+		int pairs = 0;
+
+		for (int group : groups)
+		{
+			if (decodeType(group) == Group.Type.PAIR)
+				pairs++;
+		}
+
+		return pairs;
+	}
+
+	private static int getHandSize(int[] groups)
+	{
+		int handSize = 0;
+
+		for (int group : groups)
+			handSize += decodeType(group).getHandSize();
+
+		return handSize;
+	}
+}
@@ -0,0 +1,52 @@
+package house.mcintosh.mahjong.scoring;
+
+import java.util.Arrays;
+
+/**
+ * A compact key that identifies everything that the score of a hand depends on, other than the
+ * scoring scheme: the groups in the hand, regardless of order, the winds and the ways that the
+ * hand was completed.  Hands with equal keys always have the same score under the same scheme.
+ */
+public final class HandKey
+{
+	/** The groups, each encoded as an int, in ascending order. */
+	private final int[]	m_groups;
+	/** The winds and the HandCompletedBy values. */
+	private final int	m_flags;
+	private final int	m_hash;
+
+	HandKey(int[] groups, int flags)
+	{
+		Arrays.sort(groups);
+
+		m_groups = groups;
+		m_flags = flags;
+		m_hash = 31 * Arrays.hashCode(groups) + flags;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (this == other)
+			return true;
+
+		if (!(other instanceof HandKey))
+			return false;
+
+		HandKey otherKey = (HandKey) other;
+
+		return m_hash == otherKey.m_hash && m_flags == otherKey.m_flags && Arrays.equals(m_groups, otherKey.m_groups);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return m_hash;
+	}
+
+	@Override
+	public String toString()
+	{
+		return Arrays.toString(m_groups) + "/" + Integer.toHexString(m_flags);
+	}
+}
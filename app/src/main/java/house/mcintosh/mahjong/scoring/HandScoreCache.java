@@ -0,0 +1,184 @@
+package house.mcintosh.mahjong.scoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the whole hand scores of hands, for a single scoring scheme.  Many hands
+ * are structurally identical, so their scores need only be calculated once.  The least recently
+ * used entries are discarded once the cache is full.
+ *
+ * Safe for use by multiple threads.  Entries are spread over several separately locked stripes
+ * by the hash of their key, and least recently used is tracked within each stripe.
+ */
+public final class HandScoreCache
+{
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The result of scoring a hand, excluding the group scores, which are held by the groups.
+	 */
+	static final class Entry
+	{
+		final boolean	isMahjong;
+		final boolean	requirePairConcealedInfo;
+		final int		totalScoreLimited;
+		final int		totalScoreUnlimited;
+		final ScoreList	wholeHandScores;
+
+		Entry(boolean isMahjong, boolean requirePairConcealedInfo, int totalScoreLimited, int totalScoreUnlimited, ScoreList wholeHandScores)
+		{
+			this.isMahjong = isMahjong;
+			this.requirePairConcealedInfo = requirePairConcealedInfo;
+			this.totalScoreLimited = totalScoreLimited;
+			this.totalScoreUnlimited = totalScoreUnlimited;
+			this.wholeHandScores = wholeHandScores;
+		}
+	}
+
+	/**
+	 * The number of independently locked stripes, so that threads scoring different hands
+	 * seldom contend.  A power of two, so a stripe can be chosen by masking the key's hash.
+	 */
+	private static final int MAX_STRIPES = 16;
+
+	private final int						m_capacity;
+	private final Stripe[]					m_stripes;
+	private final int						m_stripeMask;
+
+	private final AtomicLong m_hitCount		= new AtomicLong();
+	private final AtomicLong m_missCount	= new AtomicLong();
+
+	public HandScoreCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public HandScoreCache(int capacity)
+	{
+		m_capacity = capacity;
+
+		int stripeCount = 1;
+
+		while (stripeCount < MAX_STRIPES && stripeCount * 2 <= capacity)
+			stripeCount *= 2;
+
+		// Each stripe is bounded separately, so the cache as a whole never exceeds its capacity.
+
+		int stripeCapacity = Math.max(1, capacity / stripeCount);
+
+		m_stripes = new Stripe[stripeCount];
+		m_stripeMask = stripeCount - 1;
+
+		for (int i = 0 ; i < stripeCount ; i++)
+			m_stripes[i] = new Stripe(stripeCapacity);
+	}
+
+	/**
+	 * One part of the cache, which drops its least recently used entry when it is full.
+	 */
+	private static final class Stripe extends LinkedHashMap<HandKey, Entry>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int m_capacity;
+
+		Stripe(int capacity)
+		{
+			// Access ordered, so that the eldest entry is the least recently used.
+
+			super(16, 0.75f, true);
+
+			m_capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<HandKey, Entry> eldest)
+		{
+			return size() > m_capacity;
+		}
+	}
+
+	private Map<HandKey, Entry> getStripe(HandKey key)
+	{
+		int hash = key.hashCode();
+
+		return m_stripes[(hash ^ (hash >>> 16)) & m_stripeMask];
+	}
+
+	Entry get(HandKey key)
+	{
+		Map<HandKey, Entry> stripe = getStripe(key);
+		Entry entry;
+
+		synchronized (stripe)
+		{
+			entry = stripe.get(key);
+		}
+
+		if (entry == null)
+			m_missCount.incrementAndGet();
+		else
+			m_hitCount.incrementAndGet();
+
+		return entry;
+	}
+
+	void put(HandKey key, Entry entry)
+	{
+		Map<HandKey, Entry> stripe = getStripe(key);
+
+		synchronized (stripe)
+		{
+			stripe.put(key, entry);
+		}
+	}
+
+	public int getCapacity()
+	{
+		return m_capacity;
+	}
+
+	public int size()
+	{
+		int size = 0;
+
+		for (Map<HandKey, Entry> stripe : m_stripes)
+		{
+			synchronized (stripe)
+			{
+				size += stripe.size();
+			}
+		}
+
+		return size;
+	}
+
+	public long getHitCount()
+	{
+		return m_hitCount.get();
+	}
+
+	public long getMissCount()
+	{
+		return m_missCount.get();
+	}
+
+	/**
+	 * Discard all entries and reset the counters.
+	 */
+	public void clear()
+	{
+		for (Map<HandKey, Entry> stripe : m_stripes)
+		{
+			synchronized (stripe)
+			{
+				stripe.clear();
+			}
+		}
+
+		m_hitCount.set(0);
+		m_missCount.set(0);
+	}
+}
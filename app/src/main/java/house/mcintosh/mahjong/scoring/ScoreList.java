@@ -7,20 +7,68 @@ public final class ScoreList extends ArrayList<ScoreContribution>
 {
 	private static final long serialVersionUID = 1L;
 	
-	public static final ScoreList EMPTY = new ScoreList();
+	public static final ScoreList EMPTY = new ScoreList().makeImmutable();
+
+	/** Once set, the list cannot be appended to and its totals are cached. */
+	private boolean	m_immutable		= false;
+	private int		m_basicScore	= 0;
+	private int		m_multiplier	= 1;
 
 	public int getTotal()
 	{
-		int score		= 0;
-		int multiplier	= 1;
-		
+		return getBasicScore() * getMultiplier();
+	}
+
+	/**
+	 * @return	The sum of the basic scores in the list, before any multipliers are applied.
+	 */
+	public int getBasicScore()
+	{
+		if (m_immutable)
+			return m_basicScore;
+
+		int score = 0;
+
 		for (ScoreContribution pair : this)
-		{
-			score 		+= pair.getScore();
-			multiplier	*= pair.getHandMultiplier();
-		}
-		
-		return score * multiplier;
+			score += pair.getScore();
+
+		return score;
+	}
+
+	/**
+	 * @return	The product of all the hand multipliers in the list.
+	 */
+	public int getMultiplier()
+	{
+		if (m_immutable)
+			return m_multiplier;
+
+		int multiplier = 1;
+
+		for (ScoreContribution pair : this)
+			multiplier *= pair.getHandMultiplier();
+
+		return multiplier;
+	}
+
+	public boolean isImmutable()
+	{
+		return m_immutable;
+	}
+
+	/**
+	 * Prevent any further contributions being appended, and calculate the totals once so
+	 * that they do not need to be recalculated on every call.
+	 *
+	 * @return	The list itself, for chaining.
+	 */
+	ScoreList makeImmutable()
+	{
+		m_basicScore	= getBasicScore();
+		m_multiplier	= getMultiplier();
+		m_immutable		= true;
+
+		return this;
 	}
 	
 	public boolean add(ScoreContribution score)
@@ -33,9 +81,9 @@ public final class ScoreList extends ArrayList<ScoreContribution>
 	 */
 	public ScoreList append(ScoreContribution contribution)
 	{
-		// Won't stop all modifications to EMPTY, but helps.
+		// Won't stop all modifications to immutable lists such as EMPTY, but helps.
 		
-		if (this == EMPTY)
+		if (m_immutable)
 			throw new UnsupportedOperationException();
 		
 		super.add(contribution);
@@ -45,9 +93,9 @@ public final class ScoreList extends ArrayList<ScoreContribution>
 	
 	public ScoreList append(ScoreList scores)
 	{
-		// Won't stop all modifications to EMPTY, but helps.
+		// Won't stop all modifications to immutable lists such as EMPTY, but helps.
 		
-		if (this == EMPTY)
+		if (m_immutable)
 			throw new UnsupportedOperationException();
 		
 		for (ScoreContribution score : scores)
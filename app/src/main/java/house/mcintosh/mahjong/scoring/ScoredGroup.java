@@ -9,10 +9,14 @@ import house.mcintosh.mahjong.model.Group;
 import house.mcintosh.mahjong.model.Tile;
 import house.mcintosh.mahjong.model.Wind;
 import house.mcintosh.mahjong.scoring.ScoringScheme.ScoreElement;
+import house.mcintosh.mahjong.util.BinaryInput;
 
 /**
  * A Group that has been scored.  Immutable because the Set is is constructed from is immutable, and
  * the score is calculated during construction.
+ *
+ * Being immutable, instances can be shared.  Use get() to obtain a shared instance from the pool
+ * that belongs to the scoring scheme, rather than constructing a new one.
  */
 public final class ScoredGroup extends Group implements Serializable
 {
@@ -55,19 +59,37 @@ public final class ScoredGroup extends Group implements Serializable
 	}
 
 	/**
-	 * Get a new instance, identical to this instance, except that visibility is toggled.
+	 * Get a shared instance of a scored group from the pool for a scoring scheme.
+	 */
+	public static ScoredGroup get(Type type, Tile firstTile, Visibility visibility, ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
+	{
+		return scheme.getScoredGroupPool().get(type, firstTile, visibility, ownWind, prevailingWind);
+	}
+
+	/**
+	 * Get an instance, identical to this instance, except that visibility is toggled.
 	 */
 	public ScoredGroup toggleVisibility()
 	{
-		Group group = super.toggleVisibility();
+		Visibility visibility = isConcealed() ? Visibility.EXPOSED : Visibility.CONCEALED;
 
-		return new ScoredGroup(group, m_scheme, m_ownWind, m_prevailingWind);
+		return get(getType(), getFirstTile(), visibility, m_scheme, m_ownWind, m_prevailingWind);
 	}
 	
 	public ScoreList getScore()
 	{
 		return m_score;
 	}
+
+	public Wind getOwnWind()
+	{
+		return m_ownWind;
+	}
+
+	public Wind getPrevailingWind()
+	{
+		return m_prevailingWind;
+	}
 	
 	private ScoreList scorePair(ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
 	{
@@ -182,8 +204,20 @@ public final class ScoredGroup extends Group implements Serializable
 
 	static public ScoredGroup fromJson(JsonNode scoredGroup, ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
 	{
-		Group group = Group.fromJson(scoredGroup);
+		Type type = Type.valueOf(scoredGroup.get("type").asText());
+		Visibility visibility = Visibility.valueOf(scoredGroup.get("visibility").asText());
+		Tile firstTile = Tile.fromJson(scoredGroup.get("firstTile"));
+
+		return get(type, firstTile, visibility, scheme, ownWind, prevailingWind);
+	}
+
+	/**
+	 * Read a group written by Group.writeTo().
+	 */
+	static public ScoredGroup readFrom(BinaryInput input, ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
+	{
+		int code = readBinaryCode(input);
 
-		return new ScoredGroup(group, scheme, ownWind, prevailingWind);
+		return get(getBinaryCodeType(code), getBinaryCodeFirstTile(code), getBinaryCodeVisibility(code), scheme, ownWind, prevailingWind);
 	}
 }
@@ -0,0 +1,55 @@
+package house.mcintosh.mahjong.scoring;
+
+import house.mcintosh.mahjong.model.Group;
+import house.mcintosh.mahjong.model.Tile;
+import house.mcintosh.mahjong.model.Wind;
+
+/**
+ * A pool of canonical ScoredGroups for a single ScoringScheme.  There are only a few thousand
+ * distinct combinations of group type, first tile, visibility and winds, so each one is
+ * created once and then shared between all hands that use the scheme.
+ *
+ * ScoredGroups are immutable, so sharing is safe.  Two threads might race to fill the same
+ * slot, in which case one of the two equivalent instances is simply discarded.
+ */
+final class ScoredGroupPool
+{
+	private static final Group.Type[] TYPES = Group.Type.values();
+	private static final int WIND_COUNT = Wind.values().length;
+	private static final int VISIBILITY_COUNT = Group.Visibility.values().length;
+	private static final int VISIBILITY_SLOTS = VISIBILITY_COUNT + 1;
+
+	private final ScoringScheme m_scheme;
+	private final ScoredGroup[] m_groups = new ScoredGroup[TYPES.length * Tile.COUNT * VISIBILITY_SLOTS * WIND_COUNT * WIND_COUNT];
+
+	ScoredGroupPool(ScoringScheme scheme)
+	{
+		m_scheme = scheme;
+	}
+
+	ScoredGroup get(Group.Type type, Tile firstTile, Group.Visibility visibility, Wind ownWind, Wind prevailingWind)
+	{
+		// Normalise the key using the Group's own rules, so that equivalent groups share a slot
+		// and a pooled group is identical to one constructed directly.  A pair may legitimately
+		// have no visibility, which has a slot of its own.
+
+		firstTile = Group.normaliseFirstTile(type, firstTile);
+		visibility = Group.normaliseVisibility(type, visibility);
+
+		int index = type.ordinal();
+		index = index * Tile.COUNT + firstTile.getIndex();
+		index = index * VISIBILITY_SLOTS + (visibility == null ? VISIBILITY_COUNT : visibility.ordinal());
+		index = index * WIND_COUNT + ownWind.ordinal();
+		index = index * WIND_COUNT + prevailingWind.ordinal();
+
+		ScoredGroup group = m_groups[index];
+
+		if (group == null)
+		{
+			group = new ScoredGroup(new Group(type, firstTile, visibility), m_scheme, ownWind, prevailingWind);
+			m_groups[index] = group;
+		}
+
+		return group;
+	}
+}
@@ -1,29 +1,45 @@
 package house.mcintosh.mahjong.scoring;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import house.mcintosh.mahjong.model.Group;
 import house.mcintosh.mahjong.model.GroupComparator;
 import house.mcintosh.mahjong.model.Tile;
 import house.mcintosh.mahjong.model.Wind;
 import house.mcintosh.mahjong.scoring.ScoringScheme.ScoreElement;
+import house.mcintosh.mahjong.exception.LoadException;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
 import house.mcintosh.mahjong.util.JsonUtil;
 
 /**
  * A hand that is scored.  A scored hand can change. As sets are added to it the score and
  * Mahjong status of the hand change.
  *
- * Extends ArrayList so that an ArrayAdaptor can be used for display.  However, ScoredGroups should
- * be added using the add() method only, ensuring that the list is sorted and the score updated.
+ * Extends ArrayList so that an ArrayAdaptor can be used for display.  However, ScoredGroups can
+ * only be added with add(group) and removed with remove(), ensuring that the list is sorted and the
+ * score updated.  The other methods that change the list throw UnsupportedOperationException.
+ *
+ * The score is maintained incrementally.  Running aggregates of the groups in the hand are
+ * adjusted as each group is added or removed, so that updating the score does not need to
+ * re-walk or re-sort the groups.  Whole hand scores of complete and loaded hands are also shared,
+ * through the HandScoreCache of the scoring scheme, between all hands with the same HandKey.
  */
 
 public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializable
@@ -55,11 +71,31 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 		}
 	}
 
+	private static final GroupComparator GROUP_COMPARATOR = new GroupComparator();
+
+	/** The number of bits used to hold each wind in a HandKey. */
+	private static final int WIND_BITS = 3;
+
 	private final ScoringScheme					m_scheme;
 	private final boolean						m_sort;
 	
 	private ScoreList							m_wholeHandScores = new ScoreList();
-	private ScoreList							m_groupScores = new ScoreList();
+
+	/** Built on demand from the groups in the hand.  null when it needs to be rebuilt. */
+	private ScoreList							m_groupScores = null;
+
+	// Running aggregates over the groups in the hand.  Only to be changed through
+	// addToAggregates() and removeFromAggregates().
+
+	private int		m_tileCount					= 0;
+	private int		m_pairCount					= 0;
+	private int		m_chowCount					= 0;
+	private int		m_minorCount				= 0;
+	private int		m_exposedCount				= 0;
+	private int		m_exposedNonPairCount		= 0;
+	private int[]	m_suitCounts				= new int[Tile.Suit.values().length];
+	private int		m_groupBasicScore			= 0;
+	private int		m_groupMultiplier			= 1;
 	
 	private boolean	m_requirePairConcealedInfo	= false;
 
@@ -86,16 +122,25 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 	@Override
 	public boolean add(ScoredGroup group)
 	{
-		super.add(group);
+		insert(group);
+		updateScore();
 
-		m_latestAddition = group;
+		return true;
+	}
 
+	/**
+	 * Add a group without updating the score, for when several groups are being added at once.
+	 */
+	private void insert(ScoredGroup group)
+	{
 		if (m_sort)
-			Collections.sort(this, new GroupComparator());
-		
-		updateScore();
+			super.add(findSortedPosition(group), group);
+		else
+			super.add(group);
 
-		return true;
+		m_latestAddition = group;
+
+		addToAggregates(group);
 	}
 
 	@Override
@@ -106,19 +151,201 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 		if (removedGroup == m_latestAddition)
 			m_latestAddition = null;
 
+		removeFromAggregates(removedGroup);
 		updateScore();
 
 		return removedGroup;
 	}
 
+	@Override
+	public boolean remove(Object group)
+	{
+		int position = indexOf(group);
+
+		if (position < 0)
+			return false;
+
+		remove(position);
+
+		return true;
+	}
+
+	// The other ways of changing the list would leave it unsorted, or the aggregates and score
+	// out of date, so are not supported.
+
+	@Override
+	public void add(int position, ScoredGroup group)
+	{
+		throw new UnsupportedOperationException("Groups can only be added to a hand with add(group)");
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends ScoredGroup> groups)
+	{
+		throw new UnsupportedOperationException("Groups can only be added to a hand with add(group)");
+	}
+
+	@Override
+	public boolean addAll(int position, Collection<? extends ScoredGroup> groups)
+	{
+		throw new UnsupportedOperationException("Groups can only be added to a hand with add(group)");
+	}
+
+	@Override
+	public ScoredGroup set(int position, ScoredGroup group)
+	{
+		throw new UnsupportedOperationException("Groups in a hand cannot be replaced");
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<ScoredGroup> operator)
+	{
+		throw new UnsupportedOperationException("Groups in a hand cannot be replaced");
+	}
+
+	@Override
+	public void sort(Comparator<? super ScoredGroup> comparator)
+	{
+		throw new UnsupportedOperationException("Groups in a hand cannot be reordered");
+	}
+
+	@Override
+	public void clear()
+	{
+		throw new UnsupportedOperationException("Groups can only be removed from a hand with remove()");
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> groups)
+	{
+		throw new UnsupportedOperationException("Groups can only be removed from a hand with remove()");
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> groups)
+	{
+		throw new UnsupportedOperationException("Groups can only be removed from a hand with remove()");
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super ScoredGroup> filter)
+	{
+		throw new UnsupportedOperationException("Groups can only be removed from a hand with remove()");
+	}
+
+	@Override
+	protected void removeRange(int fromPosition, int toPosition)
+	{
+		throw new UnsupportedOperationException("Groups can only be removed from a hand with remove()");
+	}
+
+	@Override
+	public List<ScoredGroup> subList(int fromPosition, int toPosition)
+	{
+		return Collections.unmodifiableList(super.subList(fromPosition, toPosition));
+	}
+
 	public void replaceLatestAddition(ScoredGroup group)
 	{
-		// Remove the latest addition, and add the new group instead of it.
+		// Remove the latest addition, and add the new group instead of it.  The score is
+		// only updated once, when the new group is added.
+
+		int position = getLatestAdditionPosition();
+
+		if (position >= 0)
+			removeFromAggregates(super.remove(position));
 
-		remove(m_latestAddition);
 		add(group);
 	}
 
+	/**
+	 * Find the position at which a group should be inserted to keep the hand sorted.  Equal
+	 * groups are inserted after those already in the hand, matching a stable sort.
+	 */
+	private int findSortedPosition(ScoredGroup group)
+	{
+		int low		= 0;
+		int high	= size();
+
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+
+			if (GROUP_COMPARATOR.compare(get(mid), group) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		return low;
+	}
+
+	private void addToAggregates(ScoredGroup group)
+	{
+		updateAggregates(group, 1);
+	}
+
+	private void removeFromAggregates(ScoredGroup group)
+	{
+		updateAggregates(group, -1);
+	}
+
+	/**
+	 * Add (delta = 1) or remove (delta = -1) the contribution of a group to the running aggregates.
+	 */
+	private void updateAggregates(ScoredGroup group, int delta)
+	{
+		Group.Type	type		= group.getType();
+		Tile		firstTile	= group.getFirstTile();
+		ScoreList	score		= group.getScore();
+
+		m_tileCount += delta * type.getHandSize();
+
+		if (type == Group.Type.PAIR)
+			m_pairCount += delta;
+
+		if (type == Group.Type.CHOW)
+			m_chowCount += delta;
+
+		if (!firstTile.isMajor())
+			m_minorCount += delta;
+
+		if (firstTile.getType() == Tile.Type.SUIT)
+			m_suitCounts[firstTile.getSuit().ordinal()] += delta;
+
+		if (!group.isConcealed())
+		{
+			m_exposedCount += delta;
+
+			if (type != Group.Type.PAIR)
+				m_exposedNonPairCount += delta;
+		}
+
+		m_groupBasicScore += delta * score.getBasicScore();
+
+		// Multipliers are all whole numbers, so removing a group divides out exactly.
+
+		if (delta > 0)
+			m_groupMultiplier *= score.getMultiplier();
+		else
+			m_groupMultiplier /= score.getMultiplier();
+
+		m_groupScores = null;
+	}
+
+	/**
+	 * @return	The number of tiles in the hand, counting each kong as three tiles.
+	 */
+	int getTileCount()
+	{
+		return m_tileCount;
+	}
+
+	int getPairCount()
+	{
+		return m_pairCount;
+	}
+
 	public int getLatestAdditionPosition()
 	{
 		if (m_latestAddition == null)
@@ -149,6 +376,16 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 
 	public ScoreList getGroupScores()
 	{
+		if (m_groupScores == null)
+		{
+			ScoreList groupScores = new ScoreList();
+
+			for (ScoredGroup group : this)
+				groupScores.append(group.getScore());
+
+			m_groupScores = groupScores.makeImmutable();
+		}
+
 		return m_groupScores;
 	}
 	
@@ -162,6 +399,19 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 	 * 			a way that might require them to be redisplayed.
 	 */
 	public boolean setMahjongCompletedBy(HandCompletedBy completed, boolean value)
+	{
+		boolean tilesChanged = applyCompletedBy(completed, value);
+
+		updateScore();
+
+		return tilesChanged;
+	}
+
+	/**
+	 * Record how the hand was completed without updating the score, for when a hand is being
+	 * built in one go.
+	 */
+	private boolean applyCompletedBy(HandCompletedBy completed, boolean value)
 	{
 		// This could be info about concealed state of the pair in a Mahjong hand.  If so,
 		// treat it differently - update the tile group to record the information, then leave
@@ -183,10 +433,22 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 
 			if (pairIndex < this.size())
 			{
-				if (this.get(pairIndex).isConcealed() != value)
+				ScoredGroup oldPair = this.get(pairIndex);
+
+				if (oldPair.isConcealed() != value)
 				{
-					ScoredGroup oldPair = super.remove(pairIndex);
-					this.add(pairIndex, oldPair.toggleVisibility());
+					// Visibility does not affect the sort order, so the new pair can simply
+					// take the place of the old one.
+
+					ScoredGroup newPair = oldPair.toggleVisibility();
+
+					super.set(pairIndex, newPair);
+					removeFromAggregates(oldPair);
+					addToAggregates(newPair);
+
+					if (oldPair == m_latestAddition)
+						m_latestAddition = newPair;
+
 					tilesChanged = true;
 				}
 			}
@@ -196,8 +458,6 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 		else
 			m_handCompletedBy.remove(completed);
 
-		updateScore();
-
 		return tilesChanged;
 	}
 
@@ -251,99 +511,156 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 	}
 	
 	/**
-	 * Recalculate the score of the hand, based on the current sets.  Also performs some
-	 * sanity checking on the hand, and calculates whether it is a mahjong hand.
+	 * Recalculate the score of the hand, based on the running aggregates of the current sets.
+	 * Also performs some sanity checking on the hand, and calculates whether it is a mahjong hand.
+	 * <p>
+	 * Partial hands are being edited a group at a time, so are scored directly from the aggregates.
+	 * Only complete hands are worth sharing through the cache.
 	 */
 	private void updateScore()
 	{
-		// Zero score in case we exit early.
-		m_totalScoreLimited = m_totalScoreUnlimited = 0;
-		
-		ScoreList wholeHandScores = new ScoreList();
-		ScoreList groupScores = new ScoreList();
-		
-		int effectiveHandTiles	= 0;
-		int pairCount			= 0;
-		
-		for (ScoredGroup group : this)
+		if (isMahjongAggregate())
+			updateScoreCached();
+		else
+			setScore(calculateScore(false));
+	}
+
+	/**
+	 * Recalculate the score of the hand, sharing the result with all other hands with the same key.
+	 * For use when a hand has been built in one go, such as when it is loaded.
+	 */
+	private void updateScoreCached()
+	{
+		HandScoreCache			cache	= m_scheme.getHandScoreCache();
+		HandKey					key		= getKey();
+		HandScoreCache.Entry	entry	= cache.get(key);
+
+		if (entry == null)
 		{
-			groupScores.append(group.getScore());
-			
-			effectiveHandTiles += group.getType().getHandSize();
-			
-			if (group.getType() == Group.Type.PAIR)
-				pairCount++;
+			entry = calculateScore(isMahjongAggregate());
+			cache.put(key, entry);
 		}
-		
-		if (effectiveHandTiles == m_scheme.MahjongHandSize && pairCount == 1)
-			m_isMahjong = true;
-		else if (effectiveHandTiles >= m_scheme.MahjongHandSize)
+
+		setScore(entry);
+	}
+
+	private HandScoreCache.Entry calculateScore(boolean isMahjong)
+	{
+		ScoreList	wholeHandScores	= calculateWholeHandScores(isMahjong);
+		int			totalUnlimited	= calculateTotalScoreUnlimited(wholeHandScores);
+
+		return new HandScoreCache.Entry(
+				isMahjong,
+				isMahjong && m_exposedNonPairCount == 0,
+				Math.min(totalUnlimited, m_scheme.LimitScore),
+				totalUnlimited,
+				wholeHandScores);
+	}
+
+	private void setScore(HandScoreCache.Entry entry)
+	{
+		m_isMahjong					= entry.isMahjong;
+		m_requirePairConcealedInfo	= entry.requirePairConcealedInfo;
+		m_wholeHandScores			= entry.wholeHandScores;
+		m_totalScoreUnlimited		= entry.totalScoreUnlimited;
+		m_totalScoreLimited			= entry.totalScoreLimited;
+	}
+
+	/**
+	 * @return	A key that is equal for all hands that have the same score under the same scheme.
+	 */
+	public HandKey getKey()
+	{
+		int[]	groups	= new int[size()];
+		int		flags	= 0;
+
+		for (int i = 0 ; i < groups.length ; i++)
+		{
+			ScoredGroup group = get(i);
+
+			int code = group.getType().ordinal() * Tile.COUNT + group.getFirstTile().getIndex();
+
+			groups[i] = (code << 1) | (group.isConcealed() ? 1 : 0);
+		}
+
+		// All groups in a hand have the same winds.  Leave the winds out of an empty hand.
+
+		if (!isEmpty())
+		{
+			ScoredGroup group = get(0);
+
+			flags = (group.getOwnWind().ordinal() + 1) | ((group.getPrevailingWind().ordinal() + 1) << WIND_BITS);
+		}
+
+		for (HandCompletedBy completedBy : m_handCompletedBy)
+			flags |= 1 << (2 * WIND_BITS + completedBy.ordinal());
+
+		return new HandKey(groups, flags);
+	}
+
+	/**
+	 * Calculate the limited total score that the hand would have if a group were added to it.
+	 * The hand itself is left unchanged.
+	 */
+	public int getTotalScoreWith(ScoredGroup group)
+	{
+		ScoreList groupScores = m_groupScores;
+
+		addToAggregates(group);
+
+		int totalScoreUnlimited = calculateTotalScoreUnlimited(calculateWholeHandScores(isMahjongAggregate()));
+
+		removeFromAggregates(group);
+		m_groupScores = groupScores;
+
+		return Math.min(totalScoreUnlimited, m_scheme.LimitScore);
+	}
+
+	/**
+	 * @return	Whether the groups in the running aggregates make a mahjong hand.
+	 */
+	private boolean isMahjongAggregate()
+	{
+		if (m_tileCount == m_scheme.MahjongHandSize && m_pairCount == 1)
+			return true;
+
+		if (m_tileCount >= m_scheme.MahjongHandSize)
 		{
-			m_isMahjong = false;
 			// TODO: Re-enable this.
 			//throw new InvalidHandException("Too many tiles for non-mahjong hand");
 		}
-		else
-			m_isMahjong = false;
 
-		m_requirePairConcealedInfo = false;
+		return false;
+	}
+
+	/**
+	 * Calculate the scores that apply to the hand as a whole, based on the running aggregates.
+	 */
+	private ScoreList calculateWholeHandScores(boolean isMahjong)
+	{
+		ScoreList wholeHandScores = new ScoreList();
 		
-		if (m_isMahjong)
+		if (isMahjong)
 		{
 			// Additional scoring that applies to mahjong hand only.
 			wholeHandScores.append(m_scheme.getScoreContribution(ScoreElement.MahjongHandScore));
 			
-			// Look for all major and no chows
-			
-			boolean			allMajor				= true;
-			boolean			noChow					= true;
-			Set<Tile.Suit>	suits					= new HashSet<>();
-			boolean			allGroupsConcealed		= true;
-			boolean			allNonPairsConcealed	= true;
-			
-			for (ScoredGroup group : this)
-			{
-				Tile firstTile = group.getFirstTile();
-				
-				if (group.getType() == Group.Type.CHOW)
-				{
-					noChow		= false;
-					allMajor	= false;
-				}
-				
-				if (!firstTile.isMajor())
-					allMajor	= false;
-				
-				if (firstTile.getType() == Tile.Type.SUIT)
-					suits.add(firstTile.getSuit());
-
-				if (!group.isConcealed())
-				{
-					allGroupsConcealed = false;
-
-					if (group.getType() != Group.Type.PAIR)
-						allNonPairsConcealed = false;
-				}
-			}
-
 			// Only group scores count towards the no score determination.
-			if (groupScores.getTotal() == 0)
+			if (m_groupBasicScore == 0)
 				wholeHandScores.append(m_scheme.getScoreContribution(ScoreElement.MahjongByNoScoreHandScore));
 
-			if (allMajor)
+			// A chow always contains a minor tile, even if its first tile is major.
+			if (m_chowCount == 0 && m_minorCount == 0)
 				wholeHandScores.append(m_scheme.getScoreContribution(ScoreElement.AllMajorHandScore));
 			
-			if (noChow)
+			if (m_chowCount == 0)
 				wholeHandScores.append(m_scheme.getScoreContribution(ScoreElement.NoChowsHandScore));
 			
-			if (suits.size() == 1)
+			if (getSuitCount() == 1)
 				wholeHandScores.append(m_scheme.getScoreContribution(ScoreElement.SingleSuitHandScore));
 
-			if (allGroupsConcealed)
+			if (m_exposedCount == 0)
 				wholeHandScores.append(m_scheme.getScoreContribution(ScoreElement.AllConcealedHandScore));
-			
-			if (allNonPairsConcealed)
-				m_requirePairConcealedInfo = true;
 
 			// Add in mahjong only hand completion scores - these should only be set for a mahjong
 			// hand, but do it inside here because we don't really trust the UI code that's calling us.
@@ -369,10 +686,32 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 			}
 		}
 
-		m_totalScoreUnlimited	= new ScoreList().append(groupScores).append(wholeHandScores).getTotal();
-		m_totalScoreLimited		= Math.min(m_totalScoreUnlimited, m_scheme.LimitScore);
-		m_wholeHandScores		= wholeHandScores;
-		m_groupScores			= groupScores;
+		// Fix the whole hand totals so that they are only calculated once.
+		return wholeHandScores.makeImmutable();
+	}
+
+	private int calculateTotalScoreUnlimited(ScoreList wholeHandScores)
+	{
+		int basicScore			= m_groupBasicScore + wholeHandScores.getBasicScore();
+		int multiplier			= m_groupMultiplier * wholeHandScores.getMultiplier();
+
+		return basicScore * multiplier;
+	}
+
+	/**
+	 * @return	The number of different suits that appear in the hand.
+	 */
+	private int getSuitCount()
+	{
+		int suitCount = 0;
+
+		for (int count : m_suitCounts)
+		{
+			if (count > 0)
+				suitCount++;
+		}
+
+		return suitCount;
 	}
 
 	public ObjectNode toJson()
@@ -397,9 +736,77 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 		if (completedBy.size() > 0)
 			hand.set("completedBy", completedBy);
 
+		// Not read by fromJson(), which scores the hand again.  Round.Entry.fromJson() trusts these
+		// totals, so that the hand need not be scored, unless the scores are being verified.
+		hand.put("totalScore", getTotalScore());
+		hand.put("totalScoreUnlimited", getTotalScoreUnlimited());
+
 		return hand;
 	}
 
+	/**
+	 * Write the same json as toJson(), without creating a tree.
+	 */
+	public void writeJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("groups");
+
+		for (ScoredGroup group : this)
+			group.writeJson(generator);
+
+		generator.writeEndArray();
+
+		if (!m_handCompletedBy.isEmpty())
+		{
+			generator.writeArrayFieldStart("completedBy");
+
+			for (HandCompletedBy by : m_handCompletedBy)
+				generator.writeString(by.name());
+
+			generator.writeEndArray();
+		}
+
+		generator.writeNumberField("totalScore", getTotalScore());
+		generator.writeNumberField("totalScoreUnlimited", getTotalScoreUnlimited());
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Build a hand from all of its groups and the ways it was completed, scoring it only once.
+	 */
+	static ScoredHand create(ScoringScheme scheme, List<ScoredGroup> groups, Set<HandCompletedBy> completedBy)
+	{
+		ScoredHand scoredHand = new ScoredHand(scheme);
+
+		for (ScoredGroup group : groups)
+			scoredHand.insert(group);
+
+		for (HandCompletedBy by : completedBy)
+			scoredHand.applyCompletedBy(by, true);
+
+		scoredHand.updateScoreCached();
+
+		return scoredHand;
+	}
+
+	/**
+	 * @return	A copy of this hand as it would be held by a player with different winds, and so
+	 * 			rescored.  This hand if the winds are unchanged.
+	 */
+	public ScoredHand withWinds(Wind ownWind, Wind prevailingWind)
+	{
+		if (isEmpty() || (get(0).getOwnWind() == ownWind && get(0).getPrevailingWind() == prevailingWind))
+			return this;
+
+		List<ScoredGroup> groups = new ArrayList<>(size());
+
+		for (ScoredGroup group : this)
+			groups.add(ScoredGroup.get(group.getType(), group.getFirstTile(), group.getVisibility(), m_scheme, ownWind, prevailingWind));
+
+		return create(m_scheme, groups, m_handCompletedBy);
+	}
+
 	static public ScoredHand fromJson(JsonNode hand, ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
 	{
 		ScoredHand scoredHand = new ScoredHand(scheme);
@@ -420,38 +827,96 @@ public final class ScoredHand extends ArrayList<ScoredGroup> implements Serializ
 
 		ArrayNode groups = (ArrayNode)hand.get("groups");
 
+		// Only score the hand once all of the groups are in it.
+
 		for (JsonNode groupJson : groups)
 		{
-			scoredHand.add(ScoredGroup.fromJson(groupJson, scheme, ownWind, prevailingWind));
+			scoredHand.insert(ScoredGroup.fromJson(groupJson, scheme, ownWind, prevailingWind));
 		}
 
+		scoredHand.updateScoreCached();
+
 		return scoredHand;
 	}
 
 	/**
-	 * @return	The maximum number of tiles that can be added to this hand, excluding the extra
-	 * 			tile that comes with each Kong.
+	 * Write the hand in binary: the number of groups, each group, then the ways the hand was
+	 * completed as a bit for each.
 	 */
-	public int getAvailableTileCapacity()
+	public void writeTo(BinaryOutput output)
 	{
-		int tileCount = 0;
-		int pairCount = 0;
+		output.writeVarint(size());
 
-		for (Group group : this)
-		{
-			Group.Type type = group.getType();
+		for (ScoredGroup group : this)
+			group.writeTo(output);
+
+		int completedBy = 0;
+
+		for (HandCompletedBy by : m_handCompletedBy)
+			completedBy |= 1 << by.ordinal();
+
+		output.writeVarint(completedBy);
+	}
+
+	/**
+	 * Write a hand saved by toJson() in binary, as writeTo() would, without reading and
+	 * scoring it.
+	 */
+	static public void writeJsonTo(JsonNode hand, BinaryOutput output)
+	{
+		ArrayNode groups = (ArrayNode)hand.get("groups");
+
+		output.writeVarint(groups.size());
+
+		for (JsonNode groupJson : groups)
+			Group.fromJson(groupJson).writeTo(output);
+
+		int completedBy = 0;
+
+		for (JsonNode byNode : hand.path("completedBy"))
+			completedBy |= 1 << HandCompletedBy.valueOf(byNode.asText("")).ordinal();
+
+		output.writeVarint(completedBy);
+	}
+
+	static public ScoredHand readFrom(BinaryInput input, ScoringScheme scheme, Wind ownWind, Wind prevailingWind)
+	{
+		ScoredHand scoredHand = new ScoredHand(scheme);
+
+		int groupCount = input.readInt();
 
-			tileCount += type.getHandSize();
+		for (int i = 0 ; i < groupCount ; i++)
+			scoredHand.insert(ScoredGroup.readFrom(input, scheme, ownWind, prevailingWind));
 
-			if (type == Group.Type.PAIR)
-				pairCount++;
+		int completedBy = input.readInt();
+
+		for (HandCompletedBy by : HandCompletedBy.values())
+		{
+			if ((completedBy & (1 << by.ordinal())) != 0)
+				scoredHand.m_handCompletedBy.add(by);
 		}
 
-		if (pairCount > 1)
+		if ((completedBy >>> HandCompletedBy.values().length) != 0)
+			throw new LoadException("Invalid hand completion in binary data: " + completedBy);
+
+		// Only score the hand once all of the groups are in it.
+
+		scoredHand.updateScoreCached();
+
+		return scoredHand;
+	}
+
+	/**
+	 * @return	The maximum number of tiles that can be added to this hand, excluding the extra
+	 * 			tile that comes with each Kong.
+	 */
+	public int getAvailableTileCapacity()
+	{
+		if (m_pairCount > 1)
 			// Cannot become a Mahjong hand.
-			return Math.max(0, m_scheme.MahjongHandSize - 1 - tileCount);
+			return Math.max(0, m_scheme.MahjongHandSize - 1 - m_tileCount);
 
 		// else pairCount <= 1, so could become a mahjong hand.
-		return Math.max(0, m_scheme.MahjongHandSize - tileCount);
+		return Math.max(0, m_scheme.MahjongHandSize - m_tileCount);
 	}
 }
@@ -0,0 +1,222 @@
+package house.mcintosh.mahjong.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import house.mcintosh.mahjong.model.Group;
+import house.mcintosh.mahjong.model.Wind;
+
+/**
+ * Scores large numbers of hands against a single scoring scheme, for example to rescore an
+ * archive of games when the scheme changes.  The hands are split into batches that are scored
+ * in parallel using fork/join.
+ */
+public final class ScoringEngine
+{
+	/** Hands are split into batches of no more than this size, each scored on a single thread. */
+	private static final int BATCH_SIZE = 256;
+
+	private final ScoringScheme	m_scheme;
+	private final ForkJoinPool	m_pool;
+
+	/**
+	 * The groups of a hand, and the information needed to score them.
+	 */
+	public static final class HandDescription
+	{
+		private final List<Group>				m_groups;
+		private final Wind						m_ownWind;
+		private final Wind						m_prevailingWind;
+		private final Set<ScoredHand.HandCompletedBy>	m_completedBy;
+
+		public HandDescription(List<? extends Group> groups, Wind ownWind, Wind prevailingWind, Set<ScoredHand.HandCompletedBy> completedBy)
+		{
+			m_groups = Collections.unmodifiableList(new ArrayList<Group>(groups));
+			m_ownWind = ownWind;
+			m_prevailingWind = prevailingWind;
+
+			if (completedBy == null || completedBy.isEmpty())
+				m_completedBy = Collections.emptySet();
+			else
+				m_completedBy = Collections.unmodifiableSet(EnumSet.copyOf(completedBy));
+		}
+
+		public List<Group> getGroups()
+		{
+			return m_groups;
+		}
+
+		public Wind getOwnWind()
+		{
+			return m_ownWind;
+		}
+
+		public Wind getPrevailingWind()
+		{
+			return m_prevailingWind;
+		}
+
+		public Set<ScoredHand.HandCompletedBy> getCompletedBy()
+		{
+			return m_completedBy;
+		}
+	}
+
+	/**
+	 * The totals and breakdown of the score of a hand.
+	 */
+	public static final class Result
+	{
+		private final boolean	m_isMahjong;
+		private final int		m_totalScore;
+		private final int		m_totalScoreUnlimited;
+		private final ScoreList	m_groupScores;
+		private final ScoreList	m_wholeHandScores;
+
+		private Result(ScoredHand hand)
+		{
+			m_isMahjong = hand.isMahjong();
+			m_totalScore = hand.getTotalScore();
+			m_totalScoreUnlimited = hand.getTotalScoreUnlimited();
+			m_groupScores = hand.getGroupScores();
+			m_wholeHandScores = hand.getWholeHandScores();
+		}
+
+		public boolean isMahjong()
+		{
+			return m_isMahjong;
+		}
+
+		public int getTotalScore()
+		{
+			return m_totalScore;
+		}
+
+		public int getTotalScoreUnlimited()
+		{
+			return m_totalScoreUnlimited;
+		}
+
+		public ScoreList getGroupScores()
+		{
+			return m_groupScores;
+		}
+
+		public ScoreList getWholeHandScores()
+		{
+			return m_wholeHandScores;
+		}
+	}
+
+	public ScoringEngine(ScoringScheme scheme)
+	{
+		this(scheme, ForkJoinPool.commonPool());
+	}
+
+	public ScoringEngine(ScoringScheme scheme, ForkJoinPool pool)
+	{
+		m_scheme = scheme;
+		m_pool = pool;
+	}
+
+	public ScoringScheme getScoringScheme()
+	{
+		return m_scheme;
+	}
+
+	/**
+	 * Score a single hand on the calling thread.
+	 */
+	public Result score(HandDescription hand)
+	{
+		return new Result(createHand(hand));
+	}
+
+	/**
+	 * Score all of the hands, in parallel.
+	 *
+	 * @return	The results, in the same order as the hands.
+	 */
+	public List<Result> scoreAll(List<HandDescription> hands)
+	{
+		Result[] results = new Result[hands.size()];
+
+		if (hands.size() <= BATCH_SIZE)
+			scoreBatch(hands, results, 0, results.length);
+		else
+			m_pool.invoke(new ScoreTask(hands, results, 0, results.length));
+
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Build a ScoredHand from a description, using the shared groups for this scheme.
+	 */
+	public ScoredHand createHand(HandDescription description)
+	{
+		List<ScoredGroup> groups = new ArrayList<>(description.getGroups().size());
+
+		for (Group group : description.getGroups())
+		{
+			groups.add(ScoredGroup.get(
+					group.getType(),
+					group.getFirstTile(),
+					group.getVisibility(),
+					m_scheme,
+					description.getOwnWind(),
+					description.getPrevailingWind()));
+		}
+
+		return ScoredHand.create(m_scheme, groups, description.getCompletedBy());
+	}
+
+	private void scoreBatch(List<HandDescription> hands, Result[] results, int from, int to)
+	{
+		for (int i = from ; i < to ; i++)
+			results[i] = score(hands.get(i));
+	}
+
+	/**
+	 * Scores a range of hands, splitting the range in two until it is small enough to be
+	 * scored as a single batch.
+	 */
+	private final class ScoreTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<HandDescription>	m_hands;
+		private final Result[]				m_results;
+		private final int					m_from;
+		private final int					m_to;
+
+		ScoreTask(List<HandDescription> hands, Result[] results, int from, int to)
+		{
+			m_hands = hands;
+			m_results = results;
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (m_to - m_from <= BATCH_SIZE)
+			{
+				scoreBatch(m_hands, m_results, m_from, m_to);
+				return;
+			}
+
+			int middle = (m_from + m_to) >>> 1;
+
+			invokeAll(
+					new ScoreTask(m_hands, m_results, m_from, middle),
+					new ScoreTask(m_hands, m_results, middle, m_to));
+		}
+	}
+}
@@ -2,6 +2,7 @@ package house.mcintosh.mahjong.scoring;
 
 import android.content.Context;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -128,7 +129,16 @@ public final class ScoringScheme implements Serializable
 		}
 	}
 	
-	private Map<ScoreElement, ScoreList> m_contributions = new HashMap<>();
+	private static final ScoreElement[] ALL_ELEMENTS = ScoreElement.values();
+
+	/**
+	 * The compiled form of the scheme, built once when the scheme is loaded.  Each array is
+	 * indexed by ScoreElement.ordinal().  The ScoreLists are immutable with their totals
+	 * cached, and the score and multiplier arrays hold the same totals as primitives.
+	 */
+	private final ScoreList[]	m_contributions	= new ScoreList[ALL_ELEMENTS.length];
+	private final int[]			m_scores		= new int[ALL_ELEMENTS.length];
+	private final int[]			m_multipliers	= new int[ALL_ELEMENTS.length];
 
 	public int MahjongHandSize	= 14;
 	public int LimitScore		= 1000;
@@ -136,27 +146,84 @@ public final class ScoringScheme implements Serializable
 
 	private int m_resourceId;
 	private String m_fileName;
+	/** A hash of the contents of the file that the scheme was loaded from, if known. */
+	private String m_hash;
 	private String m_displayName;
 
+	/** Created on demand, and not serialised because it can always be rebuilt. */
+	private transient volatile ScoredGroupPool m_groupPool;
+
+	/** Created on demand, and not serialised because it can always be rebuilt. */
+	private transient volatile HandScoreCache m_handScoreCache;
+
 
 	public ScoreList getScoreContribution(ScoreElement element)
 	{
-		return m_contributions.get(element);
+		return m_contributions[element.ordinal()];
 	}
 
-	public String getDisplayName()
+	/**
+	 * @return	The basic score for an element, including any contributions that are
+	 * 			always applied with it.
+	 */
+	public int getScore(ScoreElement element)
 	{
-		return m_displayName;
+		return m_scores[element.ordinal()];
+	}
+
+	/**
+	 * @return	The hand multiplier for an element, including any contributions that are
+	 * 			always applied with it.
+	 */
+	public int getMultiplier(ScoreElement element)
+	{
+		return m_multipliers[element.ordinal()];
 	}
 
-	public static String getDisplayName(Context context, int resourceId) throws IOException
+	ScoredGroupPool getScoredGroupPool()
 	{
-		try (InputStream inStream = context.getResources().openRawResource(resourceId))
+		// Hands may be scored on several threads at once, so avoid locking once the pool exists.
+
+		ScoredGroupPool pool = m_groupPool;
+
+		if (pool == null)
 		{
-			ObjectNode node = (ObjectNode) JsonUtil.load(inStream);
+			synchronized (this)
+			{
+				if (m_groupPool == null)
+					m_groupPool = new ScoredGroupPool(this);
+
+				pool = m_groupPool;
+			}
+		}
+
+		return pool;
+	}
+
+	/**
+	 * @return	The cache of the scores of hands scored using this scheme.
+	 */
+	public HandScoreCache getHandScoreCache()
+	{
+		HandScoreCache cache = m_handScoreCache;
+
+		if (cache == null)
+		{
+			synchronized (this)
+			{
+				if (m_handScoreCache == null)
+					m_handScoreCache = new HandScoreCache();
 
-			return node.path("name").asText("");
+				cache = m_handScoreCache;
+			}
 		}
+
+		return cache;
+	}
+
+	public String getDisplayName()
+	{
+		return m_displayName;
 	}
 
 	/**
@@ -165,13 +232,10 @@ public final class ScoringScheme implements Serializable
 	 */
 	public boolean hasScore(ScoreElement element)
 	{
-		for (ScoreContribution contribution : getScoreContribution(element))
-		{
-			if (contribution.hasScore())
-				return true;
-		}
+		// Scores are never negative and multipliers never less than one, so the totals only
+		// have no effect if every contribution has no effect.
 
-		return false;
+		return getScore(element) != 0 || getMultiplier(element) != 1;
 	}
 	
 	// Set scores
@@ -181,11 +245,38 @@ public final class ScoringScheme implements Serializable
 		ScoreList list = new ScoreList();
 		
 		list.append(contribution);
-		m_contributions.put(contribution.getElement(), list);
+		m_contributions[contribution.getElement().ordinal()] = list;
 		
 		return list;
 	}
 
+	/**
+	 * Make all the ScoreLists immutable and copy their totals into the primitive tables.
+	 * Called once, after all the contributions have been added.
+	 */
+	private void compile()
+	{
+		for (int i = 0 ; i < m_contributions.length ; i++)
+		{
+			ScoreList list = m_contributions[i];
+
+			if (list == null)
+			{
+				m_multipliers[i] = 1;
+				continue;
+			}
+
+			list.makeImmutable();
+
+			m_scores[i]			= list.getBasicScore();
+			m_multipliers[i]	= list.getMultiplier();
+		}
+	}
+
+	/**
+	 * Parse a scheme from a raw resource.  Each call parses the resource again, so use
+	 * ScoringSchemeRepository to share schemes that have already been loaded.
+	 */
 	public static ScoringScheme load(Context context, int resourceId) throws IOException
 	{
 		try (InputStream inStream = context.getResources().openRawResource(resourceId))
@@ -202,12 +293,22 @@ public final class ScoringScheme implements Serializable
 	}
 
 	public static ScoringScheme fromJson(InputStream inStream, String fileName) throws IOException
+	{
+		return fromJson(inStream, fileName, null);
+	}
+
+	/**
+	 * @param hash	A hash of the contents of the file, which becomes part of the id of the
+	 *             	scheme, so that games are tied to one version of the file.
+	 */
+	public static ScoringScheme fromJson(InputStream inStream, String fileName, String hash) throws IOException
 	{
 		ObjectNode node = (ObjectNode) JsonUtil.load(inStream);
 
 		ScoringScheme scheme = fromJson(node);
 
 		scheme.m_fileName = fileName;
+		scheme.m_hash = hash;
 
 		return scheme;
 	}
@@ -303,6 +404,8 @@ public final class ScoringScheme implements Serializable
 		scheme.addScoreContribution(contributions.get(ScoreElement.MahjongByRobbingKongHandScore));
 		scheme.addScoreContribution(contributions.get(ScoreElement.MahjongByOriginalCallHandScore));
 
+		scheme.compile();
+
 		return scheme;
 	}
 
@@ -319,6 +422,9 @@ public final class ScoringScheme implements Serializable
 		if (m_fileName != null)
 			node.put("fileName", m_fileName);
 
+		if (m_hash != null)
+			node.put("hash", m_hash);
+
 		return node;
 	}
 
@@ -333,6 +439,25 @@ public final class ScoringScheme implements Serializable
 		return schemeId.path("resourceId").asInt(0);
 	}
 
+	/**
+	 * Write the same json as getIdJson(), without creating a tree.
+	 */
+	public void writeIdJson(JsonGenerator generator) throws IOException
+	{
+		generator.writeStartObject();
+
+		if (m_resourceId != 0)
+			generator.writeNumberField("resourceId", m_resourceId);
+
+		if (m_fileName != null)
+			generator.writeStringField("fileName", m_fileName);
+
+		if (m_hash != null)
+			generator.writeStringField("hash", m_hash);
+
+		generator.writeEndObject();
+	}
+
 	/**
 	 * Parse the name of a file that holds the detail of a scoring scheme
 	 * from a schemeId as returned by getIdJson().
@@ -344,6 +469,17 @@ public final class ScoringScheme implements Serializable
 		return schemeId.path("fileName").asText(null);
 	}
 
+	/**
+	 * Parse the hash of the contents of the file that holds the detail of a scoring scheme
+	 * from a schemeId as returned by getIdJson().
+	 *
+	 * @return	The hash, or null if there is no hash available.
+	 */
+	static public String getHash(ObjectNode schemeId)
+	{
+		return schemeId.path("hash").asText(null);
+	}
+
 	public ObjectNode toJson()
 	{
 		ObjectNode scheme = JsonUtil.createObjectNode();
@@ -356,8 +492,11 @@ public final class ScoringScheme implements Serializable
 
 		Map<ScoreElement, ScoreContribution> allContributions = new HashMap<>();
 
-		for (ScoreList scoreList : m_contributions.values())
+		for (ScoreList scoreList : m_contributions)
 		{
+			if (scoreList == null)
+				continue;
+
 			for (ScoreContribution contribution : scoreList)
 			{
 				ScoreContribution prevContribution = allContributions.get(contribution.getElement());
@@ -0,0 +1,195 @@
+package house.mcintosh.mahjong.scoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import house.mcintosh.mahjong.model.Group;
+import house.mcintosh.mahjong.model.Tile;
+import house.mcintosh.mahjong.model.Wind;
+
+/**
+ * Works out which tiles would complete a partial hand as Mahjong, and what the hand would then
+ * score.  A tile completes the hand if it is part of a final group that makes the hand Mahjong.
+ *
+ * The groups that each kind of tile can be part of are worked out once, in a completion table,
+ * and the score for each candidate group is calculated from the running totals of the hand
+ * rather than by building a new hand.
+ */
+public final class WaitingTileCalculator
+{
+	private static final int MAX_TILE_COUNT = 4;
+
+	/**
+	 * For each kind of tile, indexed by Tile.getIndex(), the groups that the tile can be part of.
+	 * Groups are encoded by HandDecomposer.encodeGroup().
+	 */
+	private static final int[][] COMPLETION_TABLE = buildCompletionTable();
+
+	/**
+	 * A tile that would complete the hand, with the best scoring group that it completes.
+	 */
+	public static final class Wait
+	{
+		private final Tile			m_tile;
+		private final ScoredGroup	m_group;
+		private final int			m_totalScore;
+
+		private Wait(Tile tile, ScoredGroup group, int totalScore)
+		{
+			m_tile = tile;
+			m_group = group;
+			m_totalScore = totalScore;
+		}
+
+		public Tile getTile()
+		{
+			return m_tile;
+		}
+
+		public ScoredGroup getGroup()
+		{
+			return m_group;
+		}
+
+		/**
+		 * @return	The getTotalScore() of the hand once it is completed by the group.
+		 */
+		public int getTotalScore()
+		{
+			return m_totalScore;
+		}
+
+		public String toString()
+		{
+			return m_tile + " " + m_group + " " + m_totalScore;
+		}
+	}
+
+	private WaitingTileCalculator()
+	{
+	}
+
+	/**
+	 * Find every tile that would complete a hand as Mahjong, taking account of there only being
+	 * four of each tile.  The completing groups are scored with the winds of the groups already
+	 * in the hand.
+	 *
+	 * @param visibility	The visibility of the completing group, if it is not a chow.
+	 * @return	The tiles in Tile index order.  Empty if the hand cannot be completed by a single group.
+	 */
+	public static List<Wait> findWaits(ScoredHand hand, Group.Visibility visibility)
+	{
+		List<Wait> waits = new ArrayList<>();
+
+		ScoringScheme scheme = hand.getScoringScheme();
+
+		// All candidate groups have the same hand size, and the completed hand needs exactly one pair.
+
+		int handSizeNeeded = scheme.MahjongHandSize - hand.getTileCount();
+		boolean needPair;
+
+		if (hand.getPairCount() == 0 && handSizeNeeded == Group.Type.PAIR.getHandSize())
+			needPair = true;
+		else if (hand.getPairCount() == 1 && handSizeNeeded == Group.Type.PUNG.getHandSize())
+			needPair = false;
+		else
+			return waits;
+
+		// The hand is not empty, as it needs only one more group.
+
+		Wind	ownWind			= hand.get(0).getOwnWind();
+		Wind	prevailingWind	= hand.get(0).getPrevailingWind();
+
+		int[] tileCounts = HandDecomposer.countTiles(hand);
+
+		for (int index = 0 ; index < Tile.COUNT ; index++)
+		{
+			ScoredGroup	bestGroup	= null;
+			int			bestScore	= 0;
+
+			for (int candidate : COMPLETION_TABLE[index])
+			{
+				Group.Type type = HandDecomposer.decodeType(candidate);
+
+				if ((type == Group.Type.PAIR) != needPair)
+					continue;
+
+				ScoredGroup group = ScoredGroup.get(type, Tile.get(HandDecomposer.decodeIndex(candidate)), visibility, scheme, ownWind, prevailingWind);
+
+				if (!isAvailable(group, tileCounts))
+					continue;
+
+				int score = hand.getTotalScoreWith(group);
+
+				if (bestGroup == null || score > bestScore)
+				{
+					bestGroup = group;
+					bestScore = score;
+				}
+			}
+
+			if (bestGroup != null)
+				waits.add(new Wait(Tile.get(index), bestGroup, bestScore));
+		}
+
+		return waits;
+	}
+
+	/**
+	 * @return	true if there are enough of each tile left for the group.
+	 */
+	private static boolean isAvailable(Group group, int[] tileCounts)
+	{
+		List<Tile> tiles = group.getTiles();
+
+		for (Tile tile : tiles)
+			tileCounts[tile.getIndex()]++;
+
+		boolean available = true;
+
+		for (Tile tile : tiles)
+		{
+			if (tileCounts[tile.getIndex()] > MAX_TILE_COUNT)
+				available = false;
+		}
+
+		for (Tile tile : tiles)
+			tileCounts[tile.getIndex()]--;
+
+		return available;
+	}
+
+	private static int[][] buildCompletionTable()
+	{
+		int[][] table = new int[Tile.COUNT][];
+
+		for (int index = 0 ; index < Tile.COUNT ; index++)
+		{
+			List<Integer> groups = new ArrayList<>();
+
+			groups.add(HandDecomposer.encodeGroup(Group.Type.PAIR, index));
+			groups.add(HandDecomposer.encodeGroup(Group.Type.PUNG, index));
+			groups.add(HandDecomposer.encodeGroup(Group.Type.KONG, index));
+
+			Tile tile = Tile.get(index);
+
+			if (tile.getType() == Tile.Type.SUIT)
+			{
+				// Chows that start with this tile, or one or two before it.
+
+				int number = tile.getNumber().ordinal();
+				int suitStart = index - number;
+
+				for (int first = Math.max(0, number - 2) ; first <= Math.min(number, Tile.Number.SEVEN.ordinal()) ; first++)
+					groups.add(HandDecomposer.encodeGroup(Group.Type.CHOW, suitStart + first));
+			}
+
+			table[index] = new int[groups.size()];
+
+			for (int i = 0 ; i < groups.size() ; i++)
+				table[index][i] = groups.get(i);
+		}
+
+		return table;
+	}
+}
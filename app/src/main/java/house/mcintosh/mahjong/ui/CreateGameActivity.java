@@ -17,13 +17,19 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import house.mcintosh.mahjong.io.GameFile;
+import house.mcintosh.mahjong.io.ScoringSchemeRepository;
 import house.mcintosh.mahjong.model.Game;
 import house.mcintosh.mahjong.model.Player;
 import house.mcintosh.mahjong.model.Wind;
 import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.JsonUtil;
 
 public final class CreateGameActivity extends AppCompatActivity
 {
@@ -80,11 +86,34 @@ public final class CreateGameActivity extends AppCompatActivity
 		findViewById(R.id.instructionScrollArea).setVisibility(View.VISIBLE);
 
 		// Initialise scoring scheme options for the menu;
-		m_scoringSchemeOptions = new ScoringSchemeOption[]
-			{
-					new ScoringSchemeOption(R.raw.scoring_scheme_british),
-					new ScoringSchemeOption(R.raw.scoring_scheme_british_17_tile)
-			};
+		List<ScoringSchemeRepository.Entry> catalog;
+
+		try
+		{
+			catalog = ScoringSchemeRepository.getCatalog(this);
+		}
+		catch (IOException ioe)
+		{
+			Log.e(LOG_TAG, "Cannot load scoring scheme catalog: " + ioe.getMessage());
+			catalog = Collections.emptyList();
+		}
+
+		if (catalog.isEmpty())
+		{
+			ObjectNode schemeId = JsonUtil.createObjectNode();
+
+			schemeId.put("resourceId", R.raw.scoring_scheme_british);
+
+			m_scoringSchemeOptions = new ScoringSchemeOption[] { new ScoringSchemeOption(schemeId, "-") };
+		}
+		else
+		{
+			m_scoringSchemeOptions = new ScoringSchemeOption[catalog.size()];
+
+			for (int i = 0 ; i < catalog.size() ; i++)
+				m_scoringSchemeOptions[i] = new ScoringSchemeOption(catalog.get(i).getSchemeId(), catalog.get(i).getName());
+		}
+
 		m_selectedScoringSchemeOption = m_scoringSchemeOptions[0];
 
 		displayWinds();
@@ -210,7 +239,7 @@ public final class CreateGameActivity extends AppCompatActivity
 	{
 		// Create a new game instance and save it.
 
-		ScoringScheme scheme = ScoringScheme.load(this, m_selectedScoringSchemeOption.schemeResource);
+		ScoringScheme scheme = ScoringSchemeRepository.get(this, m_selectedScoringSchemeOption.schemeId);
 		Game game = new Game(scheme);
 
 		Player eastPlayer = null;
@@ -364,24 +393,12 @@ public final class CreateGameActivity extends AppCompatActivity
 
 	private class ScoringSchemeOption
 	{
-		private final int schemeResource;
+		private final ObjectNode schemeId;
 		private final String displayName;
 
-		public ScoringSchemeOption(int schemeResource)
+		public ScoringSchemeOption(ObjectNode schemeId, String displayName)
 		{
-			this.schemeResource = schemeResource;
-
-			String displayName;
-
-			try
-			{
-				displayName = ScoringScheme.getDisplayName(CreateGameActivity.this, schemeResource);
-			}
-			catch (IOException ioe)
-			{
-				displayName = "-";
-			}
-
+			this.schemeId = schemeId;
 			this.displayName = displayName;
 		}
 	}
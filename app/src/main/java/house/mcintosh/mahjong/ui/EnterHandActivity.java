@@ -48,40 +48,40 @@ public final class EnterHandActivity extends AppCompatActivity
 	
 	static
 	{
-		viewToTile.put(R.id.btnCircles1, new Tile(Tile.Suit.CIRCLES, Tile.Number.ONE));
-		viewToTile.put(R.id.btnCircles2, new Tile(Tile.Suit.CIRCLES, Tile.Number.TWO));
-		viewToTile.put(R.id.btnCircles3, new Tile(Tile.Suit.CIRCLES, Tile.Number.THREE));
-		viewToTile.put(R.id.btnCircles4, new Tile(Tile.Suit.CIRCLES, Tile.Number.FOUR));
-		viewToTile.put(R.id.btnCircles5, new Tile(Tile.Suit.CIRCLES, Tile.Number.FIVE));
-		viewToTile.put(R.id.btnCircles6, new Tile(Tile.Suit.CIRCLES, Tile.Number.SIX));
-		viewToTile.put(R.id.btnCircles7, new Tile(Tile.Suit.CIRCLES, Tile.Number.SEVEN));
-		viewToTile.put(R.id.btnCircles8, new Tile(Tile.Suit.CIRCLES, Tile.Number.EIGHT));
-		viewToTile.put(R.id.btnCircles9, new Tile(Tile.Suit.CIRCLES, Tile.Number.NINE));
-		viewToTile.put(R.id.btnCharacters1, new Tile(Tile.Suit.CHARACTERS, Tile.Number.ONE));
-		viewToTile.put(R.id.btnCharacters2, new Tile(Tile.Suit.CHARACTERS, Tile.Number.TWO));
-		viewToTile.put(R.id.btnCharacters3, new Tile(Tile.Suit.CHARACTERS, Tile.Number.THREE));
-		viewToTile.put(R.id.btnCharacters4, new Tile(Tile.Suit.CHARACTERS, Tile.Number.FOUR));
-		viewToTile.put(R.id.btnCharacters5, new Tile(Tile.Suit.CHARACTERS, Tile.Number.FIVE));
-		viewToTile.put(R.id.btnCharacters6, new Tile(Tile.Suit.CHARACTERS, Tile.Number.SIX));
-		viewToTile.put(R.id.btnCharacters7, new Tile(Tile.Suit.CHARACTERS, Tile.Number.SEVEN));
-		viewToTile.put(R.id.btnCharacters8, new Tile(Tile.Suit.CHARACTERS, Tile.Number.EIGHT));
-		viewToTile.put(R.id.btnCharacters9, new Tile(Tile.Suit.CHARACTERS, Tile.Number.NINE));
-		viewToTile.put(R.id.btnBamboo1, new Tile(Tile.Suit.BAMBOO, Tile.Number.ONE));
-		viewToTile.put(R.id.btnBamboo2, new Tile(Tile.Suit.BAMBOO, Tile.Number.TWO));
-		viewToTile.put(R.id.btnBamboo3, new Tile(Tile.Suit.BAMBOO, Tile.Number.THREE));
-		viewToTile.put(R.id.btnBamboo4, new Tile(Tile.Suit.BAMBOO, Tile.Number.FOUR));
-		viewToTile.put(R.id.btnBamboo5, new Tile(Tile.Suit.BAMBOO, Tile.Number.FIVE));
-		viewToTile.put(R.id.btnBamboo6, new Tile(Tile.Suit.BAMBOO, Tile.Number.SIX));
-		viewToTile.put(R.id.btnBamboo7, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN));
-		viewToTile.put(R.id.btnBamboo8, new Tile(Tile.Suit.BAMBOO, Tile.Number.EIGHT));
-		viewToTile.put(R.id.btnBamboo9, new Tile(Tile.Suit.BAMBOO, Tile.Number.NINE));
-		viewToTile.put(R.id.btnEast, new Tile(Wind.EAST));
-		viewToTile.put(R.id.btnSouth, new Tile(Wind.SOUTH));
-		viewToTile.put(R.id.btnWest, new Tile(Wind.WEST));
-		viewToTile.put(R.id.btnNorth, new Tile(Wind.NORTH));
-		viewToTile.put(R.id.btnRedDragon, new Tile(Tile.Dragon.RED));
-		viewToTile.put(R.id.btnWhiteDragon, new Tile(Tile.Dragon.WHITE));
-		viewToTile.put(R.id.btnGreenDragon, new Tile(Tile.Dragon.GREEN));
+		viewToTile.put(R.id.btnCircles1, Tile.get(Tile.Suit.CIRCLES, Tile.Number.ONE));
+		viewToTile.put(R.id.btnCircles2, Tile.get(Tile.Suit.CIRCLES, Tile.Number.TWO));
+		viewToTile.put(R.id.btnCircles3, Tile.get(Tile.Suit.CIRCLES, Tile.Number.THREE));
+		viewToTile.put(R.id.btnCircles4, Tile.get(Tile.Suit.CIRCLES, Tile.Number.FOUR));
+		viewToTile.put(R.id.btnCircles5, Tile.get(Tile.Suit.CIRCLES, Tile.Number.FIVE));
+		viewToTile.put(R.id.btnCircles6, Tile.get(Tile.Suit.CIRCLES, Tile.Number.SIX));
+		viewToTile.put(R.id.btnCircles7, Tile.get(Tile.Suit.CIRCLES, Tile.Number.SEVEN));
+		viewToTile.put(R.id.btnCircles8, Tile.get(Tile.Suit.CIRCLES, Tile.Number.EIGHT));
+		viewToTile.put(R.id.btnCircles9, Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE));
+		viewToTile.put(R.id.btnCharacters1, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.ONE));
+		viewToTile.put(R.id.btnCharacters2, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO));
+		viewToTile.put(R.id.btnCharacters3, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.THREE));
+		viewToTile.put(R.id.btnCharacters4, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FOUR));
+		viewToTile.put(R.id.btnCharacters5, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FIVE));
+		viewToTile.put(R.id.btnCharacters6, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.SIX));
+		viewToTile.put(R.id.btnCharacters7, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.SEVEN));
+		viewToTile.put(R.id.btnCharacters8, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.EIGHT));
+		viewToTile.put(R.id.btnCharacters9, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.NINE));
+		viewToTile.put(R.id.btnBamboo1, Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE));
+		viewToTile.put(R.id.btnBamboo2, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO));
+		viewToTile.put(R.id.btnBamboo3, Tile.get(Tile.Suit.BAMBOO, Tile.Number.THREE));
+		viewToTile.put(R.id.btnBamboo4, Tile.get(Tile.Suit.BAMBOO, Tile.Number.FOUR));
+		viewToTile.put(R.id.btnBamboo5, Tile.get(Tile.Suit.BAMBOO, Tile.Number.FIVE));
+		viewToTile.put(R.id.btnBamboo6, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SIX));
+		viewToTile.put(R.id.btnBamboo7, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN));
+		viewToTile.put(R.id.btnBamboo8, Tile.get(Tile.Suit.BAMBOO, Tile.Number.EIGHT));
+		viewToTile.put(R.id.btnBamboo9, Tile.get(Tile.Suit.BAMBOO, Tile.Number.NINE));
+		viewToTile.put(R.id.btnEast, Tile.get(Wind.EAST));
+		viewToTile.put(R.id.btnSouth, Tile.get(Wind.SOUTH));
+		viewToTile.put(R.id.btnWest, Tile.get(Wind.WEST));
+		viewToTile.put(R.id.btnNorth, Tile.get(Wind.NORTH));
+		viewToTile.put(R.id.btnRedDragon, Tile.get(Tile.Dragon.RED));
+		viewToTile.put(R.id.btnWhiteDragon, Tile.get(Tile.Dragon.WHITE));
+		viewToTile.put(R.id.btnGreenDragon, Tile.get(Tile.Dragon.GREEN));
 	}
 
 	private Player m_player;
@@ -349,8 +349,7 @@ public final class EnterHandActivity extends AppCompatActivity
 
 		if (m_selectedTile != null)
 		{
-			Group group = new Group(m_selectedGroupType, m_selectedTile, m_selectedVisibility);
-			scoredGroup = new ScoredGroup(group, m_hand.getScoringScheme(), m_ownWind, m_prevailingWind);
+			scoredGroup = ScoredGroup.get(m_selectedGroupType, m_selectedTile, m_selectedVisibility, m_hand.getScoringScheme(), m_ownWind, m_prevailingWind);
 		}
 
 		// scoredGroup may still be null, meaning display no tiles.
@@ -16,6 +16,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -69,6 +70,31 @@ public final class GamePlayActivity extends AppCompatActivity
 		m_gameFile = GameFile.load(this, gamefile);
 		m_game = m_gameFile.getGame();
 
+		// Games are saved in the background, so report failures back on the UI thread.
+
+		m_gameFile.setSaveListener(
+				new GameFile.SaveListener()
+				{
+					@Override
+					public void onSaved(GameFile gameFile)
+					{
+					}
+
+					@Override
+					public void onSaveFailed(GameFile gameFile, IOException error)
+					{
+						runOnUiThread(
+								new Runnable()
+								{
+									@Override
+									public void run()
+									{
+										Toast.makeText(GamePlayActivity.this, R.string.notificationSaveFailed, Toast.LENGTH_LONG).show();
+									}
+								});
+					}
+				});
+
 		// Remember the various views we need to access to avoid repeated lookups and to
 		// enable them to be referenced as a group.
 
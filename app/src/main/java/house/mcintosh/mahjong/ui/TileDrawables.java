@@ -4,9 +4,6 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import house.mcintosh.mahjong.model.Tile;
 
 /**
@@ -17,7 +14,8 @@ public final class TileDrawables
 {
 	private final Context m_context;
 
-	private final Map<Tile, Drawable> m_cache = new HashMap<>();
+	/** Drawables indexed by Tile.getIndex(). */
+	private final Drawable[] m_cache = new Drawable[Tile.COUNT];
 
 	private Drawable m_tileBackDrawable;
 
@@ -33,7 +31,7 @@ public final class TileDrawables
 	{
 		// Get the drawable from cache if available, else load it into cache.
 
-		Drawable drawable = m_cache.get(tile);
+		Drawable drawable = m_cache[tile.getIndex()];
 
 		if (drawable == null)
 		{
@@ -62,7 +60,7 @@ public final class TileDrawables
 			int resourceId = resources.getIdentifier(name, "drawable", m_context.getPackageName());
 			drawable = getDrawable(resourceId);
 
-			m_cache.put(tile, drawable);
+			m_cache[tile.getIndex()] = drawable;
 		}
 
 		return drawable;
@@ -0,0 +1,120 @@
+package house.mcintosh.mahjong.util;
+
+import java.util.Arrays;
+
+import house.mcintosh.mahjong.exception.LoadException;
+
+/**
+ * Reads the compact binary form of a game, as written by BinaryOutput.
+ */
+public final class BinaryInput
+{
+	private final byte[]	m_bytes;
+	private final int		m_end;
+	private int				m_position;
+
+	public BinaryInput(byte[] bytes)
+	{
+		this(bytes, 0, bytes.length);
+	}
+
+	public BinaryInput(byte[] bytes, int offset, int length)
+	{
+		m_bytes		= bytes;
+		m_position	= offset;
+		m_end		= offset + length;
+	}
+
+	public int readByte()
+	{
+		if (m_position >= m_end)
+			throw new LoadException("Unexpected end of binary data");
+
+		return m_bytes[m_position++] & 0xFF;
+	}
+
+	public boolean readBoolean()
+	{
+		return readByte() != 0;
+	}
+
+	public long readVarint()
+	{
+		long	value	= 0;
+		int		shift	= 0;
+
+		while (true)
+		{
+			int b = readByte();
+
+			value |= (long)(b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+
+			shift += 7;
+
+			if (shift >= 64)
+				throw new LoadException("Invalid number in binary data");
+		}
+	}
+
+	/**
+	 * Read a non-negative number that must fit in an int.
+	 */
+	public int readInt()
+	{
+		long value = readVarint();
+
+		if (value > Integer.MAX_VALUE)
+			throw new LoadException("Number too large in binary data");
+
+		return (int)value;
+	}
+
+	public long readSignedVarint()
+	{
+		long value = readVarint();
+
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public String readString()
+	{
+		int length = readInt();
+
+		if (length > m_end - m_position)
+			throw new LoadException("Unexpected end of binary data");
+
+		String value = new String(m_bytes, m_position, length, BinaryOutput.UTF8);
+
+		m_position += length;
+
+		return value;
+	}
+
+	/**
+	 * Read a block written by BinaryOutput.writeBlock(), as a separate input.
+	 */
+	public BinaryInput readBlock()
+	{
+		int length = readInt();
+
+		if (length > m_end - m_position)
+			throw new LoadException("Unexpected end of binary data");
+
+		BinaryInput block = new BinaryInput(m_bytes, m_position, length);
+
+		m_position += length;
+
+		return block;
+	}
+
+	/**
+	 * @return	A copy of the data that has not been read yet, which is left to be read.
+	 */
+	public byte[] toByteArray()
+	{
+		return Arrays.copyOfRange(m_bytes, m_position, m_end);
+	}
+}
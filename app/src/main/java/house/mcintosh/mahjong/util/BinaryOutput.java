@@ -0,0 +1,85 @@
+package house.mcintosh.mahjong.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A growable buffer for writing the compact binary form of a game.  Numbers are written as
+ * variable length integers, so that small values take a single byte.
+ */
+public final class BinaryOutput
+{
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteArrayOutputStream m_buffer = new ByteArrayOutputStream(256);
+
+	public void writeByte(int value)
+	{
+		m_buffer.write(value);
+	}
+
+	public void writeBytes(byte[] bytes)
+	{
+		m_buffer.write(bytes, 0, bytes.length);
+	}
+
+	public void writeBoolean(boolean value)
+	{
+		m_buffer.write(value ? 1 : 0);
+	}
+
+	/**
+	 * Write a non-negative number, seven bits at a time, least significant first.
+	 */
+	public void writeVarint(long value)
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			m_buffer.write((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		m_buffer.write((int)value);
+	}
+
+	/**
+	 * Write a number that may be negative, so that small negative numbers are also short.
+	 */
+	public void writeSignedVarint(long value)
+	{
+		writeVarint((value << 1) ^ (value >> 63));
+	}
+
+	public void writeString(String value)
+	{
+		byte[] bytes = value.getBytes(UTF8);
+
+		writeVarint(bytes.length);
+		writeBytes(bytes);
+	}
+
+	/**
+	 * Write the contents of another buffer, preceded by its length, so that it can be skipped
+	 * over when read.
+	 */
+	public void writeBlock(BinaryOutput block)
+	{
+		writeBlock(block.toByteArray());
+	}
+
+	public void writeBlock(byte[] block)
+	{
+		writeVarint(block.length);
+		writeBytes(block);
+	}
+
+	public int size()
+	{
+		return m_buffer.size();
+	}
+
+	public byte[] toByteArray()
+	{
+		return m_buffer.toByteArray();
+	}
+}
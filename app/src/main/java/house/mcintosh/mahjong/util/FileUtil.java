@@ -0,0 +1,54 @@
+package house.mcintosh.mahjong.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class FileUtil
+{
+	/**
+	 * @return	The whole contents of a file.
+	 */
+	static public byte[] readContents(File file) throws IOException
+	{
+		try (InputStream in = new FileInputStream(file))
+		{
+			return readContents(in, (int)file.length());
+		}
+	}
+
+	/**
+	 * @return	Everything left in a stream.
+	 *
+	 * @param expectedLength	How much is expected, to size the buffer.
+	 */
+	static public byte[] readContents(InputStream in, int expectedLength) throws IOException
+	{
+		ByteArrayOutputStream contents = new ByteArrayOutputStream(Math.max(expectedLength, 32));
+		byte[] buffer = new byte[8192];
+		int count;
+
+		while ((count = in.read(buffer)) > 0)
+			contents.write(buffer, 0, count);
+
+		return contents.toByteArray();
+	}
+
+	/**
+	 * Read as much of the start of a stream as there is, up to the length of the buffer.
+	 *
+	 * @return	The number of bytes read.
+	 */
+	static public int readStart(InputStream in, byte[] buffer) throws IOException
+	{
+		int length = 0;
+		int count;
+
+		while (length < buffer.length && (count = in.read(buffer, length, buffer.length - length)) > 0)
+			length += count;
+
+		return length;
+	}
+}
@@ -1,6 +1,8 @@
 package house.mcintosh.mahjong.util;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,6 +15,7 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 public final class JsonUtil
 {
@@ -35,6 +38,30 @@ public final class JsonUtil
 		PRETTY_OBJECT_MAPPER.writeValue(file, node);
 	}
 
+	/**
+	 * @return	The json as it would be written to a file by writeFile().
+	 */
+	static public byte[] toBytes(JsonNode node) throws JsonProcessingException
+	{
+		return PRETTY_OBJECT_MAPPER.writeValueAsBytes(node);
+	}
+
+	/**
+	 * Create a generator to write json a token at a time, without building a tree.
+	 *
+	 * @param pretty	True to indent the json in the same way as writeFile(), false to write
+	 * 					it without any whitespace.
+	 */
+	static public JsonGenerator createGenerator(OutputStream out, boolean pretty) throws IOException
+	{
+		JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(out);
+
+		if (pretty)
+			generator.useDefaultPrettyPrinter();
+
+		return generator;
+	}
+
 	static public JsonNode load(File file) throws IOException
 	{
 		return OBJECT_MAPPER.readTree(file);
@@ -45,8 +72,37 @@ public final class JsonUtil
 		return OBJECT_MAPPER.readTree(inStream);
 	}
 
+	/**
+	 * Create a parser to read a file a token at a time, rather than loading the whole tree.
+	 */
+	static public JsonParser createParser(File file) throws IOException
+	{
+		return OBJECT_MAPPER.getFactory().createParser(file);
+	}
+
+	/**
+	 * Read the value at the current token of a parser as a tree, leaving the parser on its last token.
+	 */
+	static public JsonNode readTree(JsonParser parser) throws IOException
+	{
+		return OBJECT_MAPPER.readTree(parser);
+	}
+
 	static public String toString(JsonNode node) throws JsonProcessingException
 	{
 		return PRETTY_OBJECT_MAPPER.writeValueAsString(node);
 	}
+
+	/**
+	 * @return	The json on a single line, without any indentation.
+	 */
+	static public String toCompactString(JsonNode node) throws JsonProcessingException
+	{
+		return OBJECT_MAPPER.writeValueAsString(node);
+	}
+
+	static public JsonNode fromString(String json) throws IOException
+	{
+		return OBJECT_MAPPER.readTree(json);
+	}
 }
@@ -0,0 +1,484 @@
+package house.mcintosh.mahjong.io;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import house.mcintosh.mahjong.model.Game;
+import house.mcintosh.mahjong.model.GameSummary;
+import house.mcintosh.mahjong.model.Player;
+import house.mcintosh.mahjong.model.RoundUtil;
+import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.JsonUtil;
+import house.mcintosh.mahjong.util.TestUtil;
+
+public class TestGameFile
+{
+	@Test
+	public void summaryIndex() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+
+		File directory = Files.createTempDirectory("games").toFile();
+
+		File file1 = new File(directory, "game20200101120000000.json");
+		File file2 = new File(directory, "game20200102120000000.json");
+
+		Game game = createGame(scheme, players);
+
+		JsonUtil.writeFile(game.toJson(), file1);
+
+		game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), pluto));
+		JsonUtil.writeFile(game.toJson(), file2);
+
+		// The first listing parses the game files and creates the index.
+
+		Map<String, GameSummary> summaries = byName(GameFile.getAllGames(directory));
+
+		assertEquals(2, summaries.size());
+		assertFalse(summaries.get(file1.getName()).hasRounds());
+		assertTrue(summaries.get(file2.getName()).hasRounds());
+		assertEquals(game.getPlayerScore(pluto), summaries.get(file2.getName()).getScore(pluto));
+
+		File indexFile = new File(directory, GameSummaryIndex.INDEX_FILENAME);
+
+		assertTrue(indexFile.exists());
+
+		// Unchanged games come from the index.
+
+		Map<String, GameSummary> again = byName(GameFile.getAllGames(directory));
+
+		assertSame(summaries.get(file1.getName()), again.get(file1.getName()));
+		assertSame(summaries.get(file2.getName()), again.get(file2.getName()));
+
+		// A changed game file is parsed again, and a deleted one is dropped from the index.
+
+		game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), goofy));
+		JsonUtil.writeFile(game.toJson(), file1);
+		assertTrue(file2.delete());
+
+		again = byName(GameFile.getAllGames(directory));
+
+		assertEquals(1, again.size());
+		assertNotSame(summaries.get(file1.getName()), again.get(file1.getName()));
+		assertTrue(again.get(file1.getName()).hasRounds());
+
+		// The index file holds the same summaries as the game files.
+
+		JsonNode indexNode = JsonUtil.load(indexFile);
+
+		assertEquals(1, indexNode.get("games").size());
+
+		JsonNode summaryNode = indexNode.get("games").get(0).get("summary");
+		GameSummary indexed = GameSummary.fromSummaryJson(summaryNode, file1);
+		GameSummary parsed = GameFile.loadGameSummary(file1);
+
+		assertEquals(summaryNode.toString(), GameSummary.fromGame(game, file1).toJson().toString());
+		assertEquals(parsed.toJson().toString(), indexed.toJson().toString());
+		assertEquals(parsed.getPlayers(), indexed.getPlayers());
+		assertEquals(parsed.getEastPlayer(), indexed.getEastPlayer());
+		assertEquals(parsed.getHighestScore(), indexed.getHighestScore());
+
+		file1.delete();
+		indexFile.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void streamingSummary() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy };
+
+		File file = File.createTempFile("game", ".json");
+		Game game = createGame(scheme, players);
+
+		// Compare with the summary from the whole tree, before and after each round.
+
+		for (int i = 0 ; i <= winners.length ; i++)
+		{
+			if (i > 0)
+				game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winners[i - 1]));
+
+			JsonUtil.writeFile(game.toJson(), file);
+
+			GameSummary streamed	= GameFile.loadGameSummary(file);
+			GameSummary tree		= GameSummary.fromJson((ObjectNode)JsonUtil.load(file), file);
+
+			assertEquals(tree.toJson().toString(), streamed.toJson().toString());
+			assertEquals(i > 0, streamed.hasRounds());
+			assertEquals(tree.getPlayers(), streamed.getPlayers());
+			assertEquals(tree.getEastPlayer(), streamed.getEastPlayer());
+			assertEquals(tree.getHighestScore(), streamed.getHighestScore());
+		}
+
+		file.delete();
+	}
+
+	@Test
+	public void journal() throws Exception
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey };
+
+		File directory = Files.createTempDirectory("games").toFile();
+		File file = new File(directory, "game20200101120000000.json");
+		File journalFile = GameJournal.getJournalFile(file);
+
+		Game game = createGame(scheme, players);
+		GameFile gameFile = new GameFile(game, file);
+
+		gameFile.save().get();
+		assertTrue(file.exists());
+		assertFalse(journalFile.exists());
+
+		// Each round is appended to the journal, leaving the game file alone.
+
+		long length = file.length();
+
+		for (int i = 0 ; i < winners.length ; i++)
+		{
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winners[i]));
+
+			// Edit the previous round part way through.
+			if (i == 3)
+			{
+				game.popRound();
+				game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), pluto));
+			}
+
+			gameFile.save().get();
+
+			assertEquals(length, file.length());
+			assertTrue(journalFile.exists());
+			checkLoad(game, file, scheme);
+		}
+
+		// A partly written record is ignored, and the next save writes the whole game.
+
+		Files.write(journalFile.toPath(), "{\"keptRounds\":2,\"rou".getBytes("UTF-8"), java.nio.file.StandardOpenOption.APPEND);
+
+		GameFile loaded = checkLoad(game, file, scheme);
+
+		loaded.getGame().addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), goofy));
+		loaded.save().get();
+
+		assertFalse(journalFile.exists());
+		checkLoad(loaded.getGame(), file, scheme);
+
+		// Renaming a player also writes the whole game.
+
+		game = loaded.getGame();
+		gameFile = loaded;
+
+		game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), mickey));
+		gameFile.save().get();
+		assertTrue(journalFile.exists());
+
+		game.getPlayers().get(0).setName("Mickey Mouse");
+		gameFile.save().get();
+		assertFalse(journalFile.exists());
+		checkLoad(game, file, scheme);
+
+		gameFile.delete();
+		assertFalse(file.exists());
+		assertFalse(journalFile.exists());
+
+		new File(directory, GameSummaryIndex.INDEX_FILENAME).delete();
+		directory.delete();
+	}
+
+	@Test
+	public void backgroundSave() throws Exception
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto, goofy };
+
+		File directory = Files.createTempDirectory("games").toFile();
+		File file = new File(directory, "game20200101120000000.json");
+		File journalFile = GameJournal.getJournalFile(file);
+
+		Game game = createGame(scheme, players);
+		GameFile gameFile = new GameFile(game, file);
+
+		final AtomicInteger saved = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+
+		gameFile.setSaveListener(
+				new GameFile.SaveListener()
+				{
+					@Override
+					public void onSaved(GameFile gameFile)
+					{
+						saved.incrementAndGet();
+					}
+
+					@Override
+					public void onSaveFailed(GameFile gameFile, IOException error)
+					{
+						failed.incrementAndGet();
+					}
+				});
+
+		// Save after every round without waiting, and check that the last state is written.
+		// Loading and listing do not wait for saves, but still see the latest state.
+
+		List<Future<Void>> saves = new ArrayList<>();
+
+		saves.add(gameFile.save());
+
+		for (Player winner : winners)
+		{
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+			saves.add(gameFile.save());
+
+			checkLoad(game, file, scheme);
+			assertEquals(GameSummary.fromGame(game, file).toJson().toString(), byName(GameFile.getAllGames(directory)).get(file.getName()).toJson().toString());
+		}
+
+		for (Future<Void> save : saves)
+			save.get();
+
+		// The writer is dropped once everything has been written.
+
+		assertNull(GameWriter.getPending(file));
+		assertEquals(0, failed.get());
+		assertTrue(saved.get() >= 1 && saved.get() <= saves.size());
+		assertFalse(new File(directory, file.getName() + ".tmp").exists());
+		checkLoad(game, file, scheme);
+
+		// A journal left over from before the game file was last written in full is ignored.
+
+		byte[] oldJournal = Files.readAllBytes(journalFile.toPath());
+
+		game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), mickey));
+		gameFile.compact().get();
+		assertFalse(journalFile.exists());
+
+		Files.write(journalFile.toPath(), oldJournal);
+
+		GameFile loaded = checkLoad(game, file, scheme);
+
+		// The next save replaces the old journal.
+
+		loaded.getGame().addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), donald));
+		loaded.save().get();
+		assertFalse(journalFile.exists());
+		checkLoad(loaded.getGame(), file, scheme);
+
+		loaded.delete();
+		assertFalse(file.exists());
+
+		new File(directory, GameSummaryIndex.INDEX_FILENAME).delete();
+		directory.delete();
+	}
+
+	@Test
+	public void binaryFormat() throws Exception
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto, goofy, donald, mickey };
+
+		File directory = Files.createTempDirectory("games").toFile();
+		File file = new File(directory, "game20200101120000000.json");
+
+		Game game = createGame(scheme, players);
+		GameFile gameFile = new GameFile(game, file);
+
+		for (Player winner : winners)
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+
+		gameFile.save().get();
+
+		long jsonLength = file.length();
+
+		// The whole game is written in the new format, which is much smaller, to a file with its
+		// own extension.  The json file goes once the binary one has been written.
+
+		File jsonFile = file;
+
+		gameFile.setFormat(GameFile.Format.BINARY);
+		file = gameFile.getFile();
+		assertEquals("game20200101120000000.mjg", file.getName());
+
+		gameFile.save().get();
+
+		assertFalse(jsonFile.exists());
+		assertEquals((byte)0x89, Files.readAllBytes(file.toPath())[0]);
+		assertTrue(file.length() * 10 < jsonLength);
+
+		GameFile loaded = checkLoad(game, file, scheme);
+
+		assertEquals(GameFile.Format.BINARY, loaded.getFormat());
+		assertEquals(file, loaded.getFile());
+
+		Map<String, GameSummary> summaries = byName(GameFile.getAllGames(directory));
+
+		assertEquals(1, summaries.size());
+		assertTrue(summaries.containsKey(file.getName()));
+
+		// Later rounds go in the journal as usual.
+
+		game = loaded.getGame();
+		game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), goofy));
+		loaded.save().get();
+
+		assertTrue(GameJournal.getJournalFile(file).exists());
+		checkLoad(game, file, scheme);
+
+		// And back to json.
+
+		loaded.setFormat(GameFile.Format.JSON);
+		loaded.save().get();
+
+		assertFalse(file.exists());
+		assertFalse(GameJournal.getJournalFile(file).exists());
+		assertEquals(jsonFile, loaded.getFile());
+		assertEquals('{', Files.readAllBytes(jsonFile.toPath())[0]);
+		assertEquals(GameFile.Format.JSON, checkLoad(game, jsonFile, scheme).getFormat());
+
+		loaded.delete();
+
+		new File(directory, GameSummaryIndex.INDEX_FILENAME).delete();
+		directory.delete();
+	}
+
+	/**
+	 * Check that the game file, and its journal, hold the game and its summary, and that the
+	 * scores saved with it are right.
+	 */
+	private GameFile checkLoad(Game game, File file, ScoringScheme scheme) throws IOException
+	{
+		GameFile loaded = GameFile.load(file, scheme, false);
+
+		assertEquals(game.toJson().toString(), loaded.getGame().toJson().toString());
+		assertEquals(game.toJson().toString(), GameFile.load(file, scheme, true).getGame().toJson().toString());
+		assertEquals(GameSummary.fromGame(game, file).toJson().toString(), GameFile.loadGameSummary(file).toJson().toString());
+
+		return loaded;
+	}
+
+	private Map<String, GameSummary> byName(List<GameSummary> summaries)
+	{
+		Map<String, GameSummary> byName = new HashMap<>();
+
+		for (GameSummary summary : summaries)
+			byName.put(summary.getFile().getName(), summary);
+
+		return byName;
+	}
+
+	private Game createGame(ScoringScheme scheme, Player[] players)
+	{
+		Game game = new Game(scheme);
+
+		for (int i = 0 ; i < players.length ; i++)
+			game.setPlayer(players[i], i);
+
+		game.startGame(players[0]);
+
+		return game;
+	}
+
+	@Test
+	public void compactJson() throws Exception
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy };
+
+		File directory = Files.createTempDirectory("games").toFile();
+		File file = new File(directory, "game20200101120000000.json");
+
+		Game game = createGame(scheme, players);
+		GameFile gameFile = new GameFile(game, file);
+
+		for (Player winner : winners)
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+
+		// The streamed json is the same as the json tree, apart from the generation.
+
+		gameFile.save().get();
+
+		ObjectNode saved = (ObjectNode)JsonUtil.load(file);
+
+		assertTrue(saved.has("generation"));
+		saved.remove("generation");
+		assertEquals(game.toJson(), saved);
+		assertEquals(GameFile.Format.JSON, checkLoad(game, file, scheme).getFormat());
+
+		long prettyLength = file.length();
+
+		gameFile.setFormat(GameFile.Format.COMPACT_JSON);
+		gameFile.save().get();
+
+		String contents = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+
+		assertFalse(contents.contains("\n"));
+		assertTrue(file.length() < prettyLength);
+
+		saved = (ObjectNode)JsonUtil.fromString(contents);
+		saved.remove("generation");
+		assertEquals(game.toJson(), saved);
+		assertEquals(GameFile.Format.COMPACT_JSON, checkLoad(game, file, scheme).getFormat());
+
+		gameFile.delete();
+
+		new File(directory, GameSummaryIndex.INDEX_FILENAME).delete();
+		directory.delete();
+	}
+}
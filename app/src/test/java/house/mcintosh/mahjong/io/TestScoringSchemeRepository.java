@@ -0,0 +1,149 @@
+package house.mcintosh.mahjong.io;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import house.mcintosh.mahjong.exception.MissingScoringSchemeException;
+import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.JsonUtil;
+
+public class TestScoringSchemeRepository
+{
+	@Test
+	public void manifest() throws IOException
+	{
+		// Every scheme in the manifest exists, and has the name given in the manifest.
+
+		JsonNode manifest = loadResource("res/raw/scoring_schemes.json");
+
+		assertTrue(manifest.path("schemes").size() > 0);
+
+		for (JsonNode schemeNode : manifest.path("schemes"))
+		{
+			JsonNode scheme = loadResource("res/raw/" + schemeNode.get("resource").asText() + ".json");
+
+			assertEquals(scheme.get("name").asText(), schemeNode.get("name").asText());
+		}
+	}
+
+	@Test
+	public void schemeFiles() throws IOException
+	{
+		File directory = Files.createTempDirectory("schemes").toFile();
+		File file = new File(directory, "house.json");
+
+		byte[] contents = readResource("res/raw/scoring_scheme_british.json");
+
+		Files.write(file.toPath(), contents);
+
+		// Loaded once, and identified by the hash of the file.
+
+		ScoringScheme scheme = ScoringSchemeRepository.get(directory, "house.json", null);
+		String hash = ScoringScheme.getHash(scheme.getIdJson());
+
+		assertEquals(ScoringSchemeRepository.hash(contents), hash);
+		assertEquals("house.json", ScoringScheme.getFileName(scheme.getIdJson()));
+		assertSame(scheme, ScoringSchemeRepository.get(directory, "house.json", null));
+		assertSame(scheme, ScoringSchemeRepository.get(directory, "house.json", hash));
+
+		List<ScoringSchemeRepository.Entry> catalog = ScoringSchemeRepository.getFileCatalog(directory);
+
+		assertEquals(1, catalog.size());
+		assertEquals("house.json", catalog.get(0).getFileName());
+		assertEquals(scheme.getDisplayName(), catalog.get(0).getName());
+
+		// A changed file is loaded again, and the old version is still available by its hash.
+
+		ObjectNode changedNode = (ObjectNode)JsonUtil.fromString(new String(contents, "UTF-8"));
+
+		changedNode.put("limitScore", 500);
+		Files.write(file.toPath(), JsonUtil.toBytes(changedNode));
+		file.setLastModified(file.lastModified() + 2000);
+
+		ScoringScheme changed = ScoringSchemeRepository.get(directory, "house.json", null);
+
+		assertNotSame(scheme, changed);
+		assertEquals(500, changed.LimitScore);
+		assertNotEquals(hash, ScoringScheme.getHash(changed.getIdJson()));
+		assertSame(scheme, ScoringSchemeRepository.get(directory, "house.json", hash));
+
+		// The copy of the old version is kept on disk, by its hash.
+
+		File versionFile = ScoringSchemeRepository.getVersionFile(directory, hash);
+
+		assertArrayEquals(contents, Files.readAllBytes(versionFile.toPath()));
+
+		// A new file with the same contents as the old version loads it from the copy.
+
+		Files.write(new File(directory, "old.json").toPath(), contents);
+
+		ScoringScheme old = ScoringSchemeRepository.get(directory, "old.json", hash);
+
+		assertEquals(1000, old.LimitScore);
+		assertEquals("old.json", ScoringScheme.getFileName(old.getIdJson()));
+
+		try
+		{
+			ScoringSchemeRepository.get(directory, "missing.json", null);
+			fail("Missing scheme loaded");
+		}
+		catch (MissingScoringSchemeException msse)
+		{
+		}
+
+		try
+		{
+			ScoringSchemeRepository.get(directory, "../house.json", null);
+			fail("Scheme outside directory loaded");
+		}
+		catch (MissingScoringSchemeException msse)
+		{
+		}
+
+		for (File copy : versionFile.getParentFile().listFiles())
+			copy.delete();
+
+		versionFile.getParentFile().delete();
+
+		for (File schemeFile : directory.listFiles())
+			schemeFile.delete();
+
+		directory.delete();
+	}
+
+	private byte[] readResource(String name) throws IOException
+	{
+		try (InputStream inStream = getClass().getClassLoader().getResourceAsStream(name))
+		{
+			ByteArrayOutputStream contents = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+
+			while ((count = inStream.read(buffer)) > 0)
+				contents.write(buffer, 0, count);
+
+			return contents.toByteArray();
+		}
+	}
+
+	private JsonNode loadResource(String name) throws IOException
+	{
+		try (InputStream inStream = getClass().getClassLoader().getResourceAsStream(name))
+		{
+			assertNotNull(name, inStream);
+
+			return JsonUtil.load(inStream);
+		}
+	}
+}
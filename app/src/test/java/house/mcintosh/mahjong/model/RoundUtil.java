@@ -63,11 +63,11 @@ public class RoundUtil
 		
 		ScoredHand hand = new ScoredHand(scheme);
 		
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.THREE)), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Dragon.WHITE), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.THREE)), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.WHITE), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
 		assertTrue(hand.isMahjong());
 		assertEquals((10+4+16+4)*2*2, hand.getTotalScoreUnlimited());
 		
@@ -80,11 +80,11 @@ public class RoundUtil
 
 		ScoredHand hand = new ScoredHand(scheme);
 
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CIRCLES, Tile.Number.ONE), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.BAMBOO, Tile.Number.TWO), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.THREE)), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.ONE), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.THREE)), scheme, playerWind, prevailingWind));
 		assertTrue(hand.isMahjong());
 		assertEquals(10*2, hand.getTotalScoreUnlimited());
 
@@ -120,7 +120,7 @@ public class RoundUtil
 		
 		ScoredHand hand = new ScoredHand(scheme);
 		
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
 		assertEquals(2, hand.getTotalScoreUnlimited());
 		
 		return hand;
@@ -132,7 +132,7 @@ public class RoundUtil
 		
 		ScoredHand hand = new ScoredHand(scheme);
 		
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Suit.BAMBOO, Tile.Number.THREE), Group.Visibility.CONCEALED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.THREE), Group.Visibility.CONCEALED), scheme, playerWind, prevailingWind));
 		assertEquals(4, hand.getTotalScoreUnlimited());
 		
 		return hand;
@@ -144,7 +144,7 @@ public class RoundUtil
 		
 		ScoredHand hand = new ScoredHand(scheme);
 		
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Suit.CIRCLES, Tile.Number.NINE), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE), Group.Visibility.EXPOSED), scheme, playerWind, prevailingWind));
 		assertEquals(16, hand.getTotalScoreUnlimited());
 		
 		return hand;
@@ -1,5 +1,6 @@
 package house.mcintosh.mahjong.model;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import static org.junit.Assert.*;
@@ -7,9 +8,20 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import house.mcintosh.mahjong.exception.InvalidGameStateException;
+import house.mcintosh.mahjong.exception.InvalidModelException;
+import house.mcintosh.mahjong.exception.LoadException;
+import house.mcintosh.mahjong.scoring.ScoreContribution;
+import house.mcintosh.mahjong.scoring.ScoredHand;
 import house.mcintosh.mahjong.scoring.ScoringScheme;
+import house.mcintosh.mahjong.util.BinaryInput;
+import house.mcintosh.mahjong.util.BinaryOutput;
 import house.mcintosh.mahjong.util.TestUtil;
 
 public class TestGame
@@ -281,6 +293,761 @@ public class TestGame
 		assertEquals(gameCStr, gameIStr);
 	}
 
+	@Test
+	public void undoRedo() throws IOException
+	{
+		Game game = new Game(TestUtil.loadDefaultScoringScheme());
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto, goofy, donald, mickey,
+							 goofy, pluto, donald, mickey, goofy, donald, pluto, donald, goofy, mickey };
+
+		for (int i = 0 ; i < players.length ; i++)
+			game.setPlayer(players[i], i);
+
+		game.startGame(mickey);
+
+		assertFalse(game.canUndo());
+		assertNull(game.popRound());
+
+		// Record the state of the game after each round, until it finishes.
+
+		List<String> states = new ArrayList<>();
+		states.add(game.toJson().toString());
+
+		for (Player winner : winners)
+		{
+			if (game.isFinished())
+				break;
+
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+			states.add(game.toJson().toString());
+		}
+
+		assertTrue(game.isFinished());
+
+		// Undo all the way back to the start, checking the state at each step.
+
+		List<Round> rounds = new ArrayList<>(game.getRounds());
+
+		for (int i = rounds.size() - 1 ; i >= 0 ; i--)
+		{
+			assertTrue(game.canUndo());
+			assertSame(rounds.get(i), game.undoRound());
+			assertEquals(states.get(i), game.toJson().toString());
+			assertFalse(game.isFinished());
+		}
+
+		assertFalse(game.canUndo());
+
+		// Redo half way.
+
+		for (int i = 0 ; i < rounds.size() / 2 ; i++)
+		{
+			assertTrue(game.canRedo());
+			assertSame(rounds.get(i), game.redoRound());
+			assertEquals(states.get(i + 1), game.toJson().toString());
+		}
+
+		// Adding a different round discards the rounds that could have been redone.
+
+		Round edited = RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), game.getEastPlayer());
+		game.addRound(edited);
+
+		assertFalse(game.canRedo());
+		assertNull(game.redoRound());
+		assertSame(edited, game.getLastRound());
+		assertEquals(rounds.size() / 2 + 1, game.getRoundCount());
+		assertEquals(rounds.size() / 2 + 2, game.getRoundScores().size() + 1);
+	}
+
+	@Test
+	public void replaceRound() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto, goofy, donald, mickey,
+							 goofy, pluto, donald, mickey, goofy, donald, pluto, donald, goofy, mickey };
+
+		// Play a game, recording the position of play at the start of each round.
+
+		Game game = createGame(scheme, players);
+
+		List<Player>	eastPlayers		= new ArrayList<>();
+		List<Wind>		prevailingWinds	= new ArrayList<>();
+
+		for (Player winner : winners)
+		{
+			if (game.isFinished())
+				break;
+
+			eastPlayers.add(game.getEastPlayer());
+			prevailingWinds.add(game.getPrevailingWind());
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+		}
+
+		List<Round> rounds = new ArrayList<>(game.getRounds());
+
+		// Replace each round in turn, with one where the east player either does or does not
+		// go Mahjong instead, so that the position of play changes.  Compare with a game with
+		// all the rounds added from the start, played with the winds that follow from the
+		// replacement.
+
+		for (int i = 0 ; i < rounds.size() ; i++)
+		{
+			Player east = eastPlayers.get(i);
+			Player winner = rounds.get(i).getHand(east).isMahjong() ? players[(Arrays.asList(players).indexOf(east) + 1) % 4] : east;
+			Round replacement = RoundUtil.createRound(players, prevailingWinds.get(i), east, winner);
+
+			Game replaced = createGame(scheme, players);
+			Game reference = createGame(scheme, players);
+
+			for (Round round : rounds)
+				replaced.addRound(round);
+
+			boolean valid = true;
+
+			try
+			{
+				for (int j = 0 ; j < rounds.size() ; j++)
+					reference.addRound(j == i ? replacement : withCurrentWinds(rounds.get(j), reference, players));
+			}
+			catch (InvalidGameStateException e)
+			{
+				valid = false;
+			}
+
+			String before = replaced.toJson().toString();
+
+			// Scores handed out before the replacement keep their values.
+
+			List<Map<Player, Integer>>	roundScores		= replaced.getRoundScores();
+			String						scoresBefore	= roundScores.toString();
+
+			try
+			{
+				replaced.replaceRound(i, replacement);
+				assertEquals(scoresBefore, roundScores.toString());
+				assertTrue(valid);
+				assertEquals(reference.toJson().toString(), replaced.toJson().toString());
+				assertEquals(reference.getRoundScores(), replaced.getRoundScores());
+				assertSame(replacement, replaced.getRounds().get(i));
+			}
+			catch (InvalidGameStateException e)
+			{
+				assertFalse(valid);
+				assertEquals(before, replaced.toJson().toString());
+			}
+		}
+	}
+
+	@Test
+	public void replaceRoundChangingEast() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+
+		// Pluto wins the first round, so Donald is east for the second, which Donald wins.
+
+		Game game = createGame(scheme, players);
+
+		game.addRound(RoundUtil.createRound(players, Wind.EAST, mickey, pluto));
+		game.addRound(RoundUtil.createRound(players, Wind.EAST, donald, donald));
+
+		Round original = game.getRounds().get(1);
+		assertEquals(Wind.EAST, original.getPlayerWind(donald));
+
+		Map<Player, Integer>	endScores			= game.getLastRoundEndScores();
+		Map<Player, Integer>	expectedEndScores	= new HashMap<>(endScores);
+
+		// The first round is corrected so that Mickey won, and stays east for the second round.
+		// Every hand in the second round is rescored with the winds it was really played with.
+
+		game.replaceRound(0, RoundUtil.createRound(players, Wind.EAST, mickey, mickey));
+
+		Round second = game.getRounds().get(1);
+
+		for (int i = 0 ; i < players.length ; i++)
+		{
+			Player	player	= players[i];
+			Wind	wind	= Wind.values()[i];
+
+			assertEquals(wind, second.getPlayerWind(player));
+			assertEquals(wind, second.getHand(player).get(0).getOwnWind());
+
+			ScoredHand rescored = ScoredHand.fromJson(original.getHand(player).toJson(), scheme, wind, Wind.EAST);
+			assertEquals(rescored.getTotalScore(), second.getHand(player).getTotalScore());
+		}
+
+		// Donald's win is no longer as east, so is worth less.
+
+		assertTrue(second.getPlayerScore(donald) < original.getPlayerScore(donald));
+
+		// The end scores from before the correction are unchanged.
+
+		assertNotEquals(expectedEndScores, game.getLastRoundEndScores());
+		assertEquals(expectedEndScores, endScores);
+	}
+
+	/**
+	 * @return	The round as it would be played next in the game.
+	 */
+	private static Round withCurrentWinds(Round round, Game game, Player[] players)
+	{
+		Map<Player, Wind> winds = new HashMap<>();
+
+		for (Player player : players)
+			winds.put(player, game.getPlayerWind(player));
+
+		return round.withWinds(game.getPrevailingWind(), winds);
+	}
+
+	@Test
+	public void scoreHistory() throws IOException
+	{
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+
+		Game game = createGame(TestUtil.loadDefaultScoringScheme(), players);
+
+		Map<Player, Integer> expected = new HashMap<>();
+
+		for (Player player : players)
+			expected.put(player, 2000);
+
+		assertEquals(expected, game.getIntialScores());
+		assertEquals(expected, game.getLastRoundEndScores());
+		assertNull(game.getLastRoundStartScores());
+		assertTrue(game.getRoundScores().isEmpty());
+
+		// Enough rounds for the history to grow, rotating the seats as play goes on.
+
+		for (int i = 0 ; i < 40 && !game.isFinished() ; i++)
+		{
+			Round round = RoundUtil.createRound(game.getSeats(), game.getPrevailingWind(), game.getEastPlayer(), players[i % 3]);
+
+			Map<Player, Integer> startScores = new HashMap<>(expected);
+
+			for (Player player : players)
+				expected.put(player, expected.get(player) + round.getPlayerScore(player));
+
+			game.addRound(round);
+			game.rotateSeats();
+
+			assertEquals(startScores, game.getLastRoundStartScores());
+			assertEquals(expected, game.getLastRoundEndScores());
+			assertEquals(expected, game.getRoundScores().get(game.getRoundCount() - 1));
+			assertEquals(game.getRoundCount(), game.getRoundScores().size());
+
+			for (Player player : players)
+				assertEquals((int) expected.get(player), game.getPlayerScore(player));
+		}
+
+		assertTrue(game.getRoundCount() > 16);
+		assertNull(game.getLastRoundEndScores().get(Player.create("Minnie")));
+
+		// Scores handed out keep their values when the game changes.
+
+		int							roundCount	= game.getRoundCount();
+		Map<Player, Integer>		endScores	= game.getLastRoundEndScores();
+		List<Map<Player, Integer>>	roundScores	= game.getRoundScores();
+
+		game.undoRound();
+		game.addRound(RoundUtil.createRound(game.getSeats(), game.getPrevailingWind(), game.getEastPlayer(), null));
+
+		assertNotEquals(expected, game.getLastRoundEndScores());
+		assertEquals(expected, endScores);
+		assertEquals(expected, roundScores.get(roundCount - 1));
+		assertEquals(roundCount, roundScores.size());
+	}
+
+	@Test
+	public void scoreSnapshotsAfterReplaceRound() throws IOException
+	{
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+
+		Game game = createGame(TestUtil.loadDefaultScoringScheme(), players);
+
+		game.addRound(RoundUtil.createRound(players, Wind.EAST, mickey, pluto));
+		game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), goofy));
+
+		List<Map<Player, Integer>>	roundScores	= game.getRoundScores();
+		Map<Player, Integer>		endScores	= game.getLastRoundEndScores();
+
+		List<Map<Player, Integer>>	expectedRoundScores	= new ArrayList<>();
+
+		for (Map<Player, Integer> scores : roundScores)
+			expectedRoundScores.add(new HashMap<>(scores));
+
+		Map<Player, Integer> expectedEndScores = new HashMap<>(endScores);
+
+		// Scores handed out before a round is replaced keep their values.
+
+		game.replaceRound(0, RoundUtil.createRound(players, Wind.EAST, mickey, donald));
+
+		assertNotEquals(expectedEndScores, game.getLastRoundEndScores());
+		assertEquals(expectedRoundScores, roundScores);
+		assertEquals(expectedEndScores, endScores);
+	}
+
+	@Test
+	public void playerRegistry()
+	{
+		Player mickey = Player.create("Mickey");
+
+		ObjectNode mickeyJson = mickey.toJson();
+
+		// Loading the same player twice gives the same instance, which can then be found by ID.
+
+		Player loaded = Player.fromJson(mickeyJson);
+
+		assertEquals(mickey, loaded);
+		assertSame(loaded, Player.fromJson(mickeyJson));
+		assertSame(loaded, Player.get(new PlayerId(mickey.getId())));
+
+		try
+		{
+			Player.get(PlayerId.create());
+			fail();
+		}
+		catch (InvalidModelException e)
+		{
+			// OK - expected.
+		}
+
+		// Players that are still in use are kept when eviction is enabled.
+
+		Player.setEvictionEnabled(true);
+
+		try
+		{
+			assertTrue(Player.isEvictionEnabled());
+			assertSame(loaded, Player.fromJson(mickeyJson));
+			assertSame(loaded, Player.get(new PlayerId(mickey.getId())));
+		}
+		finally
+		{
+			Player.setEvictionEnabled(false);
+		}
+	}
+
+	@Test
+	public void statistics() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto, goofy, donald, mickey };
+
+		Game game = createGame(scheme, players);
+
+		for (Player winner : winners)
+		{
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+			checkStatistics(game, players);
+		}
+
+		assertEquals(4, game.getStatistics().getMahjongCount(mickey));
+		assertEquals(winners.length, game.getStatistics().getHandCount(goofy));
+
+		// Undo, replace and redo.
+
+		game.popRound();
+		game.popRound();
+		checkStatistics(game, players);
+
+		game.replaceRound(3, RoundUtil.createRound(players, Wind.EAST, goofy, goofy));
+		checkStatistics(game, players);
+
+		game.replaceRound(0, RoundUtil.createRound(players, Wind.EAST, mickey, donald));
+		checkStatistics(game, players);
+
+		while (game.getRoundCount() > 0)
+		{
+			game.popRound();
+			checkStatistics(game, players);
+		}
+
+		assertEquals(0, game.getStatistics().getBestHandScore(mickey));
+		assertEquals(0, game.getStatistics().getMeanHandScore(mickey), 0);
+	}
+
+	@Test
+	public void lazyRounds() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto };
+
+		Game game = createGame(scheme, players);
+
+		for (Player winner : winners)
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+
+		ObjectNode gameNode = game.toJson();
+
+		// Spoil one hand.  The game still loads, because the hand is not read until it is needed.
+
+		ObjectNode spoiltNode = gameNode.deepCopy();
+		ObjectNode entryNode = (ObjectNode)spoiltNode.get("rounds").get(0).get("hands").get(0);
+		ObjectNode handNode = (ObjectNode)entryNode.get("hand");
+		handNode.putArray("groups").addObject().put("type", "NOT_A_TYPE");
+
+		Game loaded = Game.fromJson(spoiltNode, scheme);
+		Player spoiltPlayer = Player.get(new PlayerId(entryNode.get("playerId")));
+
+		assertEquals(game.getLastRoundEndScores(), loaded.getLastRoundEndScores());
+		assertEquals(game.getEastPlayer(), loaded.getEastPlayer());
+		assertEquals(game.getPrevailingWind(), loaded.getPrevailingWind());
+		assertEquals(game.getRounds().get(0).getPlayerScore(spoiltPlayer), loaded.getRounds().get(0).getPlayerScore(spoiltPlayer));
+		assertEquals(spoiltNode, loaded.toJson());
+
+		try
+		{
+			loaded.getRounds().get(0).getHand(spoiltPlayer);
+			fail("Spoilt hand read");
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+
+		// Unspoilt hands are read as needed.
+
+		loaded = Game.fromJson(gameNode, scheme);
+
+		// Unread hands are written in binary as they are, without scoring them, whether they
+		// were read from json or binary.
+
+		BinaryOutput gameOutput = new BinaryOutput();
+		game.writeTo(gameOutput);
+		byte[] gameBytes = gameOutput.toByteArray();
+
+		long scoredCount = scheme.getHandScoreCache().getHitCount() + scheme.getHandScoreCache().getMissCount();
+
+		BinaryOutput loadedOutput = new BinaryOutput();
+		loaded.writeTo(loadedOutput);
+		assertArrayEquals(gameBytes, loadedOutput.toByteArray());
+
+		BinaryInput input = new BinaryInput(gameBytes);
+		Game.readBinaryVersion(input);
+		Game.readScoringSchemeId(input);
+		Game binaryLoaded = Game.readFrom(input, scheme, false);
+
+		BinaryOutput binaryLoadedOutput = new BinaryOutput();
+		binaryLoaded.writeTo(binaryLoadedOutput);
+		assertArrayEquals(gameBytes, binaryLoadedOutput.toByteArray());
+
+		assertEquals(scoredCount, scheme.getHandScoreCache().getHitCount() + scheme.getHandScoreCache().getMissCount());
+
+		assertEquals(gameNode, loaded.toJson());
+		assertEquals(game.getLastRound().getHand(mickey).getTotalScore(), loaded.getLastRound().getHand(mickey).getTotalScore());
+		checkStatistics(loaded, players);
+
+		// Games saved without the scores of the rounds are read in full, and then saved with them.
+
+		ObjectNode oldNode = gameNode.deepCopy();
+
+		for (JsonNode roundNode : oldNode.get("rounds"))
+		{
+			for (JsonNode oldEntryNode : roundNode.get("hands"))
+				((ObjectNode)oldEntryNode).remove(Arrays.asList("score", "mahjong"));
+		}
+
+		assertEquals(gameNode, Game.fromJson(oldNode, scheme).toJson());
+	}
+
+	@Test
+	public void verifyScores() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald };
+
+		Game game = createGame(scheme, players);
+
+		for (Player winner : winners)
+			game.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winner));
+
+		ObjectNode gameNode = game.toJson();
+
+		assertEquals(gameNode, Game.fromJson(gameNode, scheme, true).toJson());
+
+		// Saved scores that do not match are trusted, unless they are being verified.
+
+		ObjectNode handScoreNode = gameNode.deepCopy();
+		ObjectNode handNode = (ObjectNode)handScoreNode.get("rounds").get(1).get("hands").get(2).get("hand");
+
+		handNode.put("totalScore", handNode.get("totalScore").asInt() + 2);
+
+		ObjectNode roundScoreNode = gameNode.deepCopy();
+		ObjectNode entryNode = (ObjectNode)roundScoreNode.get("rounds").get(2).get("hands").get(0);
+
+		entryNode.put("score", entryNode.get("score").asInt() + 2);
+
+		ObjectNode gameScoreNode = gameNode.deepCopy();
+
+		((ObjectNode)gameScoreNode.get("scores")).put(mickey.getId(), game.getPlayerScore(mickey) + 2);
+
+		for (ObjectNode spoiltNode : Arrays.asList(handScoreNode, roundScoreNode, gameScoreNode))
+		{
+			Game.fromJson(spoiltNode, scheme);
+
+			try
+			{
+				Game.fromJson(spoiltNode, scheme, true);
+				fail("Spoilt score verified");
+			}
+			catch (LoadException e)
+			{
+			}
+		}
+
+		// The trusted round score is used as it was saved.
+
+		Game trusted = Game.fromJson(roundScoreNode, scheme);
+		Player player = Player.get(new PlayerId(entryNode.get("playerId")));
+
+		assertEquals(game.getPlayerScore(player) + 2, trusted.getPlayerScore(player));
+	}
+
+	@Test
+	public void gameLog() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+		Player[] winners = { pluto, mickey, mickey, donald, goofy, mickey, pluto, goofy, donald, mickey };
+
+		// Record the state of the game after every event, using a small snapshot interval so
+		// that states are rebuilt from several different snapshots.
+
+		GameLog log = new GameLog(createGame(scheme, players), 3);
+		List<String> states = new ArrayList<>();
+		Map<Integer, String> roundStates = new HashMap<>();
+
+		states.add(log.getGame().toJson().toString());
+		roundStates.put(0, states.get(0));
+
+		for (int i = 0 ; i < winners.length ; i++)
+		{
+			Game game = log.getGame();
+
+			log.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), winners[i]));
+
+			if (i == 4)
+				log.rotateSeats();
+			if (i == 6)
+				log.popRound();
+			if (i == 8)
+				log.replaceRound(2, RoundUtil.createRound(players, Wind.EAST, pluto, pluto));
+
+			while (states.size() <= log.getEventCount())
+				states.add(null);
+
+			states.set(log.getEventCount(), log.getGame().toJson().toString());
+			roundStates.put(log.getGame().getRoundCount(), states.get(log.getEventCount()));
+		}
+
+		log.renamePlayer(goofy, "Goofy Goof");
+		assertEquals("Goofy Goof", goofy.getName());
+
+		// Every recorded state can be rebuilt.
+
+		for (int i = 0 ; i < states.size() ; i++)
+		{
+			if (states.get(i) != null)
+				assertEquals(states.get(i), log.getGameAfterEvents(i).toJson().toString());
+		}
+
+		for (Map.Entry<Integer, String> entry : roundStates.entrySet())
+			assertEquals(entry.getValue(), log.getGameAsOfRound(entry.getKey()).toJson().toString());
+
+		assertNull(log.getGameAsOfRound(winners.length + 1));
+
+		// The current state can be rebuilt from a saved log, and the log carries on from there.
+
+		String current = log.getGame().toJson().toString();
+
+		GameLog restored = GameLog.fromJson(log.toJson(), scheme);
+
+		assertEquals(current, restored.getGame().toJson().toString());
+
+		for (Player player : restored.getGame().getPlayers())
+		{
+			if (player.equals(goofy))
+				assertEquals("Goofy Goof", player.getName());
+		}
+
+		assertEquals(log.toJson().toString(), restored.toJson().toString());
+
+		Game game = restored.getGame();
+
+		restored.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), mickey));
+		assertEquals(log.getEventCount() + 1, restored.getEventCount());
+		assertEquals(game.toJson().toString(), restored.getGameAfterEvents(restored.getEventCount()).toJson().toString());
+	}
+
+	@Test
+	public void gameLogSnapshotLimit() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		Player mickey	= Player.create("Mickey");
+		Player donald	= Player.create("Donald");
+		Player pluto	= Player.create("Pluto");
+		Player goofy	= Player.create("Goofy");
+
+		Player[] players = { mickey, donald, pluto, goofy };
+
+		// Snapshot after every event, with enough events that snapshots have to be thinned.
+
+		GameLog log = new GameLog(createGame(scheme, players), 1);
+		List<Integer> roundCounts = new ArrayList<>();
+
+		roundCounts.add(0);
+
+		for (int i = 0 ; i < GameLog.MAX_SNAPSHOTS * 3 ; i++)
+		{
+			Game game = log.getGame();
+
+			if (i % 20 == 0)
+				log.addRound(RoundUtil.createRound(players, game.getPrevailingWind(), game.getEastPlayer(), mickey));
+			else
+				log.renamePlayer(goofy, "Goofy");
+
+			roundCounts.add(log.getGame().getRoundCount());
+		}
+
+		ObjectNode json = log.toJson();
+
+		assertTrue(json.get("snapshots").size() <= GameLog.MAX_SNAPSHOTS);
+		assertEquals(4, json.get("snapshotInterval").asInt());
+
+		for (int i = 0 ; i < roundCounts.size() ; i++)
+			assertEquals((int) roundCounts.get(i), log.getGameAfterEvents(i).getRoundCount());
+
+		GameLog restored = GameLog.fromJson(json, scheme);
+
+		assertEquals(log.getGame().toJson().toString(), restored.getGame().toJson().toString());
+		assertEquals(json.toString(), restored.toJson().toString());
+	}
+
+	/**
+	 * Check the statistics of a game against the statistics worked out from all of its rounds.
+	 */
+	private void checkStatistics(Game game, Player[] players)
+	{
+		GameStatistics statistics = game.getStatistics();
+
+		for (Player player : players)
+		{
+			int hands = 0, mahjongs = 0, eastWins = 0, best = 0, mahjongElements = 0;
+			double sum = 0, sumOfSquares = 0;
+
+			for (Round round : game.getRounds())
+			{
+				ScoredHand hand = round.getHand(player);
+				int score = hand.getTotalScore();
+
+				hands++;
+				sum += score;
+				sumOfSquares += (double) score * score;
+				best = Math.max(best, score);
+
+				if (hand.isMahjong())
+				{
+					mahjongs++;
+
+					if (round.getPlayerWind(player) == Wind.EAST)
+						eastWins++;
+				}
+
+				for (ScoreContribution contribution : hand.getWholeHandScores())
+				{
+					if (contribution.getElement() == ScoringScheme.ScoreElement.MahjongHandScore)
+						mahjongElements++;
+				}
+			}
+
+			assertEquals(hands, statistics.getHandCount(player));
+			assertEquals(mahjongs, statistics.getMahjongCount(player));
+			assertEquals(eastWins, statistics.getEastWinCount(player));
+			assertEquals(best, statistics.getBestHandScore(player));
+			assertEquals(0, statistics.getLimitHandCount(player));
+			assertEquals(mahjongElements, statistics.getScoreElementCount(player, ScoringScheme.ScoreElement.MahjongHandScore));
+
+			if (hands > 0)
+			{
+				double mean = sum / hands;
+
+				assertEquals(mean, statistics.getMeanHandScore(player), 1e-9);
+				assertEquals(sumOfSquares / hands - mean * mean, statistics.getHandScoreVariance(player), 1e-6);
+			}
+		}
+
+		assertEquals(players.length, statistics.toJson().get("players").size());
+	}
+
+	private Game createGame(ScoringScheme scheme, Player[] players)
+	{
+		Game game = new Game(scheme);
+
+		for (int i = 0 ; i < players.length ; i++)
+			game.setPlayer(players[i], i);
+
+		game.startGame(players[0]);
+
+		return game;
+	}
+
 	private Game pauseAndCompare(Game gamePaused, ScoringScheme scheme, Game gameContinuous)
 	{
 		ObjectNode savedGameJson = gamePaused.toJson();
@@ -222,4 +222,55 @@ public class TestRound
 		assertEquals(0, eastScore + southScore + westScore);
 	}
 
+	@Test
+	public void testSettlement() throws IOException
+	{
+		Wind prevailingWind = Wind.EAST;
+
+		Round round = new Round(prevailingWind);
+
+		Player eastPlayer	= Player.create("East Player");
+		Player southPlayer	= Player.create("South Player");
+		Player westPlayer	= Player.create("West Player");
+
+		round.addHand(eastPlayer, RoundUtil.createHand2(Wind.EAST, prevailingWind), Wind.EAST);
+		round.addHand(southPlayer, RoundUtil.createMahjongHand136(Wind.SOUTH, prevailingWind), Wind.SOUTH);
+
+		// Two players.
+
+		int[][] settlement = round.getSettlement();
+
+		assertEquals(2*136 - 2, settlement[Wind.SOUTH.ordinal()][Wind.EAST.ordinal()]);
+		assertEquals(-settlement[Wind.SOUTH.ordinal()][Wind.EAST.ordinal()], settlement[Wind.EAST.ordinal()][Wind.SOUTH.ordinal()]);
+		assertEquals(0, settlement[Wind.WEST.ordinal()][Wind.EAST.ordinal()]);
+		assertEquals(2*136 - 2, round.getPlayerScore(southPlayer));
+
+		// Adding a hand changes the settlement.  The copy returned earlier is unchanged.
+
+		round.addHand(westPlayer, RoundUtil.createHand4(Wind.WEST, prevailingWind), Wind.WEST);
+
+		assertEquals(2*136 - 2, settlement[Wind.SOUTH.ordinal()][Wind.EAST.ordinal()]);
+
+		settlement = round.getSettlement();
+
+		assertEquals(136*2, settlement[Wind.SOUTH.ordinal()][Wind.EAST.ordinal()]);
+		assertEquals(136, settlement[Wind.SOUTH.ordinal()][Wind.WEST.ordinal()]);
+		assertEquals((4-2)*2, settlement[Wind.WEST.ordinal()][Wind.EAST.ordinal()]);
+
+		Player[] players = { eastPlayer, southPlayer, westPlayer };
+
+		for (Player player : players)
+		{
+			int wind = round.getPlayerWind(player).ordinal();
+			int received = 0;
+
+			for (int other = 0 ; other < settlement.length ; other++)
+			{
+				assertEquals(-settlement[other][wind], settlement[wind][other]);
+				received += settlement[wind][other];
+			}
+
+			assertEquals(received, round.getPlayerScore(player));
+		}
+	}
 }
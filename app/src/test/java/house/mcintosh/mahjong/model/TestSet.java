@@ -2,6 +2,10 @@ package house.mcintosh.mahjong.model;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.List;
 
 import org.junit.Test;
@@ -14,7 +18,7 @@ public class TestSet
 	@Test
 	public void createChow1()
 	{
-		Group chow = new Group(Group.Type.CHOW, new Tile(Tile.Suit.BAMBOO, Tile.Number.ONE), Group.Visibility.EXPOSED);
+		Group chow = new Group(Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE), Group.Visibility.EXPOSED);
 		
 		assertEquals(Group.Visibility.EXPOSED, chow.getVisibility());
 		
@@ -33,7 +37,7 @@ public class TestSet
 		
 		try
 		{
-			tiles.add(new Tile(Tile.Suit.BAMBOO, Tile.Number.FOUR));
+			tiles.add(Tile.get(Tile.Suit.BAMBOO, Tile.Number.FOUR));
 			fail();
 		}
 		catch (UnsupportedOperationException e)
@@ -47,7 +51,7 @@ public class TestSet
 	@Test
 	public void createChow4()
 	{
-		Group chow = new Group(Group.Type.CHOW, new Tile(Tile.Suit.CIRCLES, Tile.Number.FOUR), Group.Visibility.CONCEALED);
+		Group chow = new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.FOUR), Group.Visibility.CONCEALED);
 		
 		// Visiblity is overridden to be exposed.
 		assertEquals(Group.Visibility.EXPOSED, chow.getVisibility());
@@ -67,7 +71,7 @@ public class TestSet
 	@Test
 	public void createChow8()
 	{
-		Group chow = new Group(Group.Type.CHOW, new Tile(Tile.Suit.BAMBOO, Tile.Number.EIGHT));
+		Group chow = new Group(Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.EIGHT));
 		
 		// Visibility defaults to exposed.
 		assertEquals(Group.Visibility.EXPOSED, chow.getVisibility());
@@ -87,7 +91,7 @@ public class TestSet
 	@Test
 	public void createChow9()
 	{
-		Group chow = new Group(Group.Type.CHOW, new Tile(Tile.Suit.CIRCLES, Tile.Number.NINE), Group.Visibility.EXPOSED);
+		Group chow = new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE), Group.Visibility.EXPOSED);
 		
 		assertEquals(Group.Visibility.EXPOSED, chow.getVisibility());
 		
@@ -106,7 +110,7 @@ public class TestSet
 	@Test
 	public void createPungWind()
 	{
-		Group chow = new Group(Group.Type.PUNG, new Tile(Wind.SOUTH), Group.Visibility.CONCEALED);
+		Group chow = new Group(Group.Type.PUNG, Tile.get(Wind.SOUTH), Group.Visibility.CONCEALED);
 		
 		assertEquals(Group.Visibility.CONCEALED, chow.getVisibility());
 		
@@ -125,7 +129,7 @@ public class TestSet
 	@Test
 	public void createKongDragon()
 	{
-		Group chow = new Group(Group.Type.KONG, new Tile(Tile.Dragon.WHITE), Group.Visibility.CONCEALED);
+		Group chow = new Group(Group.Type.KONG, Tile.get(Tile.Dragon.WHITE), Group.Visibility.CONCEALED);
 		
 		assertEquals(Group.Visibility.CONCEALED, chow.getVisibility());
 		
@@ -146,7 +150,7 @@ public class TestSet
 	@Test
 	public void createPairLong()
 	{
-		Group pair = new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.FIVE), Group.Visibility.EXPOSED);
+		Group pair = new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.FIVE), Group.Visibility.EXPOSED);
 		
 		assertEquals(Group.Visibility.EXPOSED, pair.getVisibility());
 		
@@ -162,7 +166,7 @@ public class TestSet
 	@Test
 	public void createPairShort()
 	{
-		Group pair = new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.FIVE));
+		Group pair = new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.FIVE));
 		
 		assertEquals(Group.Visibility.EXPOSED, pair.getVisibility());
 		
@@ -178,7 +182,7 @@ public class TestSet
 	@Test
 	public void createPairConcealedOverride()
 	{
-		Group pair = new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.FIVE), Group.Visibility.CONCEALED);
+		Group pair = new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.FIVE), Group.Visibility.CONCEALED);
 		
 		assertEquals(Group.Visibility.CONCEALED, pair.getVisibility());
 		
@@ -190,4 +194,55 @@ public class TestSet
 		assertEquals(Tile.Number.FIVE,	tiles.get(0).getNumber());
 		assertEquals(Tile.Number.FIVE,	tiles.get(1).getNumber());
 	}
+
+	@Test
+	public void tileInterning() throws Exception
+	{
+		// Every index maps to a distinct tile which maps back to the same index.
+
+		for (int index = 0 ; index < Tile.COUNT ; index++)
+		{
+			Tile tile = Tile.get(index);
+
+			assertEquals(index, tile.getIndex());
+
+			switch (tile.getType())
+			{
+				case SUIT:
+					assertSame(tile, Tile.get(tile.getSuit(), tile.getNumber()));
+					break;
+				case WIND:
+					assertSame(tile, Tile.get(tile.getWind()));
+					break;
+				case DRAGON:
+					assertSame(tile, Tile.get(tile.getDragon()));
+					break;
+			}
+
+			assertSame(tile, Tile.fromJson(tile.toJson()));
+		}
+
+		// Chow tiles are the canonical instances.
+
+		Group chow = new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE));
+
+		assertSame(Tile.get(Tile.Suit.CIRCLES, Tile.Number.SEVEN), chow.getTiles().get(0));
+		assertSame(Tile.get(Tile.Suit.CIRCLES, Tile.Number.EIGHT), chow.getTiles().get(1));
+		assertSame(Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE), chow.getTiles().get(2));
+
+		// Deserialisation resolves to the canonical instance.
+
+		Tile tile = Tile.get(Tile.Dragon.GREEN);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(tile);
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			assertSame(tile, in.readObject());
+		}
+	}
 }
@@ -0,0 +1,238 @@
+package house.mcintosh.mahjong.scoring;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import house.mcintosh.mahjong.model.Group;
+import house.mcintosh.mahjong.model.Tile;
+import house.mcintosh.mahjong.model.Wind;
+import house.mcintosh.mahjong.util.TestUtil;
+
+public class TestHandDecomposer
+{
+	@Test
+	public void simpleHand() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+		HandDecomposer decomposer = new HandDecomposer(scheme, Wind.EAST, Wind.EAST);
+
+		// A hand that can only be split one way.
+
+		List<ScoredGroup> groups = new ArrayList<>();
+		groups.add(group(scheme, Group.Type.PUNG, Tile.get(Tile.Dragon.RED)));
+		groups.add(group(scheme, Group.Type.KONG, Tile.get(Wind.EAST)));
+		groups.add(group(scheme, Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO)));
+		groups.add(group(scheme, Group.Type.PUNG, Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE)));
+		groups.add(group(scheme, Group.Type.PAIR, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FIVE)));
+
+		ScoredHand expected = new ScoredHand(scheme);
+
+		for (ScoredGroup group : groups)
+			expected.add(group);
+
+		assertTrue(expected.isMahjong());
+
+		ScoredHand best = decomposer.findBestHand(HandDecomposer.countTiles(groups), null, null);
+
+		assertNotNull(best);
+		assertTrue(best.isMahjong());
+		assertEquals(expected.size(), best.size());
+		assertEquals(expected.getTotalScore(), best.getTotalScore());
+		assertEquals(expected.getTotalScoreUnlimited(), best.getTotalScoreUnlimited());
+	}
+
+	@Test
+	public void bestSplit() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+		HandDecomposer decomposer = new HandDecomposer(scheme, Wind.SOUTH, Wind.EAST);
+
+		// 111 222 333 bamboo can be three chows or three pungs.  Pungs score more.
+
+		int[] tileCounts = new int[Tile.COUNT];
+
+		tileCounts[Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE).getIndex()] = 3;
+		tileCounts[Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO).getIndex()] = 3;
+		tileCounts[Tile.get(Tile.Suit.BAMBOO, Tile.Number.THREE).getIndex()] = 3;
+		tileCounts[Tile.get(Tile.Dragon.GREEN).getIndex()] = 3;
+		tileCounts[Tile.get(Wind.WEST).getIndex()] = 2;
+
+		ScoredHand best = decomposer.findBestHand(tileCounts, null, null);
+
+		assertNotNull(best);
+		assertTrue(best.isMahjong());
+
+		for (ScoredGroup group : best)
+			assertNotEquals(Group.Type.CHOW, group.getType());
+
+		// Concealment and the way the hand was completed are taken into account.
+
+		boolean[] concealed = new boolean[Tile.COUNT];
+		concealed[Tile.get(Tile.Dragon.GREEN).getIndex()] = true;
+
+		ScoredHand concealedBest = decomposer.findBestHand(tileCounts, concealed, EnumSet.of(ScoredHand.HandCompletedBy.MAHJONG_WALL_TILE));
+
+		assertTrue(concealedBest.isMahjongCompletedBy(ScoredHand.HandCompletedBy.MAHJONG_WALL_TILE));
+		assertTrue(concealedBest.getTotalScoreUnlimited() > best.getTotalScoreUnlimited());
+	}
+
+	@Test
+	public void notMahjong() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+		HandDecomposer decomposer = new HandDecomposer(scheme, Wind.EAST, Wind.EAST);
+
+		int[] tileCounts = new int[Tile.COUNT];
+
+		// A lone honour tile.
+
+		tileCounts[Tile.get(Tile.Dragon.WHITE).getIndex()] = 1;
+		assertNull(decomposer.findBestHand(tileCounts, null, null));
+
+		// Complete groups, but too few tiles.
+
+		tileCounts[Tile.get(Tile.Dragon.WHITE).getIndex()] = 2;
+		tileCounts[Tile.get(Tile.Dragon.RED).getIndex()] = 3;
+		assertNull(decomposer.findBestHand(tileCounts, null, null));
+
+		// Seven pairs is not a Mahjong hand.
+
+		tileCounts = new int[Tile.COUNT];
+
+		for (int index = 0 ; index < 14 ; index += 2)
+			tileCounts[index] = 2;
+
+		assertNull(decomposer.findBestHand(tileCounts, null, null));
+	}
+
+	@Test
+	public void seventeenTileHand() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.load17TileScoringScheme();
+		HandDecomposer decomposer = new HandDecomposer(scheme, Wind.EAST, Wind.EAST);
+
+		assertEquals(17, scheme.MahjongHandSize);
+
+		// Five chows and a pair, all in one suit: 11 123 234 345 456 567 circles, plus a lone 7
+		// that could only be part of a chow.
+
+		int[] tileCounts = new int[Tile.COUNT];
+		int[] numbers = { 0, 0, 0, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4, 5, 5, 6 };
+
+		for (int number : numbers)
+			tileCounts[number]++;
+
+		ScoredHand best = decomposer.findBestHand(tileCounts, null, null);
+
+		assertNotNull(best);
+		assertTrue(best.isMahjong());
+		assertEquals(6, best.size());
+
+		// The same tiles are not enough for the 14 tile scheme.
+
+		assertNull(new HandDecomposer(TestUtil.loadDefaultScoringScheme(), Wind.EAST, Wind.EAST).findBestHand(tileCounts, null, null));
+	}
+
+	@Test
+	public void waitingTiles() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		// Four pungs, waiting for a pair.  All four RED dragons are used by the kong.
+
+		ScoredHand hand = new ScoredHand(scheme);
+		hand.add(group(scheme, Group.Type.KONG, Tile.get(Tile.Dragon.RED)));
+		hand.add(group(scheme, Group.Type.PUNG, Tile.get(Wind.EAST)));
+		hand.add(group(scheme, Group.Type.PUNG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO)));
+		hand.add(group(scheme, Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO)));
+
+		List<WaitingTileCalculator.Wait> waits = WaitingTileCalculator.findWaits(hand, Group.Visibility.EXPOSED);
+
+		// No pair of RED dragons, EAST winds or BAMBOO TWO, because there are not enough tiles left.
+
+		assertEquals(Tile.COUNT - 3, waits.size());
+
+		for (WaitingTileCalculator.Wait wait : waits)
+		{
+			assertNotEquals(Tile.get(Tile.Dragon.RED), wait.getTile());
+			assertNotEquals(Tile.get(Wind.EAST), wait.getTile());
+			assertNotEquals(Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO), wait.getTile());
+			assertEquals(Group.Type.PAIR, wait.getGroup().getType());
+
+			// The score matches actually completing the hand, which is left unchanged.
+
+			int totalScore = hand.getTotalScore();
+
+			hand.add(wait.getGroup());
+			assertTrue(hand.isMahjong());
+			assertEquals(hand.getTotalScore(), wait.getTotalScore());
+			hand.remove(wait.getGroup());
+
+			assertEquals(totalScore, hand.getTotalScore());
+		}
+
+		// With a pair, waiting for a group.  The best group for each tile is chosen.
+
+		hand.add(group(scheme, Group.Type.PAIR, Tile.get(Tile.Suit.CIRCLES, Tile.Number.ONE)));
+		hand.remove(3);
+
+		waits = WaitingTileCalculator.findWaits(hand, Group.Visibility.EXPOSED);
+
+		for (WaitingTileCalculator.Wait wait : waits)
+		{
+			assertNotEquals(Group.Type.PAIR, wait.getGroup().getType());
+			assertTrue(wait.getGroup().getTiles().contains(wait.getTile()));
+
+			if (wait.getTile() == Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FIVE))
+				assertEquals(Group.Type.KONG, wait.getGroup().getType());
+		}
+
+		assertFalse(waits.isEmpty());
+
+		// Nothing completes a hand that needs more than one group.
+
+		hand.remove(0);
+		assertTrue(WaitingTileCalculator.findWaits(hand, Group.Visibility.EXPOSED).isEmpty());
+
+		// The completing groups take the winds of the hand.
+
+		hand = new ScoredHand(scheme);
+		hand.add(group(scheme, Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Wind.SOUTH, Wind.WEST));
+		hand.add(group(scheme, Group.Type.PUNG, Tile.get(Tile.Dragon.GREEN), Wind.SOUTH, Wind.WEST));
+		hand.add(group(scheme, Group.Type.PUNG, Tile.get(Tile.Dragon.WHITE), Wind.SOUTH, Wind.WEST));
+		hand.add(group(scheme, Group.Type.PUNG, Tile.get(Wind.NORTH), Wind.SOUTH, Wind.WEST));
+
+		Map<Tile, Integer> waitScores = new HashMap<>();
+
+		for (WaitingTileCalculator.Wait wait : WaitingTileCalculator.findWaits(hand, Group.Visibility.EXPOSED))
+		{
+			assertEquals(Wind.SOUTH, wait.getGroup().getOwnWind());
+			assertEquals(Wind.WEST, wait.getGroup().getPrevailingWind());
+
+			waitScores.put(wait.getTile(), wait.getTotalScore());
+		}
+
+		// A pair of the own or prevailing wind scores more than a pair of another wind.
+
+		assertTrue(waitScores.get(Tile.get(Wind.SOUTH)) > waitScores.get(Tile.get(Wind.EAST)));
+		assertTrue(waitScores.get(Tile.get(Wind.WEST)) > waitScores.get(Tile.get(Wind.EAST)));
+	}
+
+	private static ScoredGroup group(ScoringScheme scheme, Group.Type type, Tile tile)
+	{
+		return group(scheme, type, tile, Wind.EAST, Wind.EAST);
+	}
+
+	private static ScoredGroup group(ScoringScheme scheme, Group.Type type, Tile tile, Wind ownWind, Wind prevailingWind)
+	{
+		return ScoredGroup.get(type, tile, Group.Visibility.EXPOSED, scheme, ownWind, prevailingWind);
+	}
+}
@@ -11,9 +11,12 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -37,23 +40,23 @@ public class TestScoredHand
 
 		ScoringScheme scheme =  TestUtil.loadDefaultScoringScheme();
 
-		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.WHITE), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.GREEN), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.EAST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Wind.SOUTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.WEST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CIRCLES, Tile.Number.SIX), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Suit.CHARACTERS, Tile.Number.FIVE), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Suit.CHARACTERS, Tile.Number.EIGHT), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Dragon.WHITE)), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Wind.EAST)), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Wind.NORTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Suit.CIRCLES, Tile.Number.ONE)), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Suit.CHARACTERS, Tile.Number.FOUR)), scheme, Wind.EAST, Wind.EAST));
-		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN)), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.WHITE), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.GREEN), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.EAST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Wind.SOUTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.WEST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.SIX), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FIVE), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.EIGHT), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Dragon.WHITE)), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Wind.EAST)), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Wind.NORTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.CIRCLES, Tile.Number.ONE)), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FOUR)), scheme, Wind.EAST, Wind.EAST));
+		sets.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN)), scheme, Wind.EAST, Wind.EAST));
 
 		int iterations = 1000;
 		
@@ -69,58 +72,94 @@ public class TestScoredHand
 		ScoringScheme	scheme	= TestUtil.loadDefaultScoringScheme();
 		ScoredHand		hand	= new ScoredHand(scheme);
 		
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(4*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(4*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals((4+16)*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Wind.EAST)), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Wind.EAST)), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals((4+16+2)*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Wind.SOUTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Wind.SOUTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
 		assertTrue(hand.isMahjong());
 		assertEquals((10+4+16+2+4)*2, hand.getTotalScoreUnlimited());
 		
 
 		hand = new ScoredHand(scheme);
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Dragon.WHITE)), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Dragon.WHITE)), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CIRCLES, Tile.Number.SIX), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.SIX), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.WEST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.WEST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+16), hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.GREEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.GREEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+16+32)*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.EAST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.EAST), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
 		assertTrue(hand.isMahjong());
 		assertEquals((10+2+16+32+16)*2*2*2*2, hand.getTotalScoreUnlimited());
 
 		hand = new ScoredHand(scheme);
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Suit.CHARACTERS, Tile.Number.FIVE), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FIVE), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(4, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, new Tile(Tile.Suit.CHARACTERS, Tile.Number.EIGHT), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.EIGHT), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(4+2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.NORTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.NORTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(4+2+16, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, new Tile(Tile.Suit.CHARACTERS, Tile.Number.FOUR)), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FOUR)), scheme, Wind.EAST, Wind.EAST));
 		assertFalse(hand.isMahjong());
 		assertEquals(4+2+16, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Suit.BAMBOO, Tile.Number.SEVEN)), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN)), scheme, Wind.EAST, Wind.EAST));
 		assertTrue(hand.isMahjong());
 		assertEquals(10+4+2+16, hand.getTotalScoreUnlimited());
 	}
 	
+	@Test
+	public void testUnsupportedChanges() throws IOException
+	{
+		ScoringScheme	scheme	= TestUtil.loadDefaultScoringScheme();
+		ScoredHand		hand	= new ScoredHand(scheme);
+		ScoredGroup		pung	= new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST);
+		ScoredGroup		pair	= new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Dragon.WHITE)), scheme, Wind.EAST, Wind.EAST);
+
+		hand.add(pung);
+
+		List<ScoredGroup> groups = new ArrayList<>();
+		groups.add(pair);
+
+		// Changes that would skip the aggregates are refused, leaving the hand as it was.
+
+		try { hand.add(0, pair); fail(); } catch (UnsupportedOperationException e) { }
+		try { hand.addAll(groups); fail(); } catch (UnsupportedOperationException e) { }
+		try { hand.set(0, pair); fail(); } catch (UnsupportedOperationException e) { }
+		try { hand.clear(); fail(); } catch (UnsupportedOperationException e) { }
+		try { hand.retainAll(groups); fail(); } catch (UnsupportedOperationException e) { }
+		try { hand.subList(0, 1).clear(); fail(); } catch (UnsupportedOperationException e) { }
+		try { hand.listIterator().add(pair); fail(); } catch (UnsupportedOperationException e) { }
+
+		assertEquals(1, hand.size());
+		assertEquals(4*2, hand.getTotalScoreUnlimited());
+
+		// Removing through an iterator keeps the score up to date.
+
+		Iterator<ScoredGroup> iterator = hand.iterator();
+		iterator.next();
+		iterator.remove();
+
+		assertTrue(hand.isEmpty());
+		assertEquals(0, hand.getTotalScoreUnlimited());
+	}
+
 	@Test
 	public void testLimit() throws IOException
 	{
@@ -129,19 +168,19 @@ public class TestScoredHand
 		
 
 		hand = new ScoredHand(scheme);
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Dragon.WHITE)), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Dragon.WHITE)), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals(2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.NORTH), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.NORTH), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+32)*2*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.RED), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.RED), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+32+32)*2*2*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.GREEN), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.GREEN), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+32+32+32)*2*2*2*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.EAST), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.EAST), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertTrue(hand.isMahjong());
 		assertEquals((10+2+32+32+32+32)*2*2*2*2*2*2, hand.getTotalScoreUnlimited());
 		assertEquals(scheme.LimitScore, hand.getTotalScore());
@@ -180,19 +219,19 @@ public class TestScoredHand
 
 
 		hand = new ScoredHand(scheme);
-		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, new Tile(Tile.Dragon.WHITE)), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Tile.Dragon.WHITE)), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals(2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.NORTH), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.NORTH), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+32)*2*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.RED), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.RED), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+32+32)*2*2*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Tile.Dragon.GREEN), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Dragon.GREEN), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertFalse(hand.isMahjong());
 		assertEquals((2+32+32+32)*2*2*2*2, hand.getTotalScoreUnlimited());
-		hand.add(new ScoredGroup(new Group(Group.Type.KONG, new Tile(Wind.EAST), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Wind.EAST), Group.Visibility.CONCEALED), scheme, Wind.NORTH, Wind.NORTH));
 		assertTrue(hand.isMahjong());
 		assertEquals((10+2+32+32+32+32)*2*2*2*2*2*2, hand.getTotalScoreUnlimited());
 		assertEquals(scheme.LimitScore, hand.getTotalScore());
@@ -227,6 +266,265 @@ public class TestScoredHand
 		hand = checkSerialisation(hand, scheme, Wind.NORTH, Wind.NORTH);
 	}
 
+	@Test
+	public void testRemoveAndReplace() throws IOException
+	{
+		ScoringScheme	scheme	= TestUtil.loadDefaultScoringScheme();
+		ScoredHand		hand	= new ScoredHand(scheme);
+
+		ScoredGroup chow = new ScoredGroup(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.TWO), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST);
+
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(chow);
+		hand.add(new ScoredGroup(new Group(Group.Type.KONG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.SEVEN), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PAIR, Tile.get(Wind.EAST)), scheme, Wind.EAST, Wind.EAST));
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Wind.SOUTH), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		assertTrue(hand.isMahjong());
+		assertEquals((10+4+16+2+4)*2, hand.getTotalScoreUnlimited());
+
+		// Replace the south wind pung with a concealed one.
+
+		hand.replaceLatestAddition(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Wind.SOUTH), Group.Visibility.CONCEALED), scheme, Wind.EAST, Wind.EAST));
+		assertTrue(hand.isMahjong());
+		assertEquals((10+4+16+2+8)*2, hand.getTotalScoreUnlimited());
+		assertEquals(5, hand.size());
+
+		// Remove the chow, leaving a hand of no chows that is no longer mahjong.
+
+		hand.remove(hand.indexOf(chow));
+		assertFalse(hand.isMahjong());
+		assertEquals((4+16+2+8)*2, hand.getTotalScoreUnlimited());
+		assertEquals(3, hand.getAvailableTileCapacity());
+
+		hand.add(new ScoredGroup(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.ONE), Group.Visibility.EXPOSED), scheme, Wind.EAST, Wind.EAST));
+		assertTrue(hand.isMahjong());
+		assertEquals((10+4+16+2+8+4)*2*2, hand.getTotalScoreUnlimited());
+
+		// The incrementally maintained score should match a hand built from scratch.
+
+		ScoredHand rebuiltHand = ScoredHand.fromJson(hand.toJson(), scheme, Wind.EAST, Wind.EAST);
+		assertEquals(hand.getTotalScoreUnlimited(), rebuiltHand.getTotalScoreUnlimited());
+		assertEquals(hand.getWholeHandScores().getTotal(), rebuiltHand.getWholeHandScores().getTotal());
+		assertEquals(hand.getGroupScores().getTotal(), rebuiltHand.getGroupScores().getTotal());
+	}
+
+	@Test
+	public void testCompiledScheme() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		assertEquals(4, scheme.getScore(ScoringScheme.ScoreElement.PungExposedPrevailingOwnWindScore));
+		assertEquals(2*2, scheme.getMultiplier(ScoringScheme.ScoreElement.PungExposedPrevailingOwnWindScore));
+		assertEquals(32, scheme.getScore(ScoringScheme.ScoreElement.KongConcealedDragonScore));
+		assertEquals(2, scheme.getMultiplier(ScoringScheme.ScoreElement.KongConcealedDragonScore));
+		assertEquals(0, scheme.getScore(ScoringScheme.ScoreElement.ChowSuitScore));
+		assertEquals(1, scheme.getMultiplier(ScoringScheme.ScoreElement.ChowSuitScore));
+		assertFalse(scheme.hasScore(ScoringScheme.ScoreElement.ChowSuitScore));
+		assertTrue(scheme.hasScore(ScoringScheme.ScoreElement.MahjongByLooseTileHandScore));
+
+		// Totals of the compiled lists match the primitive tables, and the lists cannot be changed.
+
+		for (ScoringScheme.ScoreElement element : ScoringScheme.ScoreElement.values())
+		{
+			ScoreList list = scheme.getScoreContribution(element);
+
+			if (list == null)
+				continue;
+
+			assertTrue(list.isImmutable());
+			assertEquals(scheme.getScore(element) * scheme.getMultiplier(element), list.getTotal());
+
+			try
+			{
+				list.append(list.get(0));
+				fail();
+			}
+			catch (UnsupportedOperationException e)
+			{
+				// OK - expected.
+			}
+		}
+	}
+
+	@Test
+	public void testGroupPool() throws IOException
+	{
+		ScoringScheme scheme = TestUtil.loadDefaultScoringScheme();
+
+		ScoredGroup pung = ScoredGroup.get(Group.Type.PUNG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE), Group.Visibility.EXPOSED, scheme, Wind.EAST, Wind.SOUTH);
+
+		assertSame(pung, ScoredGroup.get(Group.Type.PUNG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE), Group.Visibility.EXPOSED, scheme, Wind.EAST, Wind.SOUTH));
+		assertNotSame(pung, ScoredGroup.get(Group.Type.PUNG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE), Group.Visibility.EXPOSED, scheme, Wind.EAST, Wind.EAST));
+
+		// Toggling visibility and reading back from json both return pooled instances.
+
+		ScoredGroup concealed = pung.toggleVisibility();
+		assertTrue(concealed.isConcealed());
+		assertSame(concealed, ScoredGroup.get(Group.Type.PUNG, Tile.get(Tile.Suit.BAMBOO, Tile.Number.ONE), Group.Visibility.CONCEALED, scheme, Wind.EAST, Wind.SOUTH));
+		assertSame(pung, concealed.toggleVisibility());
+		assertSame(pung, ScoredGroup.fromJson(pung.toJson(), scheme, Wind.EAST, Wind.SOUTH));
+
+		// Chows are normalised in the same way as by the Group constructor.
+
+		ScoredGroup chow = ScoredGroup.get(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.NINE), Group.Visibility.CONCEALED, scheme, Wind.EAST, Wind.SOUTH);
+		assertEquals(Tile.Number.SEVEN, chow.getFirstTile().getNumber());
+		assertFalse(chow.isConcealed());
+		assertSame(chow, ScoredGroup.get(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.SEVEN), Group.Visibility.EXPOSED, scheme, Wind.EAST, Wind.SOUTH));
+
+		// Pairs keep whatever visibility they are given, including none, just as constructed ones do.
+
+		Tile five = Tile.get(Tile.Suit.BAMBOO, Tile.Number.FIVE);
+
+		for (Group.Visibility visibility : new Group.Visibility[] {null, Group.Visibility.EXPOSED, Group.Visibility.CONCEALED})
+		{
+			ScoredGroup pair = ScoredGroup.get(Group.Type.PAIR, five, visibility, scheme, Wind.EAST, Wind.SOUTH);
+			assertEquals(new Group(Group.Type.PAIR, five, visibility).getVisibility(), pair.getVisibility());
+			assertSame(pair, ScoredGroup.get(Group.Type.PAIR, five, visibility, scheme, Wind.EAST, Wind.SOUTH));
+		}
+
+		// Shared groups score the same as individually constructed ones.
+
+		ScoredHand hand = new ScoredHand(scheme);
+		hand.add(pung);
+		hand.add(pung.toggleVisibility());
+		assertEquals(pung.getScore().getTotal() + concealed.getScore().getTotal(), hand.getGroupScores().getTotal());
+	}
+
+	@Test
+	public void testScoringEngine() throws IOException
+	{
+		ScoringScheme	scheme	= TestUtil.loadDefaultScoringScheme();
+		ScoringEngine	engine	= new ScoringEngine(scheme);
+		Random			random	= new Random(1);
+
+		List<Group> groups = new ArrayList<>();
+		groups.add(new Group(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED));
+		groups.add(new Group(Group.Type.KONG, Tile.get(Wind.SOUTH), Group.Visibility.CONCEALED));
+		groups.add(new Group(Group.Type.CHOW, Tile.get(Tile.Suit.CIRCLES, Tile.Number.SIX)));
+		groups.add(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.ONE), Group.Visibility.CONCEALED));
+		groups.add(new Group(Group.Type.PUNG, Tile.get(Tile.Suit.CHARACTERS, Tile.Number.FIVE), Group.Visibility.EXPOSED));
+		groups.add(new Group(Group.Type.PAIR, Tile.get(Wind.EAST), Group.Visibility.CONCEALED));
+		groups.add(new Group(Group.Type.PAIR, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO), Group.Visibility.EXPOSED));
+
+		// Enough hands to be split across several batches.
+
+		List<ScoringEngine.HandDescription> descriptions = new ArrayList<>();
+
+		for (int i = 0 ; i < 2000 ; i++)
+		{
+			List<Group> handGroups = new ArrayList<>();
+
+			for (Group group : groups)
+			{
+				if (random.nextBoolean())
+					handGroups.add(group);
+			}
+
+			Set<ScoredHand.HandCompletedBy> completedBy = EnumSet.noneOf(ScoredHand.HandCompletedBy.class);
+
+			if (random.nextBoolean())
+				completedBy.add(ScoredHand.HandCompletedBy.MAHJONG_LAST_DISCARD);
+
+			Wind[] winds = Wind.values();
+
+			descriptions.add(new ScoringEngine.HandDescription(handGroups, winds[random.nextInt(winds.length)], winds[random.nextInt(winds.length)], completedBy));
+		}
+
+		List<ScoringEngine.Result> results = engine.scoreAll(descriptions);
+
+		assertEquals(descriptions.size(), results.size());
+
+		for (int i = 0 ; i < descriptions.size() ; i++)
+		{
+			ScoringEngine.HandDescription	description	= descriptions.get(i);
+			ScoringEngine.Result			result		= results.get(i);
+			ScoredHand						hand		= new ScoredHand(scheme);
+
+			for (Group group : description.getGroups())
+				hand.add(new ScoredGroup(group, scheme, description.getOwnWind(), description.getPrevailingWind()));
+
+			for (ScoredHand.HandCompletedBy completedBy : description.getCompletedBy())
+				hand.setMahjongCompletedBy(completedBy, true);
+
+			assertEquals(hand.isMahjong(), result.isMahjong());
+			assertEquals(hand.getTotalScore(), result.getTotalScore());
+			assertEquals(hand.getTotalScoreUnlimited(), result.getTotalScoreUnlimited());
+			assertEquals(hand.getGroupScores(), result.getGroupScores());
+			assertEquals(hand.getWholeHandScores(), result.getWholeHandScores());
+		}
+	}
+
+	@Test
+	public void testHandScoreCache() throws IOException
+	{
+		ScoringScheme	scheme	= TestUtil.loadDefaultScoringScheme();
+		HandScoreCache	cache	= scheme.getHandScoreCache();
+
+		ScoredGroup pung = ScoredGroup.get(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED, scheme, Wind.EAST, Wind.SOUTH);
+		ScoredGroup kong = ScoredGroup.get(Group.Type.KONG, Tile.get(Wind.EAST), Group.Visibility.CONCEALED, scheme, Wind.EAST, Wind.SOUTH);
+		ScoredGroup chow = ScoredGroup.get(Group.Type.CHOW, Tile.get(Tile.Suit.BAMBOO, Tile.Number.TWO), Group.Visibility.EXPOSED, scheme, Wind.EAST, Wind.SOUTH);
+
+		// The key does not depend on the order in which groups were added, or on sorting.
+
+		ScoredHand hand = new ScoredHand(scheme);
+		hand.add(pung);
+		hand.add(kong);
+		hand.add(chow);
+
+		ScoredHand unsorted = new ScoredHand(scheme, false);
+		unsorted.add(chow);
+		unsorted.add(kong);
+		unsorted.add(pung);
+
+		assertEquals(hand.getKey(), unsorted.getKey());
+		assertEquals(hand.getKey().hashCode(), unsorted.getKey().hashCode());
+		assertEquals(hand.getTotalScoreUnlimited(), unsorted.getTotalScoreUnlimited());
+		assertEquals(hand.getWholeHandScores(), unsorted.getWholeHandScores());
+
+		// Partial hands being built a group at a time are scored without the cache.
+
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+
+		// Loaded hands use the cache, so the first load is a miss and the second a hit.
+
+		ScoredHand loaded = ScoredHand.fromJson(hand.toJson(), scheme, Wind.EAST, Wind.SOUTH);
+		assertEquals(hand.getTotalScoreUnlimited(), loaded.getTotalScoreUnlimited());
+		assertEquals(1, cache.getMissCount());
+
+		ScoredHand reloaded = ScoredHand.fromJson(unsorted.toJson(), scheme, Wind.EAST, Wind.SOUTH);
+		assertSame(loaded.getWholeHandScores(), reloaded.getWholeHandScores());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// Visibility, winds and completion flags are all part of the key.
+
+		ScoredHand other = new ScoredHand(scheme);
+		other.add(pung);
+		other.add(kong.toggleVisibility());
+		other.add(chow);
+		assertNotEquals(hand.getKey(), other.getKey());
+
+		other = new ScoredHand(scheme);
+		other.add(ScoredGroup.get(Group.Type.PUNG, Tile.get(Tile.Dragon.RED), Group.Visibility.EXPOSED, scheme, Wind.SOUTH, Wind.SOUTH));
+		assertNotEquals(new ScoredHand(scheme).getKey(), other.getKey());
+
+		other = ScoredHand.fromJson(hand.toJson(), scheme, Wind.EAST, Wind.SOUTH);
+		assertEquals(hand.getKey(), other.getKey());
+		other.setMahjongCompletedBy(ScoredHand.HandCompletedBy.NON_MAHJONG_ORIGINAL_CALL, true);
+		assertNotEquals(hand.getKey(), other.getKey());
+		assertTrue(other.getTotalScoreUnlimited() > hand.getTotalScoreUnlimited());
+
+		// The cache is bounded, although stripes mean it may hold fewer than its capacity.
+
+		HandScoreCache small = new HandScoreCache(2);
+		small.put(hand.getKey(), null);
+		small.put(other.getKey(), null);
+		small.put(new ScoredHand(scheme).getKey(), null);
+		assertTrue(small.size() <= 2);
+		assertTrue(small.size() >= 1);
+	}
+
 	@Test
 	public void exportScheme() throws IOException
 	{
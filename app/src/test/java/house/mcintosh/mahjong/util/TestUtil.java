@@ -11,7 +11,16 @@ public class TestUtil
 {
 	public static ScoringScheme loadDefaultScoringScheme() throws IOException
 	{
-		String scoringSchemeFile = "res/raw/scoring_scheme_british.json";
+		return loadScoringScheme("res/raw/scoring_scheme_british.json");
+	}
+
+	public static ScoringScheme load17TileScoringScheme() throws IOException
+	{
+		return loadScoringScheme("res/raw/scoring_scheme_british_17_tile.json");
+	}
+
+	private static ScoringScheme loadScoringScheme(String scoringSchemeFile) throws IOException
+	{
 		InputStream inStream = TestUtil.class.getClassLoader().getResourceAsStream(scoringSchemeFile);
 		return ScoringScheme.fromJson(inStream, scoringSchemeFile);
 	}